@@ -0,0 +1,60 @@
+package micro.benchmarks;
+
+import micro.microservicio_producto.entities.Producto;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Productos sintéticos con valores en los rangos del catálogo real, generados con semilla fija
+ * para que las corridas sean comparables.
+ */
+public final class DatosBenchmark {
+
+    private static final BigDecimal[] IVAS = {new BigDecimal("0.1050"), new BigDecimal("0.2100"), new BigDecimal("0.2700")};
+    private static final BigDecimal[] RESTOS = {new BigDecimal("10.0000"), new BigDecimal("50.0000"), new BigDecimal("100.0000")};
+
+    private DatosBenchmark() {
+    }
+
+    public static List<Producto> productos(int cantidad, boolean costoFijo) {
+        Random rnd = new Random(42L);
+        List<Producto> productos = new ArrayList<>(cantidad);
+        for (int i = 0; i < cantidad; i++) {
+            Producto p = new Producto();
+            p.setId(1_000L + i);
+            p.setCodigoProducto("BAT-" + (10_000 + i));
+            p.setDescripcion("Batería 12V " + (40 + rnd.nextInt(160)) + "Ah línea " + (char) ('A' + rnd.nextInt(6)));
+            p.setCantidad(rnd.nextInt(200));
+            p.setProveedorId(1L + rnd.nextInt(40));
+            p.setTipoProductoId(1L + rnd.nextInt(15));
+            p.setCostoFijo(costoFijo);
+            p.setPrecio_sin_iva(BigDecimal.valueOf(500 + rnd.nextInt(2_500_000), 4));
+            p.setIva(IVAS[rnd.nextInt(IVAS.length)]);
+            p.setPorcentaje_ganancia(BigDecimal.valueOf(150_000 + rnd.nextInt(600_000), 4));
+            p.setResto(RESTOS[rnd.nextInt(RESTOS.length)]);
+            p.setCosto_pesos(BigDecimal.valueOf(10_000_000 + rnd.nextLong(5_000_000_000L), 4));
+            p.setFecha_ingreso(LocalDate.of(2024, 1, 1).plusDays(rnd.nextInt(600)));
+            productos.add(p);
+        }
+        return productos;
+    }
+
+    /**
+     * Filas (producto_id, producto_relacionado_id) con hasta 3 relacionados por producto.
+     */
+    public static List<Object[]> relaciones(List<Producto> productos) {
+        Random rnd = new Random(7L);
+        List<Object[]> filas = new ArrayList<>();
+        for (Producto p : productos) {
+            int cantidad = rnd.nextInt(4);
+            for (int i = 0; i < cantidad; i++) {
+                filas.add(new Object[]{p.getId(), productos.get(rnd.nextInt(productos.size())).getId()});
+            }
+        }
+        return filas;
+    }
+}
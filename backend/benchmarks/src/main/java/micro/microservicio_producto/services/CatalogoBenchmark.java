@@ -0,0 +1,64 @@
+package micro.microservicio_producto.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import micro.benchmarks.DatosBenchmark;
+import micro.microservicio_producto.entities.DTO.PageResponseDTO;
+import micro.microservicio_producto.entities.DTO.ProductoPageDTO;
+import micro.microservicio_producto.entities.Producto;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Armado de una página del listado: mapeo entidad a {@link ProductoPageDTO} (la parte en memoria
+ * de {@code convertToPageDTO}) y serialización JSON de la respuesta con un ObjectMapper
+ * configurado como el de Spring Boot.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CatalogoBenchmark {
+
+    @Param({"20", "100", "1000"})
+    private int tamanioPagina;
+
+    private List<Producto> productos;
+    private List<Object[]> relaciones;
+    private PageResponseDTO<ProductoPageDTO> pagina;
+    private ObjectMapper objectMapper;
+
+    @Setup
+    public void preparar() {
+        productos = DatosBenchmark.productos(tamanioPagina, false);
+        productos.forEach(p -> CalculadoraPrecios.recalcular(p, new BigDecimal("1325.00")));
+        relaciones = DatosBenchmark.relaciones(productos);
+        pagina = PageResponseDTO.fromPage(new PageImpl<>(ProductoService.mapearADTOs(productos, relaciones),
+                PageRequest.of(0, tamanioPagina), 25_000));
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    }
+
+    @Benchmark
+    public List<ProductoPageDTO> mapearPagina() {
+        return ProductoService.mapearADTOs(productos, relaciones);
+    }
+
+    @Benchmark
+    public byte[] serializarPagina() throws Exception {
+        return objectMapper.writeValueAsBytes(pagina);
+    }
+
+    @Benchmark
+    public byte[] mapearYSerializar() throws Exception {
+        PageResponseDTO<ProductoPageDTO> respuesta = PageResponseDTO.fromPage(new PageImpl<>(
+                ProductoService.mapearADTOs(productos, relaciones), PageRequest.of(0, tamanioPagina), 25_000));
+        return objectMapper.writeValueAsBytes(respuesta);
+    }
+}
@@ -0,0 +1,85 @@
+package micro.microservicio_producto.services;
+
+import micro.benchmarks.DatosBenchmark;
+import micro.microservicio_producto.entities.Producto;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cálculo de precios por producto: la referencia BigDecimal (lo que hacían
+ * {@code recalculatePrices}/{@code calculateFixedCostPrices}) contra {@link CalculadoraPrecios}.
+ * Cada operación es un producto; está en el paquete de services para llegar a la referencia.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PreciosBenchmark {
+
+    private static final int PRODUCTOS = 1024;
+
+    private List<Producto> dolares;
+    private List<Producto> costoFijo;
+    private final BigDecimal valorDolar = new BigDecimal("1325.00");
+
+    @Setup
+    public void preparar() {
+        dolares = DatosBenchmark.productos(PRODUCTOS, false);
+        costoFijo = DatosBenchmark.productos(PRODUCTOS, true);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PRODUCTOS)
+    public void recalcularReferencia(Blackhole bh) {
+        for (Producto p : dolares) {
+            CalculadoraPrecios.recalcularReferencia(p, valorDolar);
+            bh.consume(p.getPrecio_publico());
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PRODUCTOS)
+    public void recalcularPuntoFijo(Blackhole bh) {
+        for (Producto p : dolares) {
+            CalculadoraPrecios.recalcular(p, valorDolar);
+            bh.consume(p.getPrecio_publico());
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PRODUCTOS)
+    public void recalcularSoloKernel(Blackhole bh) {
+        // Sin conversión desde/hacia BigDecimal: el costo de la cuenta en sí
+        CalculadoraPrecios.Resultado r = new CalculadoraPrecios.Resultado();
+        for (Producto p : dolares) {
+            CalculadoraPrecios.calcular(p.getPrecio_sin_iva().unscaledValue().longValue(),
+                    p.getIva().unscaledValue().longValue(), p.getPorcentaje_ganancia().unscaledValue().longValue(),
+                    p.getResto().unscaledValue().longValue(), 13_250_000L, r);
+            bh.consume(r.getPrecioPublico());
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PRODUCTOS)
+    public void costoFijoReferencia(Blackhole bh) {
+        for (Producto p : costoFijo) {
+            CalculadoraPrecios.costoFijoReferencia(p);
+            bh.consume(p.getPrecio_publico());
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PRODUCTOS)
+    public void costoFijoPuntoFijo(Blackhole bh) {
+        for (Producto p : costoFijo) {
+            CalculadoraPrecios.calcularCostoFijo(p);
+            bh.consume(p.getPrecio_publico());
+        }
+    }
+}
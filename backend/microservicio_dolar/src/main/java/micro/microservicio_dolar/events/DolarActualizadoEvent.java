@@ -0,0 +1,24 @@
+package micro.microservicio_dolar.events;
+
+import java.math.BigDecimal;
+
+public class DolarActualizadoEvent {
+    private final Long dolarId;
+    private final BigDecimal precioAnterior;
+    private final BigDecimal precioNuevo;
+
+    public DolarActualizadoEvent(Long dolarId, BigDecimal precioAnterior, BigDecimal precioNuevo) {
+        this.dolarId = dolarId;
+        this.precioAnterior = precioAnterior;
+        this.precioNuevo = precioNuevo;
+    }
+    public Long getDolarId() {
+        return dolarId;
+    }
+    public BigDecimal getPrecioAnterior() {
+        return precioAnterior;
+    }
+    public BigDecimal getPrecioNuevo() {
+        return precioNuevo;
+    }
+}
@@ -0,0 +1,35 @@
+package micro.microservicio_dolar.events;
+
+import micro.microservicio_dolar.feignClient.ProductoFeignClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * Avisa al microservicio de productos que cambió el dólar, después del commit. El aviso sólo
+ * encola el recálculo del otro lado, así que la llamada es corta; si falla, el recálculo
+ * programado de productos termina aplicando el valor nuevo.
+ */
+@Component
+public class DolarActualizadoListener {
+
+    private static final Logger log = LoggerFactory.getLogger(DolarActualizadoListener.class);
+    private final ProductoFeignClient productoFeignClient;
+
+    public DolarActualizadoListener(ProductoFeignClient productoFeignClient) {
+        this.productoFeignClient = productoFeignClient;
+    }
+
+    // fallbackExecution: la tarea programada actualiza sin transacción activa
+    @TransactionalEventListener(fallbackExecution = true)
+    public void handleDolarActualizado(DolarActualizadoEvent event) {
+        try {
+            productoFeignClient.notificarCambioDolar(event.getDolarId(), event.getPrecioNuevo());
+            log.info("Cambio de dólar ID {} ({} -> {}) notificado a productos.",
+                    event.getDolarId(), event.getPrecioAnterior(), event.getPrecioNuevo());
+        } catch (Exception e) {
+            log.error("No se pudo notificar el cambio de dólar a productos: {}", e.getMessage());
+        }
+    }
+}
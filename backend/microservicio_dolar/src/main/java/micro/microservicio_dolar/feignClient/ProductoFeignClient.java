@@ -0,0 +1,16 @@
+package micro.microservicio_dolar.feignClient;
+
+import org.springframework.cloud.openfeign.FeignClient;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+
+import java.math.BigDecimal;
+
+@FeignClient(name = "${feign.client.config.microservicio-producto.name}")
+public interface ProductoFeignClient {
+
+    @PostMapping("/productos/eventos/dolar/{dolarId}")
+    ResponseEntity<Void> notificarCambioDolar(@PathVariable Long dolarId, @RequestParam BigDecimal valor);
+}
@@ -4,6 +4,7 @@ import jakarta.annotation.PostConstruct;
 import jakarta.transaction.Transactional;
 import micro.microservicio_dolar.entities.dto.DolarApiResponseDTO;
 import micro.microservicio_dolar.entities.Dolar;
+import micro.microservicio_dolar.events.DolarActualizadoEvent;
 import micro.microservicio_dolar.repository.DolarRepository;
 //import micro.microservicio_dolar.sync.OneDriveListener;
 import org.slf4j.Logger;
@@ -14,6 +15,7 @@ import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.CachePut;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.cache.annotation.Caching;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.event.EventListener;
 import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.HttpMethod;
@@ -41,6 +43,7 @@ public class DolarService {
 
     private final DolarRepository dolarRepository;
     private final RestTemplate restTemplate;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Value("${app.dolar.default-price:1300.00}")
     private String defaultPriceStr;
@@ -51,9 +54,10 @@ public class DolarService {
     @Value("${app.dolar.update-enabled:true}")
     private boolean updateEnabled;
 
-    public DolarService(DolarRepository dolarRepository, RestTemplate restTemplate) {
+    public DolarService(DolarRepository dolarRepository, RestTemplate restTemplate, ApplicationEventPublisher eventPublisher) {
         this.dolarRepository = dolarRepository;
         this.restTemplate = restTemplate;
+        this.eventPublisher = eventPublisher;
     }
 
     @Transactional
@@ -140,10 +144,16 @@ public class DolarService {
         Dolar existingDolar = dolarRepository.findById(id)
                 .orElseThrow(() -> new NoSuchElementException("Dólar no encontrado con ID: " + id));
 
+        BigDecimal precioAnterior = existingDolar.getPrecio();
         existingDolar.setNombre(dolarDetails.getNombre());
         existingDolar.setPrecio(dolarDetails.getPrecio());
 
         Dolar updatedDolar = dolarRepository.save(existingDolar);
+        if (precioAnterior == null || updatedDolar.getPrecio() == null
+                || precioAnterior.compareTo(updatedDolar.getPrecio()) != 0) {
+            // Se entrega a productos después del commit
+            eventPublisher.publishEvent(new DolarActualizadoEvent(id, precioAnterior, updatedDolar.getPrecio()));
+        }
         /*TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
             @Override
             public void afterCommit() {
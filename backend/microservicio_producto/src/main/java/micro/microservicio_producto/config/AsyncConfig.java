@@ -0,0 +1,81 @@
+package micro.microservicio_producto.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.time.Duration;
+
+@Configuration
+public class AsyncConfig implements WebMvcConfigurer {
+
+    @Value("${app.ventas.export.timeout-minutos:30}")
+    private long timeoutExportacionMinutos;
+
+    /**
+     * Pool para las llamadas Feign que se disparan en paralelo (proveedores y tipos de producto).
+     */
+    @Bean
+    public ThreadPoolTaskExecutor feignExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(2);
+        executor.setMaxPoolSize(8);
+        executor.setQueueCapacity(100);
+        executor.setThreadNamePrefix("FeignAsync-");
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Trabajos de importación de productos: de a uno por vez para no competir con el resto del
+     * servicio por la base; los que llegan mientras tanto esperan en cola.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor importacionExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(1);
+        executor.setQueueCapacity(20);
+        executor.setThreadNamePrefix("Importacion-");
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Carga inicial de los resúmenes de ventas al arrancar: un solo hilo, fuera del de arranque.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor resumenesExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(1);
+        executor.setQueueCapacity(1);
+        executor.setThreadNamePrefix("Resumenes-");
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Respuestas en streaming (historial y exportación de ventas). Cada una ocupa un hilo mientras
+     * dura; el timeout por defecto del contenedor cortaría las exportaciones largas.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor streamingExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(2);
+        executor.setMaxPoolSize(4);
+        executor.setQueueCapacity(20);
+        executor.setThreadNamePrefix("Streaming-");
+        executor.initialize();
+        return executor;
+    }
+
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.setTaskExecutor(streamingExecutor());
+        configurer.setDefaultTimeout(Duration.ofMinutes(timeoutExportacionMinutos).toMillis());
+    }
+}
@@ -0,0 +1,75 @@
+package micro.microservicio_producto.controllers;
+
+import micro.microservicio_producto.entities.DTO.ImportacionJobDTO;
+import micro.microservicio_producto.exceptions.BusinessLogicException;
+import micro.microservicio_producto.services.ImportacionService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.InputStream;
+import java.net.URI;
+
+/**
+ * Importación asíncrona de productos. El archivo se envía como cuerpo crudo con
+ * {@code Content-Type: text/csv} o {@code application/x-ndjson}; la respuesta trae el ID del
+ * trabajo para consultar su avance.
+ */
+@RestController
+@RequestMapping("/productos/import-jobs")
+public class ImportacionController {
+
+    private static final String TEXT_CSV = "text/csv";
+    private static final String APPLICATION_NDJSON = "application/x-ndjson";
+
+    private final Logger log = LoggerFactory.getLogger(ImportacionController.class);
+
+    private final ImportacionService importacionService;
+
+    public ImportacionController(ImportacionService importacionService) {
+        this.importacionService = importacionService;
+    }
+
+    @PostMapping(consumes = {TEXT_CSV, APPLICATION_NDJSON})
+    public ResponseEntity<ImportacionJobDTO> crear(@RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+                                                   InputStream cuerpo) {
+        ImportacionService.Formato formato = formato(contentType);
+        log.info("Nueva importación de productos en formato {}", formato);
+        ImportacionJobDTO trabajo = importacionService.crear(cuerpo, formato);
+        return ResponseEntity.accepted()
+                .location(URI.create("/productos/import-jobs/" + trabajo.getId()))
+                .body(trabajo);
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<ImportacionJobDTO> obtener(@PathVariable String id) {
+        return ResponseEntity.ok(importacionService.obtener(id));
+    }
+
+    @GetMapping("/{id}/rechazos")
+    public ResponseEntity<Resource> rechazos(@PathVariable String id) {
+        Resource archivo = new FileSystemResource(importacionService.archivoRechazos(id));
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(TEXT_CSV))
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        ContentDisposition.attachment().filename("rechazos-" + id + ".csv").build().toString())
+                .body(archivo);
+    }
+
+    private static ImportacionService.Formato formato(String contentType) {
+        MediaType tipo = MediaType.parseMediaType(contentType);
+        if (tipo.isCompatibleWith(MediaType.parseMediaType(TEXT_CSV))) {
+            return ImportacionService.Formato.CSV;
+        }
+        if (tipo.isCompatibleWith(MediaType.parseMediaType(APPLICATION_NDJSON))) {
+            return ImportacionService.Formato.NDJSON;
+        }
+        throw new BusinessLogicException("Formato de importación no soportado: " + contentType);
+    }
+}
@@ -4,7 +4,10 @@ import jakarta.servlet.http.HttpServletRequest;
 import micro.microservicio_producto.entities.DTO.*;
 import micro.microservicio_producto.entities.Producto;
 import micro.microservicio_producto.feignClients.ProveedorClient;
+import micro.microservicio_producto.search.CatalogoIndex;
 import micro.microservicio_producto.services.ProductoService;
+import micro.microservicio_producto.services.RecalculoEventosService;
+import micro.microservicio_producto.services.ReferenciaCacheService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -14,7 +17,9 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.web.PageableDefault;
+import org.springframework.data.web.SortDefault;
 
 import java.math.BigDecimal;
 import java.util.List;
@@ -26,9 +31,16 @@ public class ProductoController {
     private final Logger log = LoggerFactory.getLogger( ProductoController.class );
 
     private final ProductoService productoService;
+    private final CatalogoIndex catalogoIndex;
+    private final ReferenciaCacheService referenciaCache;
+    private final RecalculoEventosService recalculoEventos;
 
-    public ProductoController(ProductoService productoService) {
+    public ProductoController(ProductoService productoService, CatalogoIndex catalogoIndex, ReferenciaCacheService referenciaCache,
+                              RecalculoEventosService recalculoEventos) {
         this.productoService = productoService;
+        this.catalogoIndex = catalogoIndex;
+        this.referenciaCache = referenciaCache;
+        this.recalculoEventos = recalculoEventos;
     }
 
     @GetMapping("")
@@ -40,12 +52,39 @@ public class ProductoController {
             @RequestParam(required = false) Long tipoId,
             @PageableDefault(size = 20, sort = "id") Pageable pageable
     ) {
-        Page<ProductoPageDTO> paginaDeProductos = productoService.findAllPaginatedAndFiltered(
-                id, codigoProducto, descripcion, proveedorId, tipoId, pageable
-        );
+        Page<ProductoPageDTO> paginaDeProductos = catalogoIndex.puedeResponder(pageable)
+                ? catalogoIndex.buscar(id, codigoProducto, descripcion, proveedorId, tipoId, pageable)
+                : productoService.findAllPaginatedAndFiltered(id, codigoProducto, descripcion, proveedorId, tipoId, pageable);
         return ResponseEntity.ok(PageResponseDTO.fromPage(paginaDeProductos));
     }
 
+    @GetMapping("/scroll")
+    public ResponseEntity<ScrollResponseDTO<ProductoPageDTO>> scroll(
+            @RequestParam(required = false) String after,
+            @RequestParam(required = false) Long id,
+            @RequestParam(required = false) String codigoProducto,
+            @RequestParam(required = false) String descripcion,
+            @RequestParam(required = false) Long proveedorId,
+            @RequestParam(required = false) Long tipoId,
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(defaultValue = "none") String total,
+            @SortDefault(sort = "id", direction = Sort.Direction.DESC) Sort sort
+    ) {
+        return ResponseEntity.ok(productoService.scroll(
+                id, codigoProducto, descripcion, proveedorId, tipoId, sort, after, size, total));
+    }
+
+    @GetMapping("/buscar")
+    public ResponseEntity<PageResponseDTO<ProductoPageDTO>> buscar(
+            @RequestParam(required = false) String q,
+            @RequestParam(required = false) Long proveedorId,
+            @RequestParam(required = false) Long tipoId,
+            @PageableDefault(size = 20) Pageable pageable
+    ) {
+        Page<ProductoPageDTO> resultado = productoService.buscarRankeado(q, proveedorId, tipoId, pageable);
+        return ResponseEntity.ok(PageResponseDTO.fromPage(resultado));
+    }
+
     @GetMapping("/byDesc/{desc}")
     public ResponseEntity<List<Producto>> getProductosByDesc(@PathVariable String desc) {
         List<Producto> resultado = productoService.findByDesc(desc);
@@ -68,6 +107,11 @@ public class ProductoController {
         return ResponseEntity.status(HttpStatus.CREATED).body(nuevoProducto);
     }
 
+    /**
+     * Crea o actualiza los productos por código y proveedor, en una sola transacción. Las filas
+     * sin datos para calcular precios se guardan como vienen; los productos relacionados de los
+     * existentes no se modifican.
+     */
     @PostMapping("/cargar-masivo")
     public ResponseEntity<?> cargarArchivo(@RequestBody List<Producto> productos){
         log.info("Iniciando carga masiva de {} productos", productos.size());
@@ -131,6 +175,37 @@ public class ProductoController {
         productoService.recalcularPreciosPorProveedor(proveedorId,nuevaCotizacion);
         return ResponseEntity.ok("Precios recalculados exitosamente");
     }
+    /**
+     * Aviso del microservicio de dólar. Sólo encola el recálculo, que corre agrupado en segundo plano.
+     */
+    @PostMapping("/eventos/dolar/{dolarId}")
+    public ResponseEntity<Void> cambioDolar(@PathVariable Long dolarId, @RequestParam BigDecimal valor) {
+        boolean aceptado = recalculoEventos.notificarCambioDolar(dolarId, valor);
+        return aceptado ? ResponseEntity.accepted().build() : ResponseEntity.noContent().build();
+    }
+
+    @PostMapping("/referencias/invalidar")
+    public ResponseEntity<Void> invalidarReferencias(@RequestParam(required = false) Long proveedorId,
+                                                     @RequestParam(required = false) Long tipoId) {
+        if (proveedorId == null && tipoId == null) {
+            referenciaCache.invalidarTodo();
+        }
+        if (proveedorId != null) {
+            referenciaCache.invalidarProveedor(proveedorId);
+        }
+        if (tipoId != null) {
+            referenciaCache.invalidarTipo(tipoId);
+        }
+        return ResponseEntity.noContent().build();
+    }
+
+    @GetMapping("/changes")
+    public ResponseEntity<ProductoChangesDTO> getChanges(@RequestParam(required = false) String since) {
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.noCache())
+                .body(productoService.obtenerCambios(since));
+    }
+
     @GetMapping("/last-modified")
     public ResponseEntity<LastModifiedDTO> getLastModified() {
         LastModifiedDTO lastModified = productoService.getLastModified();
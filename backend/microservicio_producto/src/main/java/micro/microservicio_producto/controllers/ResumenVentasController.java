@@ -0,0 +1,88 @@
+package micro.microservicio_producto.controllers;
+
+import micro.microservicio_producto.entities.DTO.ResumenVentasGrupoDTO;
+import micro.microservicio_producto.entities.DTO.ResumenVentasPeriodoDTO;
+import micro.microservicio_producto.services.ResumenVentasService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.List;
+
+/**
+ * Reportes de ventas sobre los resúmenes diarios. Sin rango, el mes en curso (o los últimos doce
+ * meses en el mensual). Los extremos son inclusivos.
+ */
+@RestController
+@RequestMapping("/ventas/resumen")
+public class ResumenVentasController {
+    private final Logger log = LoggerFactory.getLogger(ResumenVentasController.class);
+
+    private final ResumenVentasService resumenVentasService;
+
+    public ResumenVentasController(ResumenVentasService resumenVentasService) {
+        this.resumenVentasService = resumenVentasService;
+    }
+
+    @GetMapping("/diario")
+    public ResponseEntity<List<ResumenVentasPeriodoDTO>> diario(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta) {
+        return ResponseEntity.ok(resumenVentasService.diario(desde(desde), hasta(hasta)));
+    }
+
+    @GetMapping("/mensual")
+    public ResponseEntity<List<ResumenVentasPeriodoDTO>> mensual(
+            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM") YearMonth desde,
+            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM") YearMonth hasta) {
+        YearMonth fin = hasta != null ? hasta : YearMonth.now();
+        return ResponseEntity.ok(resumenVentasService.mensual(desde != null ? desde : fin.minusMonths(11), fin));
+    }
+
+    @GetMapping("/productos")
+    public ResponseEntity<List<ResumenVentasGrupoDTO>> productos(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta,
+            @RequestParam(defaultValue = "50") int limite) {
+        return ResponseEntity.ok(resumenVentasService.porProducto(desde(desde), hasta(hasta), limite));
+    }
+
+    @GetMapping("/tipos")
+    public ResponseEntity<List<ResumenVentasGrupoDTO>> tipos(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta) {
+        return ResponseEntity.ok(resumenVentasService.porTipo(desde(desde), hasta(hasta)));
+    }
+
+    @GetMapping("/proveedores")
+    public ResponseEntity<List<ResumenVentasGrupoDTO>> proveedores(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta) {
+        return ResponseEntity.ok(resumenVentasService.porProveedor(desde(desde), hasta(hasta)));
+    }
+
+    /**
+     * Rehace los resúmenes de los meses indicados desde las ventas, por ejemplo después de
+     * corregir datos a mano. Sin {@code hasta}, sólo el mes {@code desde}.
+     */
+    @PostMapping("/recalcular")
+    public ResponseEntity<Void> recalcular(
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM") YearMonth desde,
+            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM") YearMonth hasta) {
+        log.info("Recalculando resúmenes de ventas de {} a {}.", desde, hasta != null ? hasta : desde);
+        resumenVentasService.recalcular(desde, hasta != null ? hasta : desde);
+        return ResponseEntity.noContent().build();
+    }
+
+    private static LocalDate desde(LocalDate desde) {
+        return desde != null ? desde : LocalDate.now().withDayOfMonth(1);
+    }
+
+    private static LocalDate hasta(LocalDate hasta) {
+        return hasta != null ? hasta : LocalDate.now();
+    }
+}
@@ -1,17 +1,28 @@
 package micro.microservicio_producto.controllers;
 
 import micro.microservicio_producto.entities.DTO.ProductoDTO;
+import micro.microservicio_producto.entities.DTO.ScrollResponseDTO;
+import micro.microservicio_producto.entities.DTO.VentaBatchRequestDTO;
+import micro.microservicio_producto.entities.DTO.VentaBatchResultadoDTO;
 import micro.microservicio_producto.entities.DTO.VentaRequestDTO;
 import micro.microservicio_producto.entities.DTO.VentaResponseDTO;
 import micro.microservicio_producto.entities.Venta;
+import micro.microservicio_producto.exceptions.BusinessLogicException;
 import micro.microservicio_producto.services.ProductoService;
+import micro.microservicio_producto.services.VentaHistorialService;
 import micro.microservicio_producto.services.VentaService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.time.LocalDate;
 import java.util.List;
 
 @RestController
@@ -20,14 +31,56 @@ public class VentaController {
     private final Logger log = LoggerFactory.getLogger( VentaController.class );
 
     private final VentaService ventaService;
+    private final VentaHistorialService ventaHistorialService;
 
-    public VentaController(VentaService ventaService) {
+    public VentaController(VentaService ventaService, VentaHistorialService ventaHistorialService) {
         this.ventaService = ventaService;
+        this.ventaHistorialService = ventaHistorialService;
     }
+    /**
+     * Todas las ventas del rango (opcional) como arreglo JSON, escrito a medida que se leen. Sin
+     * rango devuelve las del mes en curso.
+     */
     @GetMapping("")
-    public ResponseEntity<List<VentaResponseDTO>> getAllVentas() {
-        List<VentaResponseDTO> ventas = ventaService.findAllVentas();
-        return ResponseEntity.ok(ventas);
+    public ResponseEntity<StreamingResponseBody> getAllVentas(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta) {
+        ventaHistorialService.validarRango(desde, hasta);
+        // Sin rango, lo que había en la tabla principal: el mes en curso, no el archivo entero
+        LocalDate inicio = desde == null && hasta == null ? LocalDate.now().withDayOfMonth(1) : desde;
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(salida -> ventaHistorialService.exportar(inicio, hasta, VentaHistorialService.Formato.JSON, salida));
+    }
+    @GetMapping("/scroll")
+    public ResponseEntity<ScrollResponseDTO<VentaResponseDTO>> scroll(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta,
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "20") int size) {
+        return ResponseEntity.ok(ventaHistorialService.scroll(desde, hasta, after, size));
+    }
+    /**
+     * Exportación en NDJSON (una venta por línea) o CSV (una fila por ítem).
+     */
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportar(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta,
+            @RequestParam(defaultValue = "ndjson") String formato) {
+        ventaHistorialService.validarRango(desde, hasta);
+        VentaHistorialService.Formato tipo = switch (formato.toLowerCase()) {
+            case "ndjson" -> VentaHistorialService.Formato.NDJSON;
+            case "csv" -> VentaHistorialService.Formato.CSV;
+            default -> throw new BusinessLogicException("Formato de exportación no soportado: " + formato);
+        };
+        String extension = tipo == VentaHistorialService.Formato.CSV ? "csv" : "ndjson";
+        log.info("Exportando ventas en {} (desde {}, hasta {}).", extension, desde, hasta);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(tipo == VentaHistorialService.Formato.CSV ? "text/csv" : "application/x-ndjson"))
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        ContentDisposition.attachment().filename("ventas." + extension).build().toString())
+                .body(salida -> ventaHistorialService.exportar(desde, hasta, tipo, salida));
     }
     @PostMapping("/registrar")
     public ResponseEntity<VentaResponseDTO> registrarVenta(@RequestBody VentaRequestDTO ventaRequest) {
@@ -36,6 +89,14 @@ public class VentaController {
         log.info("Venta registrada con N° de comprobante: {}", ventaGuardada.getNumeroComprobante());
         return ResponseEntity.status(HttpStatus.CREATED).body(ventaGuardada);
     }
+    /**
+     * Ventas acumuladas sin conexión. Responde un resultado por venta, en el mismo orden.
+     */
+    @PostMapping("/batch")
+    public ResponseEntity<List<VentaBatchResultadoDTO>> registrarLote(@RequestBody VentaBatchRequestDTO lote) {
+        log.info("Recibido lote de {} ventas.", lote.getVentas() != null ? lote.getVentas().size() : 0);
+        return ResponseEntity.ok(ventaService.registrarLote(lote));
+    }
     @GetMapping("/comprobante/{numero}")
     public ResponseEntity<VentaResponseDTO> getVentaByNumeroComprobante(@PathVariable String numero) {
         return ventaService.buscarComprobantePorNumero(numero)
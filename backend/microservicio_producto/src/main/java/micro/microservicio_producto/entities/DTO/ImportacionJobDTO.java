@@ -0,0 +1,31 @@
+package micro.microservicio_producto.entities.DTO;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Estado de un trabajo de importación de productos. {@code porcentaje} se calcula sobre los bytes
+ * del archivo ya leídos y {@code filasPorSegundo} sobre las filas leídas desde {@code inicio}.
+ * Las filas rechazadas se descargan de {@code /productos/import-jobs/{id}/rechazos}.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ImportacionJobDTO {
+    private String id;
+    private String formato;
+    private String estado;
+    private long filasLeidas;
+    private long insertados;
+    private long actualizados;
+    private long sinCambios;
+    private long rechazados;
+    private double porcentaje;
+    private double filasPorSegundo;
+    private LocalDateTime inicio;
+    private LocalDateTime fin;
+    private String error;
+}
@@ -0,0 +1,21 @@
+package micro.microservicio_producto.entities.DTO;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Respuesta de {@code GET /productos/changes}. Si {@code fullResync} es true el cliente debe
+ * descartar su copia y recargar el catálogo completo antes de seguir usando {@code nextToken}.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductoChangesDTO {
+    private List<ProductoPageDTO> upserts;
+    private List<Long> deletedIds;
+    private String nextToken;
+    private boolean fullResync;
+}
@@ -1,6 +1,8 @@
 package micro.microservicio_producto.entities.DTO;
 
 import lombok.Data;
+import micro.microservicio_producto.entities.Producto;
+
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.util.List;
@@ -25,4 +27,27 @@ public class ProductoPageDTO {
     private BigDecimal precio_publico_us;
     private BigDecimal precio_sin_iva;
     private LocalDate fecha_ingreso;
-}
\ No newline at end of file
+
+    public static ProductoPageDTO fromEntity(Producto producto, List<Long> productosRelacionadosIds) {
+        ProductoPageDTO dto = new ProductoPageDTO();
+        dto.setId(producto.getId());
+        dto.setCodigoProducto(producto.getCodigoProducto());
+        dto.setDescripcion(producto.getDescripcion());
+        dto.setCantidad(producto.getCantidad());
+        dto.setPrecio_publico(producto.getPrecio_publico());
+        dto.setProveedorId(producto.getProveedorId());
+        dto.setTipoProductoId(producto.getTipoProductoId());
+        dto.setProductosRelacionadosIds(productosRelacionadosIds);
+        dto.setCostoFijo(producto.isCostoFijo());
+        dto.setCosto_dolares(producto.getCosto_dolares());
+        dto.setCosto_pesos(producto.getCosto_pesos());
+        dto.setPorcentaje_ganancia(producto.getPorcentaje_ganancia());
+        dto.setIva(producto.getIva());
+        dto.setResto(producto.getResto());
+        dto.setPrecio_sin_redondear(producto.getPrecio_sin_redondear());
+        dto.setPrecio_publico_us(producto.getPrecio_publico_us());
+        dto.setPrecio_sin_iva(producto.getPrecio_sin_iva());
+        dto.setFecha_ingreso(producto.getFecha_ingreso());
+        return dto;
+    }
+}
@@ -0,0 +1,23 @@
+package micro.microservicio_producto.entities.DTO;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.math.BigDecimal;
+
+/**
+ * Unidades e importe vendidos de un producto, tipo o proveedor en un rango. {@code id} es null
+ * para lo vendido sin tipo o sin proveedor; {@code descripcion} sólo viene en el de productos.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class ResumenVentasGrupoDTO {
+    private Long id;
+    private String descripcion;
+    private long unidades;
+    private BigDecimal importe;
+}
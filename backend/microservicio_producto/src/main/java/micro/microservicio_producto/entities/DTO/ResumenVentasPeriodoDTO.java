@@ -0,0 +1,23 @@
+package micro.microservicio_producto.entities.DTO;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Totales de un día o de un mes. En el resumen mensual {@code periodo} es el primer día del mes.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class ResumenVentasPeriodoDTO {
+    private LocalDate periodo;
+    private long ventas;
+    private long unidades;
+    private BigDecimal total;
+}
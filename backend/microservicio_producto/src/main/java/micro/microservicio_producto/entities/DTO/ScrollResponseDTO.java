@@ -0,0 +1,22 @@
+package micro.microservicio_producto.entities.DTO;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Página de una consulta por cursor. {@code nextCursor} es opaco y se envía tal cual en
+ * {@code after} para pedir la siguiente; {@code totalElements} es null si no se pidió conteo.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ScrollResponseDTO<T> {
+    private List<T> content;
+    private String nextCursor;
+    private boolean hasNext;
+    private Long totalElements;
+    private boolean totalEstimado;
+}
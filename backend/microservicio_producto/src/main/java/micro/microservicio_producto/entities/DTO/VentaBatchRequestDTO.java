@@ -0,0 +1,12 @@
+package micro.microservicio_producto.entities.DTO;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.List;
+
+@Getter
+@Setter
+public class VentaBatchRequestDTO {
+    private List<VentaOfflineDTO> ventas;
+}
@@ -0,0 +1,20 @@
+package micro.microservicio_producto.entities.DTO;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Resultado de una venta del lote, en el mismo orden del pedido. {@code duplicada} indica que la
+ * clave ya se había registrado y {@code venta} es la guardada en aquel momento.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class VentaBatchResultadoDTO {
+    private String claveIdempotencia;
+    private boolean duplicada;
+    private VentaResponseDTO venta;
+}
@@ -0,0 +1,19 @@
+package micro.microservicio_producto.entities.DTO;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Venta registrada sin conexión. {@code claveIdempotencia} la genera la caja y se mantiene en
+ * cada reintento; {@code fechaVenta} es el momento real de la venta (si falta se usa el de carga).
+ */
+@Getter
+@Setter
+public class VentaOfflineDTO {
+    private String claveIdempotencia;
+    private LocalDateTime fechaVenta;
+    private List<ProductoDTO> items;
+}
@@ -15,7 +15,12 @@ import java.time.LocalDateTime;
 @JsonIgnoreProperties(ignoreUnknown = true)
 public class NroComprobante {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "nro_comprobante_seq")
+    @SequenceGenerator(
+            name = "nro_comprobante_seq",
+            sequenceName = "nro_comprobante_id_seq",
+            allocationSize = 50
+    )
     private Long id;
 
     @Column(nullable = false)
@@ -4,6 +4,7 @@ import com.fasterxml.jackson.annotation.JsonManagedReference;
 import jakarta.persistence.*;
 import lombok.Getter;
 import lombok.Setter;
+import org.hibernate.annotations.PartitionKey;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
@@ -16,10 +17,17 @@ import java.util.List;
 public class Venta {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "venta_seq")
+    @SequenceGenerator(
+            name = "venta_seq",
+            sequenceName = "venta_id_seq",
+            allocationSize = 50
+    )
     private Long id;
 
     private String numeroComprobante;
+    // venta está particionada por mes de fecha_venta (V13)
+    @PartitionKey
     private LocalDateTime fechaVenta;
     private BigDecimal totalVenta;
 
@@ -3,6 +3,7 @@ package micro.microservicio_producto.entities;
 import jakarta.persistence.*;
 import lombok.Getter;
 import lombok.Setter;
+import org.springframework.data.domain.Persistable;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
@@ -13,7 +14,7 @@ import java.util.List;
 @Table(name = "venta_archivada")
 @Getter
 @Setter
-public class VentaArchivada {
+public class VentaArchivada implements Persistable<Long> {
 
     @Id
     private Long id; // Usamos el mismo ID que la venta original, no es autogenerado.
@@ -24,4 +25,19 @@ public class VentaArchivada {
 
     @OneToMany(mappedBy = "ventaArchivada", cascade = CascadeType.ALL, orphanRemoval = true)
     private List<VentaItemArchivado> items = new ArrayList<>();
+
+    // El ID viene asignado: sin esto save() haría merge, con un SELECT por venta antes de insertar
+    @Transient
+    private boolean nuevo = true;
+
+    @Override
+    public boolean isNew() {
+        return nuevo;
+    }
+
+    @PostLoad
+    @PostPersist
+    void marcarPersistida() {
+        nuevo = false;
+    }
 }
\ No newline at end of file
@@ -4,8 +4,10 @@ import com.fasterxml.jackson.annotation.JsonBackReference;
 import jakarta.persistence.*;
 import lombok.Getter;
 import lombok.Setter;
+import org.hibernate.annotations.PartitionKey;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
 
 @Getter
 @Setter
@@ -13,7 +15,12 @@ import java.math.BigDecimal;
 public class VentaItem {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "venta_item_seq")
+    @SequenceGenerator(
+            name = "venta_item_seq",
+            sequenceName = "venta_item_id_seq",
+            allocationSize = 50
+    )
     private Long id;
 
     private Long productoId;
@@ -21,9 +28,21 @@ public class VentaItem {
     private int cantidad;
     private BigDecimal precioUnitario; // Precio al momento de la venta
 
+    // Copia de la fecha de la venta: venta_item se particiona por mes igual que venta (V13)
+    @PartitionKey
+    private LocalDateTime fechaVenta;
+
+    // Sin FK: venta es particionada y su clave incluye la fecha
     @ManyToOne(fetch = FetchType.LAZY)
-    @JoinColumn(name = "venta_id")
+    @JoinColumn(name = "venta_id", foreignKey = @ForeignKey(ConstraintMode.NO_CONSTRAINT))
     @JsonBackReference
     private Venta venta;
 
+    @PrePersist
+    @PreUpdate
+    void copiarFechaVenta() {
+        if (fechaVenta == null && venta != null) {
+            fechaVenta = venta.getFechaVenta();
+        }
+    }
 }
\ No newline at end of file
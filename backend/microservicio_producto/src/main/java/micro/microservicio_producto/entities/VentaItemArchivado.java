@@ -5,6 +5,7 @@ import lombok.Getter;
 import lombok.Setter;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
 
 @Entity
 @Table(name = "venta_item_archivado")
@@ -19,8 +20,10 @@ public class VentaItemArchivado {
     private String productoDescripcion;
     private int cantidad;
     private BigDecimal precioUnitario;
+    private LocalDateTime fechaVenta;
 
+    // Mismas columnas que venta_item: los meses se archivan adjuntando sus particiones (V13)
     @ManyToOne(fetch = FetchType.LAZY)
-    @JoinColumn(name = "venta_archivada_id")
+    @JoinColumn(name = "venta_id", foreignKey = @ForeignKey(ConstraintMode.NO_CONSTRAINT))
     private VentaArchivada ventaArchivada;
 }
\ No newline at end of file
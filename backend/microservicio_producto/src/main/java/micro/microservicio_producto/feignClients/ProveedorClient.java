@@ -1,11 +1,16 @@
 package micro.microservicio_producto.feignClients;
 
+import micro.microservicio_producto.entities.DTO.LastModifiedDTO;
 import micro.microservicio_producto.entities.DTO.ProveedorDTO;
 import org.springframework.cloud.openfeign.FeignClient;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
 
+import java.util.Collection;
 import java.util.List;
 
 @FeignClient(name = "${feign.client.config.microservicio-proveedor.name}")
@@ -16,4 +21,16 @@ public interface ProveedorClient {
 
     @GetMapping("/proveedores")
     List<ProveedorDTO> getAllProveedores();
-}
\ No newline at end of file
+
+    @GetMapping("/proveedores")
+    List<ProveedorDTO> getProveedoresByIds(@RequestParam("ids") Collection<Long> ids);
+
+    @GetMapping("/proveedores/last-modified")
+    LastModifiedDTO getLastModified();
+
+    /**
+     * Responde 404 si alguno de los IDs no existe.
+     */
+    @PostMapping("/proveedores/validar")
+    ResponseEntity<Void> validarProveedores(@RequestBody Collection<Long> ids);
+}
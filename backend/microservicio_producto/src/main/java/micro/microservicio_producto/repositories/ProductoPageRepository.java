@@ -0,0 +1,22 @@
+package micro.microservicio_producto.repositories;
+
+import micro.microservicio_producto.entities.DTO.ProductoPageDTO;
+import micro.microservicio_producto.entities.Producto;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.List;
+
+/**
+ * Lecturas del catálogo proyectadas directo a {@link ProductoPageDTO}: sólo se seleccionan las
+ * columnas del DTO y los IDs relacionados en la misma consulta, sin cargar entidades en el
+ * contexto de persistencia.
+ */
+public interface ProductoPageRepository {
+
+    Page<ProductoPageDTO> findPageDTO(Specification<Producto> spec, Pageable pageable);
+
+    List<ProductoPageDTO> findAllDTO(Specification<Producto> spec, Sort sort);
+}
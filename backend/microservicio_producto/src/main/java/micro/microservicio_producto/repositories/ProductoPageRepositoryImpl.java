@@ -0,0 +1,138 @@
+package micro.microservicio_producto.repositories;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.TypedQuery;
+import jakarta.persistence.criteria.*;
+import micro.microservicio_producto.entities.DTO.ProductoPageDTO;
+import micro.microservicio_producto.entities.Producto;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+import org.springframework.data.support.PageableExecutionUtils;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Implementación con Criteria de {@link ProductoPageRepository}. Los IDs relacionados salen de
+ * una subconsulta correlacionada con {@code string_agg}, así cada página es un único round trip
+ * (más el count cuando hace falta).
+ */
+public class ProductoPageRepositoryImpl implements ProductoPageRepository {
+
+    private static final String[] COLUMNAS = {
+            "id", "codigoProducto", "descripcion", "cantidad", "precio_publico", "proveedorId",
+            "tipoProductoId", "costoFijo", "costo_dolares", "costo_pesos", "porcentaje_ganancia", "iva",
+            "resto", "precio_sin_redondear", "precio_publico_us", "precio_sin_iva", "fecha_ingreso"
+    };
+    private static final String RELACIONADOS = "relacionados";
+
+    @PersistenceContext
+    private EntityManager em;
+
+    @Override
+    public Page<ProductoPageDTO> findPageDTO(Specification<Producto> spec, Pageable pageable) {
+        TypedQuery<Tuple> query = crearQuery(spec, pageable.getSort());
+        if (pageable.isPaged()) {
+            query.setFirstResult((int) pageable.getOffset());
+            query.setMaxResults(pageable.getPageSize());
+        }
+        List<ProductoPageDTO> contenido = mapear(query.getResultList());
+        return PageableExecutionUtils.getPage(contenido, pageable, () -> contar(spec));
+    }
+
+    @Override
+    public List<ProductoPageDTO> findAllDTO(Specification<Producto> spec, Sort sort) {
+        return mapear(crearQuery(spec, sort).getResultList());
+    }
+
+    private TypedQuery<Tuple> crearQuery(Specification<Producto> spec, Sort sort) {
+        CriteriaBuilder cb = em.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = cb.createTupleQuery();
+        Root<Producto> root = query.from(Producto.class);
+
+        List<Selection<?>> selecciones = new ArrayList<>();
+        for (String columna : COLUMNAS) {
+            selecciones.add(root.get(columna).alias(columna));
+        }
+
+        Subquery<String> relacionados = query.subquery(String.class);
+        Root<Producto> origen = relacionados.from(Producto.class);
+        Join<Producto, Producto> relacionado = origen.join("productosRelacionados");
+        relacionados.select(cb.function("string_agg", String.class,
+                        relacionado.get("id").as(String.class), cb.literal(",")))
+                .where(cb.equal(origen.get("id"), root.get("id")));
+        selecciones.add(relacionados.alias(RELACIONADOS));
+
+        query.multiselect(selecciones);
+        if (spec != null) {
+            Predicate predicado = spec.toPredicate(root, query, cb);
+            if (predicado != null) {
+                query.where(predicado);
+            }
+        }
+        if (sort != null && sort.isSorted()) {
+            query.orderBy(QueryUtils.toOrders(sort, root, cb));
+        }
+        return em.createQuery(query);
+    }
+
+    private long contar(Specification<Producto> spec) {
+        CriteriaBuilder cb = em.getCriteriaBuilder();
+        CriteriaQuery<Long> query = cb.createQuery(Long.class);
+        Root<Producto> root = query.from(Producto.class);
+        query.select(cb.count(root));
+        if (spec != null) {
+            Predicate predicado = spec.toPredicate(root, query, cb);
+            if (predicado != null) {
+                query.where(predicado);
+            }
+        }
+        return em.createQuery(query).getSingleResult();
+    }
+
+    private static List<ProductoPageDTO> mapear(List<Tuple> filas) {
+        List<ProductoPageDTO> dtos = new ArrayList<>(filas.size());
+        for (Tuple fila : filas) {
+            ProductoPageDTO dto = new ProductoPageDTO();
+            dto.setId(fila.get("id", Long.class));
+            dto.setCodigoProducto(fila.get("codigoProducto", String.class));
+            dto.setDescripcion(fila.get("descripcion", String.class));
+            dto.setCantidad(fila.get("cantidad", Integer.class));
+            dto.setPrecio_publico(fila.get("precio_publico", BigDecimal.class));
+            dto.setProveedorId(fila.get("proveedorId", Long.class));
+            dto.setTipoProductoId(fila.get("tipoProductoId", Long.class));
+            dto.setCostoFijo(fila.get("costoFijo", Boolean.class));
+            dto.setCosto_dolares(fila.get("costo_dolares", BigDecimal.class));
+            dto.setCosto_pesos(fila.get("costo_pesos", BigDecimal.class));
+            dto.setPorcentaje_ganancia(fila.get("porcentaje_ganancia", BigDecimal.class));
+            dto.setIva(fila.get("iva", BigDecimal.class));
+            dto.setResto(fila.get("resto", BigDecimal.class));
+            dto.setPrecio_sin_redondear(fila.get("precio_sin_redondear", BigDecimal.class));
+            dto.setPrecio_publico_us(fila.get("precio_publico_us", BigDecimal.class));
+            dto.setPrecio_sin_iva(fila.get("precio_sin_iva", BigDecimal.class));
+            dto.setFecha_ingreso(fila.get("fecha_ingreso", LocalDate.class));
+            dto.setProductosRelacionadosIds(parsearIds(fila.get(RELACIONADOS, String.class)));
+            dtos.add(dto);
+        }
+        return dtos;
+    }
+
+    private static List<Long> parsearIds(String agregados) {
+        if (agregados == null || agregados.isEmpty()) {
+            return List.of();
+        }
+        String[] partes = agregados.split(",");
+        List<Long> ids = new ArrayList<>(partes.length);
+        for (String parte : partes) {
+            ids.add(Long.parseLong(parte));
+        }
+        return ids;
+    }
+}
@@ -10,12 +10,14 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.stream.Stream;
 
 @Repository
-public interface ProductoRepository extends SyncableRepository<Producto, Long>, JpaSpecificationExecutor<Producto> {
+public interface ProductoRepository extends SyncableRepository<Producto, Long>, JpaSpecificationExecutor<Producto>, ProductoPageRepository {
 
     
     @Override
@@ -40,9 +42,44 @@ public interface ProductoRepository extends SyncableRepository<Producto, Long>,
     /**
      * Busca productos por descripción, cargando sus relaciones.
      */
-    @Query("SELECT p FROM Producto p WHERE LOWER(p.descripcion) LIKE LOWER(CONCAT('%', :desc, '%'))")
+    @Query("SELECT p FROM Producto p WHERE FUNCTION('f_unaccent', LOWER(p.descripcion)) LIKE FUNCTION('f_unaccent', LOWER(CONCAT('%', :desc, '%')))")
     Optional<List<Producto>> findByDesc(@Param("desc") String desc);
 
+    /**
+     * Búsqueda por substring sobre descripción (sin acentos) y código usando los índices
+     * trigram de V6, ordenada por similitud con el término.
+     */
+    @Query(value = "SELECT p.* FROM producto p " +
+            "WHERE (f_unaccent(lower(p.descripcion)) LIKE '%' || f_unaccent(lower(:termino)) || '%' " +
+            "   OR lower(p.codigo_producto) LIKE '%' || lower(:termino) || '%') " +
+            "AND (CAST(:proveedorId AS BIGINT) IS NULL OR p.proveedor_id = :proveedorId) " +
+            "AND (CAST(:tipoId AS BIGINT) IS NULL OR p.tipo_producto_id = :tipoId) " +
+            "ORDER BY GREATEST(word_similarity(f_unaccent(lower(:termino)), f_unaccent(lower(p.descripcion))), " +
+            "                  similarity(lower(p.codigo_producto), lower(:termino))) DESC, p.id DESC",
+            countQuery = "SELECT COUNT(*) FROM producto p " +
+                    "WHERE (f_unaccent(lower(p.descripcion)) LIKE '%' || f_unaccent(lower(:termino)) || '%' " +
+                    "   OR lower(p.codigo_producto) LIKE '%' || lower(:termino) || '%') " +
+                    "AND (CAST(:proveedorId AS BIGINT) IS NULL OR p.proveedor_id = :proveedorId) " +
+                    "AND (CAST(:tipoId AS BIGINT) IS NULL OR p.tipo_producto_id = :tipoId)",
+            nativeQuery = true)
+    Page<Producto> buscarRankeado(@Param("termino") String termino,
+                                  @Param("proveedorId") Long proveedorId,
+                                  @Param("tipoId") Long tipoId,
+                                  Pageable pageable);
+
+    /**
+     * Coincidencia exacta por id o código (sin distinguir mayúsculas).
+     */
+    @Query("SELECT p FROM Producto p " +
+            "WHERE (p.id = :id OR LOWER(p.codigoProducto) = LOWER(:codigo)) " +
+            "AND (:proveedorId IS NULL OR p.proveedorId = :proveedorId) " +
+            "AND (:tipoId IS NULL OR p.tipoProductoId = :tipoId) " +
+            "ORDER BY p.id DESC")
+    List<Producto> findExactosPorIdOCodigo(@Param("id") Long id,
+                                           @Param("codigo") String codigo,
+                                           @Param("proveedorId") Long proveedorId,
+                                           @Param("tipoId") Long tipoId);
+
     /**
      * Busca un producto por su código único, cargando sus relaciones.
      */
@@ -67,13 +104,48 @@ public interface ProductoRepository extends SyncableRepository<Producto, Long>,
     @Query(value = "SELECT producto_id, producto_relacionado_id FROM productos_relacionados WHERE producto_id IN :productoIds", nativeQuery = true)
     List<Object[]> findRelacionadosIdsByProductoIds(@Param("productoIds") List<Long> productoIds);
 
+    /**
+     * IDs de los productos que tienen como relacionado a alguno de los indicados.
+     */
+    @Query(value = "SELECT DISTINCT producto_id FROM productos_relacionados WHERE producto_relacionado_id IN :ids", nativeQuery = true)
+    List<Long> findProductoIdsQueRelacionan(@Param("ids") Collection<Long> ids);
+
+    @Query("SELECT MAX(p.updatedAt) FROM Producto p")
+    LocalDateTime findMaxUpdatedAt();
+
+    @Query("SELECT p.id FROM Producto p WHERE p.updatedAt > :desde")
+    List<Long> findIdsModificadosDesde(@Param("desde") LocalDateTime desde);
+
+    @Query("SELECT p FROM Producto p WHERE p.updatedAt > :desde ORDER BY p.updatedAt, p.id")
+    List<Producto> findModificadosDesde(@Param("desde") LocalDateTime desde, Pageable limite);
+
+    /**
+     * Tombstones posteriores a {@code desde} con más de {@code margen} segundos. seq se asigna al
+     * insertar y no al commitear: los recientes se retienen igual que los productos modificados
+     * para que uno con seq menor que aún no commiteó no quede atrás del token.
+     */
+    @Query(value = "SELECT seq, producto_id FROM producto_tombstone WHERE seq > :desde " +
+            "AND eliminado_en < LOCALTIMESTAMP - make_interval(secs => :margen) ORDER BY seq LIMIT :limite", nativeQuery = true)
+    List<Object[]> findTombstonesDesde(@Param("desde") long desde, @Param("margen") long margen, @Param("limite") int limite);
+
+    @Query(value = "SELECT MIN(seq) FROM producto_tombstone", nativeQuery = true)
+    Long findMinTombstoneSeq();
+
+    @Query(value = "SELECT COALESCE(MAX(seq), 0) FROM producto_tombstone " +
+            "WHERE eliminado_en < LOCALTIMESTAMP - make_interval(secs => :margen)", nativeQuery = true)
+    Long findMaxTombstoneSeq(@Param("margen") long margen);
+
+    /**
+     * Borra tombstones viejos conservando siempre el último, que marca hasta dónde se purgó.
+     */
     @Modifying
-    @Query(value = "DELETE FROM \"productos_relacionados\" WHERE \"producto_id\" = :productoId OR \"producto_relacionado_id\" = :productoId", nativeQuery = true)
-    void eliminarRelaciones(@Param("productoId") Long productoId);
+    @Query(value = "DELETE FROM producto_tombstone WHERE eliminado_en < :limite " +
+            "AND seq < (SELECT MAX(seq) FROM producto_tombstone)", nativeQuery = true)
+    int purgarTombstones(@Param("limite") LocalDateTime limite);
 
     @Modifying
-    @Query(value = "UPDATE Producto p SET p.cantidad = p.cantidad - :cantidad WHERE p.id = :id")
-    int descontar(@Param("id") Long id, @Param("cantidad") Integer cantidad);
+    @Query(value = "DELETE FROM \"productos_relacionados\" WHERE \"producto_id\" = :productoId OR \"producto_relacionado_id\" = :productoId", nativeQuery = true)
+    void eliminarRelaciones(@Param("productoId") Long productoId);
 
     @Modifying
     @Query(value = "DELETE FROM \"productos_relacionados\" WHERE \"producto_id\" IN :ids OR \"producto_relacionado_id\" IN :ids", nativeQuery = true)
@@ -81,6 +153,15 @@ public interface ProductoRepository extends SyncableRepository<Producto, Long>,
 
     List<Producto> findAllByCostoFijoIsFalse();
 
+    @Query("SELECT DISTINCT p.proveedorId FROM Producto p WHERE p.costoFijo = false AND p.proveedorId IS NOT NULL")
+    List<Long> findProveedorIdsSinCostoFijo();
+
+    /**
+     * Cantidad aproximada de filas según las estadísticas del planner (sin recorrer la tabla).
+     */
+    @Query(value = "SELECT CAST(reltuples AS BIGINT) FROM pg_class WHERE oid = CAST('producto' AS regclass)", nativeQuery = true)
+    Long estimarCantidadProductos();
+
     @Query(value = "SELECT COALESCE(MAX(EXTRACT(EPOCH FROM updated_at)), 0) FROM producto", nativeQuery = true)
     Long findMaxLastModifiedTimestamp();
 
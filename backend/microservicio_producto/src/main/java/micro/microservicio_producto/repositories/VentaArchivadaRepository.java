@@ -2,6 +2,8 @@ package micro.microservicio_producto.repositories;
 
 import micro.microservicio_producto.entities.VentaArchivada;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.Optional;
@@ -9,5 +11,8 @@ import java.util.Optional;
 @Repository
 public interface VentaArchivadaRepository extends JpaRepository<VentaArchivada, Long> {
     Optional<VentaArchivada> findByNumeroComprobante(String numeroComprobante);
-    Optional<VentaArchivada> findByNumeroComprobanteEndingWith(String sufijo);
+
+    /** Igual que {@link VentaRepository#findUltimaPorSufijo}, sobre idx_venta_archivada_sufijo_comprobante. */
+    @Query(value = "SELECT * FROM venta_archivada WHERE right(numero_comprobante, 6) = :sufijo ORDER BY id DESC LIMIT 1", nativeQuery = true)
+    Optional<VentaArchivada> findUltimaPorSufijo(@Param("sufijo") String sufijo);
 }
\ No newline at end of file
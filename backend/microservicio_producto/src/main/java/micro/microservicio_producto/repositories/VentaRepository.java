@@ -3,6 +3,8 @@ package micro.microservicio_producto.repositories;
 import micro.microservicio_producto.entities.Venta;
 import micro.microservicio_producto.sync.SyncableRepository;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import org.springframework.data.jpa.repository.EntityGraph;
 
@@ -12,17 +14,20 @@ import java.util.Optional;
 
 @Repository
 public interface VentaRepository extends SyncableRepository<Venta, Long> {
+    @EntityGraph(attributePaths = "items")
     List<Venta> findAllByFechaVentaBetween(LocalDateTime start, LocalDateTime end);
 
     Optional<Venta> findByNumeroComprobante(String numeroComprobante);
 
     List<Venta> findAllByFechaVentaBefore(LocalDateTime fechaLimite);
 
-    Optional<Venta> findByNumeroComprobanteEndingWith(String sufijo);
-
+    /**
+     * Última venta cuyo comprobante termina en {@code sufijo} (6 dígitos). La expresión tiene que
+     * coincidir con la del índice idx_venta_sufijo_comprobante.
+     */
+    @Query(value = "SELECT * FROM venta WHERE right(numero_comprobante, 6) = :sufijo ORDER BY id DESC LIMIT 1", nativeQuery = true)
+    Optional<Venta> findUltimaPorSufijo(@Param("sufijo") String sufijo);
 
-    @EntityGraph(attributePaths = "items")
-    List<Venta> findAllByOrderByFechaVentaDesc();
 
     @Override
     @EntityGraph(attributePaths = "items")
@@ -0,0 +1,489 @@
+package micro.microservicio_producto.search;
+
+import micro.microservicio_producto.entities.DTO.ProductoPageDTO;
+import micro.microservicio_producto.entities.Producto;
+import micro.microservicio_producto.repositories.ProductoRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.text.Collator;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Índice en memoria del catálogo para responder {@code GET /productos} sin ir a la base.
+ * <p>
+ * Se compone de un {@link CatalogoSnapshot} inmutable más un delta con los productos
+ * modificados o eliminados desde su construcción. {@code ProductoService} refresca el delta
+ * después de cada commit; cuando el delta crece se compacta en un snapshot nuevo. Una tarea
+ * programada reconcilia contra la base los cambios que llegan por replicación.
+ */
+@Component
+public class CatalogoIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(CatalogoIndex.class);
+
+    private static final int TAMANIO_LOTE_CARGA = 500;
+    // Margen para no perder filas cuyo updated_at quedó por detrás de la marca al commitear tarde.
+    private static final long MARGEN_RECONCILIACION_SEGUNDOS = 60;
+
+    private static final Map<String, Function<ProductoPageDTO, String>> CAMPOS_TEXTO = Map.of(
+            "codigoProducto", ProductoPageDTO::getCodigoProducto,
+            "descripcion", ProductoPageDTO::getDescripcion);
+
+    private static final Map<String, Comparator<ProductoPageDTO>> CAMPOS_VALOR = Map.ofEntries(
+            valor("id", ProductoPageDTO::getId),
+            valor("cantidad", ProductoPageDTO::getCantidad),
+            valor("precio_publico", ProductoPageDTO::getPrecio_publico),
+            valor("costo_pesos", ProductoPageDTO::getCosto_pesos),
+            valor("costo_dolares", ProductoPageDTO::getCosto_dolares),
+            valor("porcentaje_ganancia", ProductoPageDTO::getPorcentaje_ganancia),
+            valor("iva", ProductoPageDTO::getIva),
+            valor("resto", ProductoPageDTO::getResto),
+            valor("precio_sin_iva", ProductoPageDTO::getPrecio_sin_iva),
+            valor("precio_sin_redondear", ProductoPageDTO::getPrecio_sin_redondear),
+            valor("precio_publico_us", ProductoPageDTO::getPrecio_publico_us),
+            valor("fecha_ingreso", ProductoPageDTO::getFecha_ingreso),
+            valor("proveedorId", ProductoPageDTO::getProveedorId),
+            valor("tipoProductoId", ProductoPageDTO::getTipoProductoId)
+    );
+
+    private final ProductoRepository productoRepository;
+    private final TransactionTemplate lecturaTemplate;
+    // Orden ascendente con nulos al final de cada campo ordenable, sin desempate
+    private final Map<String, Comparator<ProductoPageDTO>> ordenables;
+
+    @Value("${app.catalog-index.enabled:false}")
+    private boolean enabled;
+
+    @Value("${app.catalog-index.compact-threshold:512}")
+    private int umbralCompactacion;
+
+    private volatile Estado estado = new Estado(CatalogoSnapshot.vacio(), new ConcurrentHashMap<>());
+    private volatile boolean listo;
+    private volatile LocalDateTime marcaAgua;
+    private final AtomicLong secuencia = new AtomicLong();
+
+    /** Versión de un producto posterior al snapshot; {@code producto == null} indica que fue eliminado. */
+    private record Cambio(long seq, ProductoPageDTO producto) {}
+
+    private record Estado(CatalogoSnapshot base, ConcurrentHashMap<Long, Cambio> delta) {}
+
+    /**
+     * @param colacion orden de los textos en la base, para que las páginas salgan en el mismo
+     *                 orden que en la consulta SQL: {@code binario} para collation C (y la imagen
+     *                 alpine, donde musl compara por bytes) o un locale BCP 47 para una collation
+     *                 glibc o ICU. {@link Collator} se acerca a glibc pero puede diferir en
+     *                 espacios y signos de puntuación.
+     */
+    public CatalogoIndex(ProductoRepository productoRepository, PlatformTransactionManager transactionManager,
+                         @Value("${app.catalog-index.colacion:binario}") String colacion) {
+        this.productoRepository = productoRepository;
+        Comparator<String> textos = comparadorTextos(colacion);
+        Map<String, Comparator<ProductoPageDTO>> campos = new HashMap<>(CAMPOS_VALOR);
+        CAMPOS_TEXTO.forEach((campo, getter) ->
+                campos.put(campo, Comparator.comparing(getter, Comparator.nullsLast(textos))));
+        this.ordenables = Map.copyOf(campos);
+        this.lecturaTemplate = new TransactionTemplate(transactionManager);
+        this.lecturaTemplate.setReadOnly(true);
+        // Se invoca también desde afterCommit(), donde la transacción original ya terminó.
+        this.lecturaTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Indica si el índice puede responder la consulta: está habilitado, ya se cargó y
+     * todos los campos de ordenamiento pedidos están soportados.
+     */
+    public boolean puedeResponder(Pageable pageable) {
+        if (!enabled || !listo || pageable.isUnpaged()) {
+            return false;
+        }
+        return pageable.getSort().stream().allMatch(orden -> ordenables.containsKey(orden.getProperty()));
+    }
+
+    public Page<ProductoPageDTO> buscar(Long id,
+                                        String codigoProducto,
+                                        String descripcion,
+                                        Long proveedorId,
+                                        Long tipoId,
+                                        Pageable pageable) {
+        Estado actual = estado;
+        CatalogoSnapshot base = actual.base();
+        Map<Long, Cambio> delta = actual.delta();
+
+        String terminoId = id != null ? id.toString() : null;
+        String terminoCodigo = terminoValido(codigoProducto);
+        String terminoDescripcion = terminoValido(descripcion) != null ? CatalogoSnapshot.normalizarSinAcentos(descripcion) : null;
+
+        long[] bits = base.seleccionar(terminoId, terminoCodigo, terminoDescripcion, proveedorId, tipoId);
+
+        List<ProductoPageDTO> coincidenciasDelta = new ArrayList<>();
+        for (Cambio cambio : delta.values()) {
+            ProductoPageDTO p = cambio.producto();
+            if (p != null && coincide(p, terminoId, terminoCodigo, terminoDescripcion, proveedorId, tipoId)) {
+                coincidenciasDelta.add(p);
+            }
+        }
+
+        Sort sort = pageable.getSort();
+        List<Sort.Order> ordenes = sort.toList();
+        if (ordenes.isEmpty() || (ordenes.size() == 1 && "id".equals(ordenes.get(0).getProperty()))) {
+            boolean asc = ordenes.isEmpty() || ordenes.get(0).isAscending();
+            return paginarPorId(base, bits, delta, coincidenciasDelta, asc, pageable);
+        }
+
+        // Las filas del snapshot se ordenan por rango; las del delta, pocas, con el comparador, y
+        // las dos listas se intercalan hasta completar la página
+        int[] filas = ordenarFilas(base, bits, delta, ordenes);
+        Comparator<ProductoPageDTO> comparador = comparador(sort);
+        coincidenciasDelta.sort(comparador);
+
+        long offset = pageable.getOffset();
+        int tamanio = pageable.getPageSize();
+        List<ProductoPageDTO> contenido = new ArrayList<>(tamanio);
+        int i = coincidenciasDelta.isEmpty() ? (int) Math.min(offset, filas.length) : 0;
+        long posicion = i;
+        int d = 0;
+        while (contenido.size() < tamanio && (i < filas.length || d < coincidenciasDelta.size())) {
+            ProductoPageDTO candidato;
+            if (d == coincidenciasDelta.size()
+                    || (i < filas.length && comparador.compare(base.filas[filas[i]], coincidenciasDelta.get(d)) <= 0)) {
+                candidato = base.filas[filas[i++]];
+            } else {
+                candidato = coincidenciasDelta.get(d++);
+            }
+            if (posicion++ >= offset) {
+                contenido.add(candidato);
+            }
+        }
+        return new PageImpl<>(contenido, pageable, filas.length + coincidenciasDelta.size());
+    }
+
+    /**
+     * Filas del snapshot que cumplen el filtro y no fueron reemplazadas por el delta, en el orden
+     * pedido con el id como desempate (las filas ya están ordenadas por id).
+     */
+    private int[] ordenarFilas(CatalogoSnapshot base, long[] bits, Map<Long, Cambio> delta, List<Sort.Order> ordenes) {
+        int[] filas = new int[(int) CatalogoSnapshot.contar(bits)];
+        int n = 0;
+        for (int fila = CatalogoSnapshot.siguiente(bits, 0); fila >= 0; fila = CatalogoSnapshot.siguiente(bits, fila + 1)) {
+            if (!delta.containsKey(base.ids[fila])) {
+                filas[n++] = fila;
+            }
+        }
+        int[][] rangos = new int[ordenes.size()][];
+        for (int k = 0; k < rangos.length; k++) {
+            String campo = ordenes.get(k).getProperty();
+            rangos[k] = base.rangos(campo, ordenables.get(campo));
+        }
+
+        if (rangos.length == 1) {
+            // Rango y fila en un long: un sort de primitivos
+            int[] rango = rangos[0];
+            boolean asc = ordenes.get(0).isAscending();
+            long[] claves = new long[n];
+            for (int k = 0; k < n; k++) {
+                long r = asc ? rango[filas[k]] : Integer.MAX_VALUE - rango[filas[k]];
+                claves[k] = (r << 32) | filas[k];
+            }
+            Arrays.sort(claves);
+            int[] ordenadas = new int[n];
+            for (int k = 0; k < n; k++) {
+                ordenadas[k] = (int) claves[k];
+            }
+            return ordenadas;
+        }
+
+        Integer[] orden = new Integer[n];
+        for (int k = 0; k < n; k++) {
+            orden[k] = filas[k];
+        }
+        Arrays.sort(orden, (a, b) -> {
+            for (int k = 0; k < rangos.length; k++) {
+                int c = Integer.compare(rangos[k][a], rangos[k][b]);
+                if (c != 0) {
+                    return ordenes.get(k).isAscending() ? c : -c;
+                }
+            }
+            return Integer.compare(a, b);
+        });
+        return Arrays.stream(orden).mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * Recorre el snapshot (ya ordenado por id) y el delta en paralelo, materializando sólo
+     * las filas de la página pedida.
+     */
+    private Page<ProductoPageDTO> paginarPorId(CatalogoSnapshot base, long[] bits, Map<Long, Cambio> delta,
+                                              List<ProductoPageDTO> coincidenciasDelta, boolean asc, Pageable pageable) {
+        long total = CatalogoSnapshot.contar(bits) + coincidenciasDelta.size();
+        for (Long idModificado : delta.keySet()) {
+            int fila = base.indiceDe(idModificado);
+            if (fila >= 0 && CatalogoSnapshot.marcada(bits, fila)) {
+                total--;
+            }
+        }
+
+        Comparator<ProductoPageDTO> porId = Comparator.comparingLong(ProductoPageDTO::getId);
+        coincidenciasDelta.sort(asc ? porId : porId.reversed());
+
+        long offset = pageable.getOffset();
+        int tamanio = pageable.getPageSize();
+        List<ProductoPageDTO> contenido = new ArrayList<>(tamanio);
+        long posicion = 0;
+        int d = 0;
+        int fila = asc ? CatalogoSnapshot.siguiente(bits, 0) : CatalogoSnapshot.anterior(bits, base.size() - 1);
+
+        while (contenido.size() < tamanio) {
+            while (fila >= 0 && delta.containsKey(base.ids[fila])) {
+                fila = asc ? CatalogoSnapshot.siguiente(bits, fila + 1) : CatalogoSnapshot.anterior(bits, fila - 1);
+            }
+            boolean quedanDelta = d < coincidenciasDelta.size();
+            if (fila < 0 && !quedanDelta) {
+                break;
+            }
+
+            boolean tomarBase;
+            if (fila < 0) {
+                tomarBase = false;
+            } else if (!quedanDelta) {
+                tomarBase = true;
+            } else {
+                long idBase = base.ids[fila];
+                long idDelta = coincidenciasDelta.get(d).getId();
+                tomarBase = asc ? idBase < idDelta : idBase > idDelta;
+            }
+
+            ProductoPageDTO candidato;
+            if (tomarBase) {
+                candidato = base.filas[fila];
+                fila = asc ? CatalogoSnapshot.siguiente(bits, fila + 1) : CatalogoSnapshot.anterior(bits, fila - 1);
+            } else {
+                candidato = coincidenciasDelta.get(d++);
+            }
+            if (posicion++ >= offset) {
+                contenido.add(candidato);
+            }
+        }
+        return new PageImpl<>(contenido, pageable, total);
+    }
+
+    /**
+     * Recarga desde la base los productos indicados y los aplica al delta. Los IDs que ya no
+     * existen quedan registrados como eliminados.
+     */
+    public void refrescar(Collection<Long> ids) {
+        if (!enabled || ids == null || ids.isEmpty()) {
+            return;
+        }
+        if (listo && ids.size() > Math.max(umbralCompactacion, estado.base().size() / 4)) {
+            log.info("Refresco de {} productos: se reconstruye el índice completo.", ids.size());
+            reconstruir();
+            return;
+        }
+
+        long seq = secuencia.incrementAndGet();
+        Map<Long, ProductoPageDTO> cargados = lecturaTemplate.execute(status -> cargarPorIds(ids));
+
+        synchronized (this) {
+            ConcurrentHashMap<Long, Cambio> delta = estado.delta();
+            for (Long id : ids) {
+                delta.merge(id, new Cambio(seq, cargados.get(id)), (previo, nuevo) -> nuevo.seq() > previo.seq() ? nuevo : previo);
+            }
+            if (delta.size() > umbralCompactacion) {
+                compactar();
+            }
+        }
+    }
+
+    /**
+     * Reconstruye el snapshot completo desde la base. Los cambios aplicados mientras se leía
+     * la tabla se conservan en el delta del estado nuevo.
+     */
+    public void reconstruir() {
+        if (!enabled) {
+            return;
+        }
+        long inicio = System.currentTimeMillis();
+        long seqInicio = secuencia.get();
+        LocalDateTime marca = productoRepository.findMaxUpdatedAt();
+
+        List<ProductoPageDTO> productos = lecturaTemplate.execute(status -> cargarTodos());
+        CatalogoSnapshot base = CatalogoSnapshot.construir(productos);
+
+        synchronized (this) {
+            ConcurrentHashMap<Long, Cambio> pendientes = new ConcurrentHashMap<>();
+            estado.delta().forEach((id, cambio) -> {
+                if (cambio.seq() > seqInicio) {
+                    pendientes.put(id, cambio);
+                }
+            });
+            estado = new Estado(base, pendientes);
+            marcaAgua = marca;
+            listo = true;
+        }
+        log.info("Índice de catálogo reconstruido: {} productos en {} ms.", base.size(), System.currentTimeMillis() - inicio);
+    }
+
+    /**
+     * Reconciliación periódica: carga el índice la primera vez y luego refresca lo modificado
+     * por otros nodos (updated_at) y detecta bajas externas comparando la cantidad de filas.
+     */
+    @Scheduled(initialDelayString = "${app.catalog-index.initial-delay-ms:5000}",
+            fixedDelayString = "${app.catalog-index.refresh-ms:30000}")
+    public void sincronizar() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            if (!listo) {
+                reconstruir();
+                return;
+            }
+
+            LocalDateTime nuevaMarca = productoRepository.findMaxUpdatedAt();
+            LocalDateTime marcaPrevia = marcaAgua;
+            if (nuevaMarca != null && (marcaPrevia == null || nuevaMarca.isAfter(marcaPrevia))) {
+                LocalDateTime desde = marcaPrevia != null
+                        ? marcaPrevia.minusSeconds(MARGEN_RECONCILIACION_SEGUNDOS)
+                        : LocalDateTime.MIN;
+                List<Long> modificados = productoRepository.findIdsModificadosDesde(desde);
+                log.debug("Reconciliando {} productos modificados desde {}", modificados.size(), desde);
+                refrescar(modificados);
+                marcaAgua = nuevaMarca;
+            }
+
+            long enBase = productoRepository.count();
+            long enIndice = contarVigentes();
+            if (enBase != enIndice) {
+                log.info("El índice tiene {} productos y la base {}. Reconstruyendo.", enIndice, enBase);
+                reconstruir();
+            }
+        } catch (Exception e) {
+            log.error("Error reconciliando el índice de catálogo: {}", e.getMessage(), e);
+        }
+    }
+
+    private void compactar() {
+        Estado actual = estado;
+        CatalogoSnapshot base = actual.base();
+        List<ProductoPageDTO> productos = new ArrayList<>(base.size() + actual.delta().size());
+        for (int fila = 0; fila < base.size(); fila++) {
+            if (!actual.delta().containsKey(base.ids[fila])) {
+                productos.add(base.filas[fila]);
+            }
+        }
+        actual.delta().values().stream()
+                .map(Cambio::producto)
+                .filter(Objects::nonNull)
+                .forEach(productos::add);
+
+        estado = new Estado(CatalogoSnapshot.construir(productos), new ConcurrentHashMap<>());
+        log.debug("Índice de catálogo compactado: {} productos.", productos.size());
+    }
+
+    private long contarVigentes() {
+        Estado actual = estado;
+        long total = actual.base().size();
+        for (Map.Entry<Long, Cambio> entrada : actual.delta().entrySet()) {
+            boolean enSnapshot = actual.base().indiceDe(entrada.getKey()) >= 0;
+            boolean vigente = entrada.getValue().producto() != null;
+            if (enSnapshot && !vigente) {
+                total--;
+            } else if (!enSnapshot && vigente) {
+                total++;
+            }
+        }
+        return total;
+    }
+
+    private List<ProductoPageDTO> cargarTodos() {
+        return productoRepository.findAllDTO(null, Sort.by("id"));
+    }
+
+    private Map<Long, ProductoPageDTO> cargarPorIds(Collection<Long> ids) {
+        List<Long> todos = new ArrayList<>(new LinkedHashSet<>(ids));
+        Map<Long, ProductoPageDTO> resultado = new HashMap<>();
+        for (int i = 0; i < todos.size(); i += TAMANIO_LOTE_CARGA) {
+            List<Long> lote = todos.subList(i, Math.min(i + TAMANIO_LOTE_CARGA, todos.size()));
+            Specification<Producto> porIds = (root, query, cb) -> root.get("id").in(lote);
+            for (ProductoPageDTO producto : productoRepository.findAllDTO(porIds, Sort.unsorted())) {
+                resultado.put(producto.getId(), producto);
+            }
+        }
+        return resultado;
+    }
+
+    private static boolean coincide(ProductoPageDTO p, String terminoId, String terminoCodigo,
+                                    String terminoDescripcion, Long proveedorId, Long tipoId) {
+        if (proveedorId != null && !proveedorId.equals(p.getProveedorId())) {
+            return false;
+        }
+        if (tipoId != null && !tipoId.equals(p.getTipoProductoId())) {
+            return false;
+        }
+        if (terminoId == null && terminoCodigo == null && terminoDescripcion == null) {
+            return true;
+        }
+        return contiene(String.valueOf(p.getId()), terminoId)
+                || contiene(CatalogoSnapshot.normalizar(p.getCodigoProducto()), terminoCodigo)
+                || contiene(CatalogoSnapshot.normalizarSinAcentos(p.getDescripcion()), terminoDescripcion);
+    }
+
+    private static boolean contiene(String texto, String termino) {
+        return termino != null && texto != null && texto.contains(termino);
+    }
+
+    private static String terminoValido(String termino) {
+        return termino != null && !termino.trim().isEmpty() ? CatalogoSnapshot.normalizar(termino) : null;
+    }
+
+    /**
+     * Comparador equivalente al ORDER BY de Postgres: nulos al final en ASC y al principio en
+     * DESC, con el id como desempate para que la paginación sea estable.
+     */
+    private Comparator<ProductoPageDTO> comparador(Sort sort) {
+        Comparator<ProductoPageDTO> resultado = null;
+        for (Sort.Order orden : sort) {
+            Comparator<ProductoPageDTO> c = ordenables.get(orden.getProperty());
+            if (orden.isDescending()) {
+                c = c.reversed();
+            }
+            resultado = resultado == null ? c : resultado.thenComparing(c);
+        }
+        Comparator<ProductoPageDTO> porId = Comparator.comparingLong(ProductoPageDTO::getId);
+        return resultado == null ? porId : resultado.thenComparing(porId);
+    }
+
+    private static <T extends Comparable<? super T>> Map.Entry<String, Comparator<ProductoPageDTO>> valor(
+            String campo, Function<ProductoPageDTO, T> getter) {
+        return Map.entry(campo, Comparator.comparing(getter, Comparator.nullsLast(Comparator.naturalOrder())));
+    }
+
+    private static Comparator<String> comparadorTextos(String colacion) {
+        if (colacion == null || colacion.isBlank() || "binario".equalsIgnoreCase(colacion)) {
+            return Comparator.naturalOrder();
+        }
+        Collator collator = Collator.getInstance(Locale.forLanguageTag(colacion));
+        collator.setStrength(Collator.TERTIARY);
+        return collator::compare;
+    }
+}
@@ -0,0 +1,282 @@
+package micro.microservicio_producto.search;
+
+import micro.microservicio_producto.entities.DTO.ProductoPageDTO;
+
+import java.text.Normalizer;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Copia inmutable y columnar del catálogo usada por {@link CatalogoIndex}.
+ * Las filas se guardan ordenadas por id; los campos filtrables viven en arreglos primitivos
+ * y cada trigrama (por campo) apunta a la lista ordenada de filas que lo contienen.
+ */
+final class CatalogoSnapshot {
+
+    static final int CAMPO_ID = 0;
+    static final int CAMPO_CODIGO = 1;
+    static final int CAMPO_DESCRIPCION = 2;
+
+    private static final int CANTIDAD_CAMPOS = 3;
+    private static final long SIN_VALOR = Long.MIN_VALUE;
+    // Más allá de estas listas es más barato verificar con contains() que seguir intersectando.
+    private static final int MAX_LISTAS_INTERSECCION = 3;
+    private static final Pattern MARCAS_DIACRITICAS = Pattern.compile("\\p{M}+");
+
+    final long[] ids;
+    final ProductoPageDTO[] filas;
+    private final long[] proveedorIds;
+    private final long[] tipoIds;
+    private final String[][] textos;
+    private final long[] trigramas;
+    private final int[][] postings;
+    // Rango de cada fila por campo ordenable (mismo valor, mismo rango), calculado la primera vez
+    // que se ordena por ese campo: así ordenar compara enteros y no productos
+    private final ConcurrentHashMap<String, int[]> rangos = new ConcurrentHashMap<>();
+
+    private CatalogoSnapshot(long[] ids, ProductoPageDTO[] filas, long[] proveedorIds, long[] tipoIds,
+                             String[][] textos, long[] trigramas, int[][] postings) {
+        this.ids = ids;
+        this.filas = filas;
+        this.proveedorIds = proveedorIds;
+        this.tipoIds = tipoIds;
+        this.textos = textos;
+        this.trigramas = trigramas;
+        this.postings = postings;
+    }
+
+    static CatalogoSnapshot vacio() {
+        return construir(java.util.List.of());
+    }
+
+    static CatalogoSnapshot construir(Collection<ProductoPageDTO> productos) {
+        ProductoPageDTO[] filas = productos.stream()
+                .filter(p -> p.getId() != null)
+                .sorted(Comparator.comparingLong(ProductoPageDTO::getId))
+                .toArray(ProductoPageDTO[]::new);
+        int n = filas.length;
+
+        long[] ids = new long[n];
+        long[] proveedorIds = new long[n];
+        long[] tipoIds = new long[n];
+        String[][] textos = new String[CANTIDAD_CAMPOS][n];
+        Map<Long, ListaFilas> acumulado = new HashMap<>();
+
+        for (int fila = 0; fila < n; fila++) {
+            ProductoPageDTO p = filas[fila];
+            ids[fila] = p.getId();
+            proveedorIds[fila] = p.getProveedorId() != null ? p.getProveedorId() : SIN_VALOR;
+            tipoIds[fila] = p.getTipoProductoId() != null ? p.getTipoProductoId() : SIN_VALOR;
+            textos[CAMPO_ID][fila] = Long.toString(p.getId());
+            textos[CAMPO_CODIGO][fila] = normalizar(p.getCodigoProducto());
+            textos[CAMPO_DESCRIPCION][fila] = normalizarSinAcentos(p.getDescripcion());
+
+            for (int campo = 0; campo < CANTIDAD_CAMPOS; campo++) {
+                String texto = textos[campo][fila];
+                if (texto == null) {
+                    continue;
+                }
+                for (int i = 0; i + 3 <= texto.length(); i++) {
+                    acumulado.computeIfAbsent(clave(campo, texto, i), k -> new ListaFilas()).agregar(fila);
+                }
+            }
+        }
+
+        long[] trigramas = acumulado.keySet().stream().mapToLong(Long::longValue).sorted().toArray();
+        int[][] postings = new int[trigramas.length][];
+        for (int i = 0; i < trigramas.length; i++) {
+            postings[i] = acumulado.get(trigramas[i]).compactar();
+        }
+        return new CatalogoSnapshot(ids, filas, proveedorIds, tipoIds, textos, trigramas, postings);
+    }
+
+    int size() {
+        return ids.length;
+    }
+
+    int[] rangos(String campo, Comparator<ProductoPageDTO> comparador) {
+        return rangos.computeIfAbsent(campo, c -> {
+            int n = filas.length;
+            Integer[] orden = new Integer[n];
+            for (int i = 0; i < n; i++) {
+                orden[i] = i;
+            }
+            Arrays.sort(orden, (a, b) -> comparador.compare(filas[a], filas[b]));
+            int[] rango = new int[n];
+            for (int i = 1; i < n; i++) {
+                boolean igual = comparador.compare(filas[orden[i - 1]], filas[orden[i]]) == 0;
+                rango[orden[i]] = igual ? rango[orden[i - 1]] : i;
+            }
+            return rango;
+        });
+    }
+
+    int indiceDe(long id) {
+        int pos = Arrays.binarySearch(ids, id);
+        return pos >= 0 ? pos : -1;
+    }
+
+    /**
+     * Devuelve un bitset con las filas que cumplen el filtro: OR entre los términos de texto
+     * presentes (contains sobre el campo en minúsculas) y AND con proveedor/tipo, igual que la
+     * Specification de {@code ProductoService.findAllPaginatedAndFiltered}.
+     */
+    long[] seleccionar(String terminoId, String terminoCodigo, String terminoDescripcion, Long proveedorId, Long tipoId) {
+        int n = ids.length;
+        long[] bits = new long[(n + 63) >>> 6];
+
+        if (terminoId == null && terminoCodigo == null && terminoDescripcion == null) {
+            Arrays.fill(bits, -1L);
+            if ((n & 63) != 0) {
+                bits[bits.length - 1] = (1L << n) - 1;
+            }
+        } else {
+            if (terminoId != null) marcar(CAMPO_ID, terminoId, bits);
+            if (terminoCodigo != null) marcar(CAMPO_CODIGO, terminoCodigo, bits);
+            if (terminoDescripcion != null) marcar(CAMPO_DESCRIPCION, terminoDescripcion, bits);
+        }
+
+        if (proveedorId != null || tipoId != null) {
+            for (int fila = siguiente(bits, 0); fila >= 0; fila = siguiente(bits, fila + 1)) {
+                if ((proveedorId != null && proveedorIds[fila] != proveedorId)
+                        || (tipoId != null && tipoIds[fila] != tipoId)) {
+                    bits[fila >>> 6] &= ~(1L << fila);
+                }
+            }
+        }
+        return bits;
+    }
+
+    private void marcar(int campo, String termino, long[] bits) {
+        String[] columna = textos[campo];
+        if (termino.length() < 3) {
+            for (int fila = 0; fila < columna.length; fila++) {
+                if (columna[fila] != null && columna[fila].contains(termino)) {
+                    bits[fila >>> 6] |= 1L << fila;
+                }
+            }
+            return;
+        }
+
+        int cantidad = termino.length() - 2;
+        int[][] listas = new int[cantidad][];
+        for (int i = 0; i < cantidad; i++) {
+            int pos = Arrays.binarySearch(trigramas, clave(campo, termino, i));
+            if (pos < 0) {
+                return;
+            }
+            listas[i] = postings[pos];
+        }
+        Arrays.sort(listas, Comparator.comparingInt(lista -> lista.length));
+        int limite = Math.min(cantidad, MAX_LISTAS_INTERSECCION);
+
+        candidatos:
+        for (int fila : listas[0]) {
+            for (int j = 1; j < limite; j++) {
+                if (Arrays.binarySearch(listas[j], fila) < 0) {
+                    continue candidatos;
+                }
+            }
+            if (columna[fila].contains(termino)) {
+                bits[fila >>> 6] |= 1L << fila;
+            }
+        }
+    }
+
+    static String normalizar(String texto) {
+        return texto != null ? texto.toLowerCase(Locale.ROOT) : null;
+    }
+
+    /** Equivalente en memoria de {@code f_unaccent(lower(...))} usado por la búsqueda en la base. */
+    static String normalizarSinAcentos(String texto) {
+        if (texto == null) {
+            return null;
+        }
+        return MARCAS_DIACRITICAS.matcher(Normalizer.normalize(normalizar(texto), Normalizer.Form.NFD)).replaceAll("");
+    }
+
+    private static long clave(int campo, String texto, int desde) {
+        return ((long) campo << 48)
+                | ((long) texto.charAt(desde) << 32)
+                | ((long) texto.charAt(desde + 1) << 16)
+                | texto.charAt(desde + 2);
+    }
+
+    static long contar(long[] bits) {
+        long total = 0;
+        for (long palabra : bits) {
+            total += Long.bitCount(palabra);
+        }
+        return total;
+    }
+
+    static boolean marcada(long[] bits, int fila) {
+        return (bits[fila >>> 6] & (1L << fila)) != 0;
+    }
+
+    /** Primera fila marcada con índice mayor o igual a {@code desde}, o -1. */
+    static int siguiente(long[] bits, int desde) {
+        int w = desde >>> 6;
+        if (desde < 0 || w >= bits.length) {
+            return -1;
+        }
+        long palabra = bits[w] & (-1L << desde);
+        while (true) {
+            if (palabra != 0) {
+                return (w << 6) + Long.numberOfTrailingZeros(palabra);
+            }
+            if (++w == bits.length) {
+                return -1;
+            }
+            palabra = bits[w];
+        }
+    }
+
+    /** Última fila marcada con índice menor o igual a {@code desde}, o -1. */
+    static int anterior(long[] bits, int desde) {
+        if (desde < 0 || bits.length == 0) {
+            return -1;
+        }
+        int w = desde >>> 6;
+        if (w >= bits.length) {
+            w = bits.length - 1;
+            desde = (w << 6) + 63;
+        }
+        long palabra = bits[w] & (-1L >>> (63 - (desde & 63)));
+        while (true) {
+            if (palabra != 0) {
+                return (w << 6) + 63 - Long.numberOfLeadingZeros(palabra);
+            }
+            if (w-- == 0) {
+                return -1;
+            }
+            palabra = bits[w];
+        }
+    }
+
+    private static final class ListaFilas {
+        private int[] datos = new int[4];
+        private int tam;
+
+        void agregar(int fila) {
+            // Las filas llegan en orden, así que un trigrama repetido en la misma fila queda contiguo.
+            if (tam > 0 && datos[tam - 1] == fila) {
+                return;
+            }
+            if (tam == datos.length) {
+                datos = Arrays.copyOf(datos, tam * 2);
+            }
+            datos[tam++] = fila;
+        }
+
+        int[] compactar() {
+            return Arrays.copyOf(datos, tam);
+        }
+    }
+}
@@ -0,0 +1,260 @@
+package micro.microservicio_producto.services;
+
+import jakarta.annotation.PostConstruct;
+import micro.microservicio_producto.services.ParticionesVentaService.ParticionArchivada;
+import micro.microservicio_producto.services.SegmentoVentas.ItemFrio;
+import micro.microservicio_producto.services.SegmentoVentas.VentaFria;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Nivel frío del historial: un {@link SegmentoVentas} por mes en {@code app.storage.archive}
+ * ({@code ventas-AAAA-MM.seg}) con las ventas que ya no están en la base. Los segmentos se abren
+ * la primera vez que se consultan y quedan mapeados.
+ */
+@Service
+public class AlmacenFrioVentas {
+
+    private static final Logger log = LoggerFactory.getLogger(AlmacenFrioVentas.class);
+
+    private static final Pattern NOMBRE_SEGMENTO = Pattern.compile("ventas-(\\d{4})-(\\d{2})\\.seg");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate lecturaTemplate;
+    private final Path directorio;
+
+    private final NavigableSet<YearMonth> meses = new ConcurrentSkipListSet<>();
+    private final ConcurrentHashMap<YearMonth, SegmentoVentas> abiertos = new ConcurrentHashMap<>();
+
+    @Value("${app.ventas.export.fetch-size:500}")
+    private int fetchSize;
+
+    public AlmacenFrioVentas(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                             @Value("${app.storage.archive}") String directorio) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.lecturaTemplate = new TransactionTemplate(transactionManager);
+        this.lecturaTemplate.setReadOnly(true);
+        this.directorio = Paths.get(directorio);
+    }
+
+    // Antes de cualquier evento: otros servicios consultan los segmentos al arrancar
+    @PostConstruct
+    public void cargar() {
+        if (!Files.isDirectory(directorio)) {
+            return;
+        }
+        try (DirectoryStream<Path> archivos = Files.newDirectoryStream(directorio, "ventas-*.seg")) {
+            for (Path archivo : archivos) {
+                Matcher m = NOMBRE_SEGMENTO.matcher(archivo.getFileName().toString());
+                if (m.matches()) {
+                    meses.add(YearMonth.of(Integer.parseInt(m.group(1)), Integer.parseInt(m.group(2))));
+                }
+            }
+            if (!meses.isEmpty()) {
+                log.info("Segmentos de ventas disponibles: {} meses ({} a {}).", meses.size(), meses.first(), meses.last());
+            }
+        } catch (IOException e) {
+            log.error("No se pudo listar los segmentos de ventas en {}: {}", directorio, e.getMessage());
+        }
+    }
+
+    public Optional<YearMonth> primerMes() {
+        return meses.isEmpty() ? Optional.empty() : Optional.of(meses.first());
+    }
+
+    public Optional<VentaFria> buscarPorNumero(String numero) {
+        for (YearMonth mes : meses.descendingSet()) {
+            Optional<VentaFria> venta = segmento(mes).flatMap(s -> s.buscarPorNumero(numero));
+            if (venta.isPresent()) {
+                return venta;
+            }
+        }
+        return Optional.empty();
+    }
+
+    /** La venta más reciente cuyo número termina en {@code sufijo}. */
+    public Optional<VentaFria> buscarPorSufijo(String sufijo) {
+        for (YearMonth mes : meses.descendingSet()) {
+            Optional<VentaFria> venta = segmento(mes).flatMap(s -> s.buscarPorSufijo(sufijo));
+            if (venta.isPresent()) {
+                return venta;
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Ventas de los segmentos en el rango (inclusivo y opcional en cada extremo) y anteriores al
+     * cursor, de la más reciente a la más antigua, un bloque descomprimido por vez.
+     */
+    public Iterator<VentaFria> recorrer(LocalDate desde, LocalDate hasta, VentaCursor cursor) {
+        LocalDateTime inicio = desde != null ? desde.atStartOfDay() : null;
+        LocalDateTime fin = hasta != null ? hasta.plusDays(1).atStartOfDay() : null;
+        List<YearMonth> incluidos = new ArrayList<>();
+        for (YearMonth mes : meses.descendingSet()) {
+            boolean antesDelRango = desde != null && mes.isBefore(YearMonth.from(desde));
+            boolean despuesDelRango = (hasta != null && mes.isAfter(YearMonth.from(hasta)))
+                    || (cursor != null && mes.isAfter(YearMonth.from(cursor.fechaVenta())));
+            if (!antesDelRango && !despuesDelRango) {
+                incluidos.add(mes);
+            }
+        }
+        Iterator<YearMonth> pendientes = incluidos.iterator();
+        return new Iterator<>() {
+            private Iterator<VentaFria> actual = Collections.emptyIterator();
+
+            @Override
+            public boolean hasNext() {
+                while (!actual.hasNext() && pendientes.hasNext()) {
+                    actual = segmento(pendientes.next())
+                            .map(s -> s.recorrer(inicio, fin, cursor))
+                            .orElse(Collections.emptyIterator());
+                }
+                return actual.hasNext();
+            }
+
+            @Override
+            public VentaFria next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return actual.next();
+            }
+        };
+    }
+
+    /**
+     * Escribe en un segmento el mes archivado de la partición y lo deja disponible para consultas.
+     * Devuelve la cantidad de ventas escritas; la partición no se toca.
+     */
+    public int congelar(ParticionArchivada particion) throws IOException {
+        Files.createDirectories(directorio);
+        String sql = """
+                SELECT v.id, v.numero_comprobante, v.fecha_venta, v.total_venta,
+                       i.id AS item_id, i.producto_id, i.producto_descripcion, i.cantidad, i.precio_unitario
+                FROM %s v
+                LEFT JOIN %s i ON i.venta_id = v.id
+                ORDER BY v.fecha_venta DESC, v.id DESC, i.id
+                """.formatted(particion.ventas(), particion.items());
+        PreparedStatementCreator consulta = con -> {
+            PreparedStatement ps = con.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(fetchSize);
+            return ps;
+        };
+
+        Path destino = archivo(particion.mes());
+        int[] escritas = {0};
+        try (SegmentoVentas.Escritor escritor = new SegmentoVentas.Escritor(destino)) {
+            try {
+                lecturaTemplate.executeWithoutResult(status -> {
+                    // Mismo criterio que el historial: filas de una venta consecutivas, se entrega al cambiar de id
+                    VentaFria[] actual = {null};
+                    jdbcTemplate.query(consulta, rs -> {
+                        long id = rs.getLong("id");
+                        if (actual[0] == null || actual[0].id() != id) {
+                            agregar(escritor, actual[0], escritas);
+                            actual[0] = new VentaFria(id, rs.getString("numero_comprobante"),
+                                    rs.getTimestamp("fecha_venta").toLocalDateTime(), rs.getBigDecimal("total_venta"),
+                                    new ArrayList<>());
+                        }
+                        long itemId = rs.getLong("item_id");
+                        if (!rs.wasNull()) {
+                            long productoId = rs.getLong("producto_id");
+                            actual[0].items().add(new ItemFrio(itemId, rs.wasNull() ? null : productoId,
+                                    rs.getString("producto_descripcion"), rs.getInt("cantidad"),
+                                    rs.getBigDecimal("precio_unitario")));
+                        }
+                    });
+                    agregar(escritor, actual[0], escritas);
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            escritor.terminar();
+        }
+
+        abiertos.remove(particion.mes());
+        meses.add(particion.mes());
+        return escritas[0];
+    }
+
+    /** Crea el directorio de segmentos si falta y dice si se puede escribir en él. */
+    public boolean directorioEscribible() {
+        try {
+            Files.createDirectories(directorio);
+        } catch (IOException e) {
+            log.error("No se pudo crear el directorio de segmentos {}: {}", directorio, e.getMessage());
+            return false;
+        }
+        return Files.isWritable(directorio);
+    }
+
+    /** Ventas del segmento del mes, o -1 si no hay segmento. Lee el índice, no los bloques. */
+    public int contarVentas(YearMonth mes) {
+        return segmento(mes).map(SegmentoVentas::cantidadVentas).orElse(-1);
+    }
+
+    private static void agregar(SegmentoVentas.Escritor escritor, VentaFria venta, int[] escritas) {
+        if (venta == null) {
+            return;
+        }
+        try {
+            escritor.agregar(venta);
+            escritas[0]++;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Optional<SegmentoVentas> segmento(YearMonth mes) {
+        if (!meses.contains(mes)) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(abiertos.computeIfAbsent(mes, m -> {
+                try {
+                    return SegmentoVentas.abrir(archivo(m));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }));
+        } catch (UncheckedIOException e) {
+            // Un segmento ilegible no debe tumbar la búsqueda en los demás
+            log.error("No se pudo abrir el segmento de ventas de {}: {}", mes, e.getCause().getMessage());
+            return Optional.empty();
+        }
+    }
+
+    private Path archivo(YearMonth mes) {
+        return directorio.resolve("ventas-%04d-%02d.seg".formatted(mes.getYear(), mes.getMonthValue()));
+    }
+}
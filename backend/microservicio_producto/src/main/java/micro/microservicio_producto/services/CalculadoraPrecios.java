@@ -0,0 +1,246 @@
+package micro.microservicio_producto.services;
+
+import micro.microservicio_producto.entities.Producto;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Fórmula de precios de productos. {@link #recalcularReferencia} y {@link #costoFijoReferencia}
+ * son la implementación con BigDecimal; {@link #calcular} y {@link #calcularCostoFijo} hacen la
+ * misma cuenta sobre {@code long} en punto fijo de 4 decimales, sin crear objetos, con los mismos
+ * redondeos (HALF_UP al guardar cada columna y CEILING al múltiplo de resto).
+ * <p>
+ * Los intermedios se mantienen exactos como en la referencia: {@code precio_sin_iva * (1 + iva)}
+ * queda en escala 8, el precio público en dólares en escala 12 y el precio sin redondear en
+ * escala 16, que no entra en 64 bits y se divide con un producto de 128 bits. Si algún valor no es
+ * representable (más de 4 decimales, negativo o fuera de rango) se lanza
+ * {@link ArithmeticException} y {@link #recalcular}/{@link #calcularCostoFijo(Producto)} usan la
+ * referencia.
+ */
+public final class CalculadoraPrecios {
+
+    public static final int ESCALA = 4;
+    public static final long UNO = 10_000L;
+
+    private static final long RESTO_DEFAULT = 100 * UNO;
+    private static final BigDecimal RESTO_DEFAULT_BD = new BigDecimal("100");
+    private static final BigDecimal CIEN = new BigDecimal("100");
+    private static final long E8 = UNO * UNO;
+    private static final long E12 = E8 * UNO;
+
+    private CalculadoraPrecios() {
+    }
+
+    /**
+     * Columnas calculadas, en escala 4 salvo {@code precioPublico}, que va en escala 2.
+     * Es mutable para poder reutilizarla en recálculos masivos.
+     */
+    public static final class Resultado {
+        private long costoDolares;
+        private long costoPesos;
+        private long precioPublicoUs;
+        private long precioSinRedondear;
+        private long precioPublico;
+
+        public long getCostoDolares() { return costoDolares; }
+        public long getCostoPesos() { return costoPesos; }
+        public long getPrecioPublicoUs() { return precioPublicoUs; }
+        public long getPrecioSinRedondear() { return precioSinRedondear; }
+        public long getPrecioPublico() { return precioPublico; }
+    }
+
+    // --- Punto fijo ---
+
+    /**
+     * Precios de un producto con costo en dólares. Todos los argumentos van en escala 4;
+     * {@code resto <= 0} usa 100.
+     */
+    public static void calcular(long precioSinIva, long iva, long ganancia, long resto, long dolar, Resultado r) {
+        requerirNoNegativo(precioSinIva, iva, ganancia, dolar);
+        long pg = dividirHalfUp(ganancia, 100);
+        long divisorResto = resto > 0 ? resto : RESTO_DEFAULT;
+
+        long costoDolares8 = Math.multiplyExact(precioSinIva, UNO + iva);
+        long publicoUs12 = Math.multiplyExact(costoDolares8, UNO + pg);
+
+        r.costoDolares = dividirHalfUp(costoDolares8, UNO);
+        r.costoPesos = multiplicarDividirHalfUp(costoDolares8, dolar, E8);
+        r.precioPublicoUs = dividirHalfUp(publicoUs12, E8);
+
+        // precio sin redondear exacto = publicoUs12 * dolar en escala 16
+        long cociente = multiplicarDividir(publicoUs12, dolar, E12);
+        long resto16 = publicoUs12 * dolar - cociente * E12;
+        r.precioSinRedondear = resto16 >= E12 - resto16 ? cociente + 1 : cociente;
+        r.precioPublico = precioPublico(cociente, resto16 != 0, divisorResto);
+    }
+
+    /**
+     * Precios de un producto de costo fijo en pesos. Sólo se calculan {@code precioSinRedondear}
+     * y {@code precioPublico}; el resto de {@code r} no se modifica.
+     */
+    public static void calcularCostoFijo(long costoPesos, long ganancia, long resto, Resultado r) {
+        requerirNoNegativo(costoPesos, ganancia, 0, 0);
+        long pg = dividirHalfUp(ganancia, 100);
+        long divisorResto = resto > 0 ? resto : RESTO_DEFAULT;
+
+        long sinRedondear8 = Math.multiplyExact(costoPesos, UNO + pg);
+        long cociente = sinRedondear8 / UNO;
+        long resto8 = sinRedondear8 - cociente * UNO;
+        r.precioSinRedondear = resto8 >= UNO - resto8 ? cociente + 1 : cociente;
+        r.precioPublico = precioPublico(cociente, resto8 != 0, divisorResto);
+    }
+
+    /**
+     * ceil(valor / resto) * resto llevado a escala 2 con HALF_UP. {@code piso} es el valor exacto
+     * truncado a escala 4 y {@code conFraccion} indica si quedó algo después del cuarto decimal.
+     */
+    private static long precioPublico(long piso, boolean conFraccion, long resto) {
+        long multiplos = piso / resto;
+        if (conFraccion || piso % resto != 0) {
+            multiplos++;
+        }
+        return dividirHalfUp(Math.multiplyExact(multiplos, resto), 100);
+    }
+
+    // --- Producto ---
+
+    /**
+     * Recalcula un producto con costo en dólares. Deja el producto sin cambios si le faltan datos.
+     *
+     * @return false si faltan datos base
+     */
+    public static boolean recalcular(Producto producto, BigDecimal valorDolar) {
+        if (producto.getPrecio_sin_iva() == null || producto.getIva() == null || producto.getPorcentaje_ganancia() == null) {
+            return false;
+        }
+        try {
+            Resultado r = new Resultado();
+            calcular(aEscala(producto.getPrecio_sin_iva()), aEscala(producto.getIva()),
+                    aEscala(producto.getPorcentaje_ganancia()), restoEscalado(producto.getResto()), aEscala(valorDolar), r);
+            producto.setCosto_dolares(BigDecimal.valueOf(r.costoDolares, ESCALA));
+            producto.setCosto_pesos(BigDecimal.valueOf(r.costoPesos, ESCALA));
+            producto.setPrecio_publico_us(BigDecimal.valueOf(r.precioPublicoUs, ESCALA));
+            producto.setPrecio_sin_redondear(BigDecimal.valueOf(r.precioSinRedondear, ESCALA));
+            producto.setPrecio_publico(BigDecimal.valueOf(r.precioPublico, 2));
+        } catch (ArithmeticException e) {
+            recalcularReferencia(producto, valorDolar);
+        }
+        return true;
+    }
+
+    /**
+     * Recalcula un producto de costo fijo. Deja el producto sin cambios si le faltan datos.
+     *
+     * @return false si falta costo_pesos o porcentaje_ganancia
+     */
+    public static boolean calcularCostoFijo(Producto producto) {
+        if (producto.getCosto_pesos() == null || producto.getPorcentaje_ganancia() == null) {
+            return false;
+        }
+        try {
+            Resultado r = new Resultado();
+            calcularCostoFijo(aEscala(producto.getCosto_pesos()), aEscala(producto.getPorcentaje_ganancia()),
+                    restoEscalado(producto.getResto()), r);
+            producto.setPrecio_sin_redondear(BigDecimal.valueOf(r.precioSinRedondear, ESCALA));
+            producto.setPrecio_publico(BigDecimal.valueOf(r.precioPublico, 2));
+        } catch (ArithmeticException e) {
+            costoFijoReferencia(producto);
+        }
+        return true;
+    }
+
+    // --- Referencia con BigDecimal ---
+
+    static void recalcularReferencia(Producto producto, BigDecimal valorDolar) {
+        BigDecimal porcentajeGanancia = producto.getPorcentaje_ganancia().divide(CIEN, 4, RoundingMode.HALF_UP);
+        BigDecimal costoDolares = producto.getPrecio_sin_iva().multiply(BigDecimal.ONE.add(producto.getIva()));
+        producto.setCosto_dolares(costoDolares.setScale(4, RoundingMode.HALF_UP));
+        BigDecimal costoPesos = costoDolares.multiply(valorDolar);
+        producto.setCosto_pesos(costoPesos.setScale(4, RoundingMode.HALF_UP));
+        BigDecimal precioPublicoUs = costoDolares.multiply(BigDecimal.ONE.add(porcentajeGanancia));
+        producto.setPrecio_publico_us(precioPublicoUs.setScale(4, RoundingMode.HALF_UP));
+        BigDecimal precioSinRedondear = precioPublicoUs.multiply(valorDolar);
+        producto.setPrecio_sin_redondear(precioSinRedondear.setScale(4, RoundingMode.HALF_UP));
+        BigDecimal resto = restoReferencia(producto.getResto());
+        BigDecimal precioPublico = precioSinRedondear.divide(resto, 0, RoundingMode.CEILING).multiply(resto);
+        producto.setPrecio_publico(precioPublico.setScale(2, RoundingMode.HALF_UP));
+    }
+
+    static void costoFijoReferencia(Producto producto) {
+        BigDecimal porcentajeGanancia = producto.getPorcentaje_ganancia().divide(CIEN, 4, RoundingMode.HALF_UP);
+        BigDecimal precioSinRedondear = producto.getCosto_pesos().multiply(BigDecimal.ONE.add(porcentajeGanancia));
+        producto.setPrecio_sin_redondear(precioSinRedondear.setScale(4, RoundingMode.HALF_UP));
+        BigDecimal resto = restoReferencia(producto.getResto());
+        BigDecimal precioPublico = precioSinRedondear.divide(resto, 0, RoundingMode.CEILING).multiply(resto);
+        producto.setPrecio_publico(precioPublico.setScale(2, RoundingMode.HALF_UP));
+    }
+
+    private static BigDecimal restoReferencia(BigDecimal resto) {
+        return resto != null && resto.compareTo(BigDecimal.ZERO) > 0 ? resto : RESTO_DEFAULT_BD;
+    }
+
+    // --- Aritmética ---
+
+    /**
+     * Valor en escala 4. Lanza {@link ArithmeticException} si tiene más de 4 decimales
+     * significativos o no entra en un long.
+     */
+    public static long aEscala(BigDecimal valor) {
+        return valor.setScale(ESCALA, RoundingMode.UNNECESSARY).unscaledValue().longValueExact();
+    }
+
+    private static long restoEscalado(BigDecimal resto) {
+        return resto != null && resto.signum() > 0 ? aEscala(resto) : RESTO_DEFAULT;
+    }
+
+    private static void requerirNoNegativo(long a, long b, long c, long d) {
+        if ((a | b | c | d) < 0) {
+            throw new ArithmeticException("Valores negativos fuera del camino de punto fijo");
+        }
+    }
+
+    /** a / d con HALF_UP, para a >= 0 y d > 0. */
+    private static long dividirHalfUp(long a, long d) {
+        long q = a / d;
+        long r = a - q * d;
+        return r >= d - r ? q + 1 : q;
+    }
+
+    /** a * b / d con HALF_UP, para a, b >= 0 y d > 0, con el producto en 128 bits. */
+    private static long multiplicarDividirHalfUp(long a, long b, long d) {
+        long q = multiplicarDividir(a, b, d);
+        long r = a * b - q * d;
+        return r >= d - r ? q + 1 : q;
+    }
+
+    /**
+     * floor(a * b / d) para a, b >= 0 y 0 < d < 2^62. El resto es {@code a * b - q * d} con
+     * aritmética de 64 bits (entra porque es menor que d).
+     */
+    static long multiplicarDividir(long a, long b, long d) {
+        long alto = Math.multiplyHigh(a, b);
+        long bajo = a * b;
+        if (alto == 0 && bajo >= 0) {
+            return bajo / d;
+        }
+        if (alto >= d) {
+            throw new ArithmeticException("Resultado fuera de rango");
+        }
+        // División larga bit a bit de 128 por 64; alto < d garantiza que el cociente entra en 64 bits
+        long resto = alto;
+        long cociente = 0;
+        for (int i = 63; i >= 0; i--) {
+            resto = (resto << 1) | ((bajo >>> i) & 1);
+            cociente <<= 1;
+            if (resto >= d) {
+                resto -= d;
+                cociente |= 1;
+            }
+        }
+        if (cociente < 0) {
+            throw new ArithmeticException("Resultado fuera de rango");
+        }
+        return cociente;
+    }
+}
@@ -0,0 +1,355 @@
+package micro.microservicio_producto.services;
+
+import feign.FeignException;
+import micro.microservicio_producto.entities.Producto;
+import micro.microservicio_producto.exceptions.ResourceNotFoundException;
+import micro.microservicio_producto.feignClients.ProveedorClient;
+import micro.microservicio_producto.feignClients.TipoProductoClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.sql.Array;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Motor de la carga masiva de productos. Por cada lote de {@code app.carga-masiva.lote} filas:
+ * trae de una vez las filas existentes por (codigo_producto, proveedor_id), mezcla los campos
+ * informados, recalcula precios y escribe con un único batch JDBC de
+ * {@code INSERT ... ON CONFLICT (id) DO UPDATE}. Las filas nuevas reciben su ID de la secuencia
+ * antes del insert, por bloques como los reserva Hibernate, así el upsert se resuelve por la clave primaria; no hay restricción única
+ * por código porque la base admite códigos repetidos (V4). Las filas cuyo contenido no cambia
+ * no se escriben.
+ * <p>
+ * Como en la carga fila por fila, a una fila sin los datos base para sus precios se le avisa en
+ * el log y se guarda tal como quedó. A diferencia de aquélla, los productos relacionados no se
+ * tocan: el JSON de la carga no los trae ({@code productosRelacionados} es back reference) y la
+ * carga anterior dejaba sin relaciones a cada producto existente que actualizaba.
+ * <p>
+ * No abre transacción propia: corre en la del llamador.
+ */
+@Service
+public class CargaMasivaService {
+
+    private static final Logger log = LoggerFactory.getLogger(CargaMasivaService.class);
+
+    private static final BigDecimal RESTO_DEFAULT = new BigDecimal("100");
+
+    private static final String COLUMNAS = "codigo_producto, descripcion, cantidad, iva, precio_publico, resto, "
+            + "precio_sin_redondear, precio_publico_us, porcentaje_ganancia, costo_dolares, costo_pesos, "
+            + "precio_sin_iva, costo_fijo, fecha_ingreso, proveedor_id, tipo_producto_id";
+
+    private static final String SQL_EXISTENTES = """
+            SELECT p.id, p.created_at, %s
+            FROM producto p
+            JOIN unnest(CAST(? AS varchar[]), CAST(? AS bigint[])) AS t(codigo, proveedor)
+              ON p.codigo_producto = t.codigo AND p.proveedor_id IS NOT DISTINCT FROM t.proveedor
+            ORDER BY p.id
+            """.formatted("p." + COLUMNAS.replace(", ", ", p."));
+
+    private static final String SQL_UPSERT = "INSERT INTO producto (id, " + COLUMNAS + ", created_at, updated_at) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?) "
+            + "ON CONFLICT (id) DO UPDATE SET "
+            + Arrays.stream(COLUMNAS.split(", ")).map(c -> c + " = EXCLUDED." + c)
+                    .reduce((a, b) -> a + ", " + b).orElseThrow()
+            + ", updated_at = EXCLUDED.updated_at";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ProveedorClient proveedorClient;
+    private final TipoProductoClient tipoProductoClient;
+    private final ReferenciaCacheService referenciaCache;
+
+    @Value("${app.carga-masiva.lote:500}")
+    private int tamanioLote;
+
+    public CargaMasivaService(JdbcTemplate jdbcTemplate, ProveedorClient proveedorClient,
+                              TipoProductoClient tipoProductoClient, ReferenciaCacheService referenciaCache) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.proveedorClient = proveedorClient;
+        this.tipoProductoClient = tipoProductoClient;
+        this.referenciaCache = referenciaCache;
+    }
+
+    /**
+     * Resultado de una carga.
+     *
+     * @param idsEscritos IDs insertados o actualizados
+     */
+    public record Resultado(int insertados, int actualizados, int sinCambios, List<Long> idsEscritos) {
+    }
+
+    /**
+     * Importa las filas en el orden recibido. Si un mismo código y proveedor aparece más de una
+     * vez, cada aparición se mezcla sobre la anterior.
+     *
+     * @throws ResourceNotFoundException si algún proveedor o tipo de producto no existe
+     */
+    public Resultado importar(List<Producto> filas, BigDecimal valorDolarGeneral) {
+        if (filas == null || filas.isEmpty()) {
+            return new Resultado(0, 0, 0, List.of());
+        }
+        validarReferencias(filas);
+        Map<Long, BigDecimal> cotizaciones = cotizacionesManuales(filas);
+
+        int insertados = 0;
+        int actualizados = 0;
+        int sinCambios = 0;
+        List<Long> idsEscritos = new ArrayList<>();
+        for (int desde = 0; desde < filas.size(); desde += tamanioLote) {
+            Resultado lote = procesarLote(filas.subList(desde, Math.min(desde + tamanioLote, filas.size())),
+                    valorDolarGeneral, cotizaciones);
+            insertados += lote.insertados();
+            actualizados += lote.actualizados();
+            sinCambios += lote.sinCambios();
+            idsEscritos.addAll(lote.idsEscritos());
+        }
+        log.info("Carga masiva: {} filas, {} insertadas, {} actualizadas, {} sin cambios.",
+                filas.size(), insertados, actualizados, sinCambios);
+        return new Resultado(insertados, actualizados, sinCambios, idsEscritos);
+    }
+
+    private Resultado procesarLote(List<Producto> filas, BigDecimal valorDolarGeneral, Map<Long, BigDecimal> cotizaciones) {
+        for (Producto fila : filas) {
+            if (fila.getCodigoProducto() == null || fila.getCodigoProducto().trim().isEmpty()) {
+                fila.setCodigoProducto("PROD-" + UUID.randomUUID().toString().substring(0, 8).toUpperCase());
+            }
+        }
+        Map<Clave, Producto> existentes = buscarExistentes(filas);
+        Map<Clave, Huella> originales = new HashMap<>();
+        existentes.forEach((clave, producto) -> originales.put(clave, Huella.de(producto)));
+
+        // Estado final por clave, en orden de aparición
+        Map<Clave, Producto> resultado = new LinkedHashMap<>();
+        for (Producto fila : filas) {
+            Clave clave = new Clave(fila.getCodigoProducto(), fila.getProveedorId());
+            Producto actual = resultado.containsKey(clave) ? resultado.get(clave) : existentes.get(clave);
+            Producto destino;
+            if (actual != null) {
+                ProductoService.copiarCamposEscalares(actual, fila);
+                destino = actual;
+            } else {
+                destino = fila;
+                if (destino.getFecha_ingreso() == null) {
+                    destino.setFecha_ingreso(LocalDate.now());
+                }
+            }
+            if (destino.getResto() == null || destino.getResto().compareTo(BigDecimal.ZERO) <= 0) {
+                destino.setResto(RESTO_DEFAULT);
+            }
+            boolean calculado;
+            if (destino.isCostoFijo()) {
+                calculado = CalculadoraPrecios.calcularCostoFijo(destino);
+            } else {
+                BigDecimal dolar = destino.getProveedorId() != null
+                        ? cotizaciones.getOrDefault(destino.getProveedorId(), valorDolarGeneral)
+                        : valorDolarGeneral;
+                calculado = CalculadoraPrecios.recalcular(destino, dolar);
+            }
+            if (!calculado) {
+                log.warn("Producto {} no tiene los datos base para calcular precios. Se guarda sin recalcular.",
+                        destino.getCodigoProducto());
+            }
+            resultado.put(clave, destino);
+        }
+
+        List<Producto> aEscribir = new ArrayList<>();
+        int sinCambios = 0;
+        int nuevos = 0;
+        for (Map.Entry<Clave, Producto> entrada : resultado.entrySet()) {
+            Producto producto = entrada.getValue();
+            if (producto.getId() == null) {
+                nuevos++;
+                aEscribir.add(producto);
+            } else if (Huella.de(producto).equals(originales.get(entrada.getKey()))) {
+                sinCambios++;
+            } else {
+                aEscribir.add(producto);
+            }
+        }
+        asignarIds(aEscribir, nuevos);
+        escribir(aEscribir);
+
+        return new Resultado(nuevos, aEscribir.size() - nuevos, sinCambios,
+                aEscribir.stream().map(Producto::getId).toList());
+    }
+
+    private Map<Clave, Producto> buscarExistentes(List<Producto> filas) {
+        String[] codigos = new String[filas.size()];
+        Long[] proveedores = new Long[filas.size()];
+        for (int i = 0; i < filas.size(); i++) {
+            codigos[i] = filas.get(i).getCodigoProducto();
+            proveedores[i] = filas.get(i).getProveedorId();
+        }
+        Map<Clave, Producto> existentes = new HashMap<>();
+        jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(SQL_EXISTENTES);
+            Array arrayCodigos = con.createArrayOf("varchar", codigos);
+            Array arrayProveedores = con.createArrayOf("bigint", proveedores);
+            ps.setArray(1, arrayCodigos);
+            ps.setArray(2, arrayProveedores);
+            return ps;
+        }, rs -> {
+            Producto p = mapear(rs);
+            // Con códigos repetidos gana la fila de menor ID, igual en cada carga
+            existentes.putIfAbsent(new Clave(p.getCodigoProducto(), p.getProveedorId()), p);
+        });
+        return existentes;
+    }
+
+    /**
+     * La secuencia avanza de a {@code allocationSize} (pooled): cada nextval es el tope de un
+     * bloque de IDs libres, así que se pide uno por bloque y no uno por fila.
+     */
+    private void asignarIds(List<Producto> productos, int nuevos) {
+        if (nuevos == 0) {
+            return;
+        }
+        Long incremento = jdbcTemplate.queryForObject(
+                "SELECT increment_by FROM pg_sequences WHERE schemaname = current_schema() AND sequencename = 'producto_id_seq'",
+                Long.class);
+        long tamanioBloque = incremento != null && incremento > 0 ? incremento : 1;
+        long bloques = (nuevos + tamanioBloque - 1) / tamanioBloque;
+        List<Long> reservados = new ArrayList<>(nuevos);
+        for (Long tope : jdbcTemplate.queryForList(
+                "SELECT nextval('producto_id_seq') FROM generate_series(1, ?)", Long.class, bloques)) {
+            for (long id = tope - tamanioBloque + 1; id <= tope && reservados.size() < nuevos; id++) {
+                reservados.add(id);
+            }
+        }
+        Iterator<Long> ids = reservados.iterator();
+        for (Producto producto : productos) {
+            if (producto.getId() == null) {
+                producto.setId(ids.next());
+            }
+        }
+    }
+
+    private void escribir(List<Producto> productos) {
+        if (productos.isEmpty()) {
+            return;
+        }
+        Timestamp ahora = Timestamp.valueOf(LocalDateTime.now());
+        jdbcTemplate.batchUpdate(SQL_UPSERT, productos, productos.size(), (ps, p) -> {
+            int i = 1;
+            ps.setLong(i++, p.getId());
+            ps.setString(i++, p.getCodigoProducto());
+            ps.setString(i++, p.getDescripcion());
+            ps.setInt(i++, p.getCantidad());
+            ps.setBigDecimal(i++, p.getIva());
+            ps.setBigDecimal(i++, p.getPrecio_publico());
+            ps.setBigDecimal(i++, p.getResto());
+            ps.setBigDecimal(i++, p.getPrecio_sin_redondear());
+            ps.setBigDecimal(i++, p.getPrecio_publico_us());
+            ps.setBigDecimal(i++, p.getPorcentaje_ganancia());
+            ps.setBigDecimal(i++, p.getCosto_dolares());
+            ps.setBigDecimal(i++, p.getCosto_pesos());
+            ps.setBigDecimal(i++, p.getPrecio_sin_iva());
+            ps.setBoolean(i++, p.isCostoFijo());
+            ps.setObject(i++, p.getFecha_ingreso(), Types.DATE);
+            ps.setObject(i++, p.getProveedorId(), Types.BIGINT);
+            ps.setObject(i++, p.getTipoProductoId(), Types.BIGINT);
+            ps.setTimestamp(i++, p.getCreatedAt() != null ? Timestamp.valueOf(p.getCreatedAt()) : ahora);
+            ps.setTimestamp(i, ahora);
+        });
+    }
+
+    /**
+     * Valida de una vez todos los proveedores y tipos referenciados con los endpoints
+     * {@code /validar} de cada servicio.
+     */
+    private void validarReferencias(List<Producto> filas) {
+        Set<Long> proveedorIds = new HashSet<>();
+        Set<Long> tipoIds = new HashSet<>();
+        for (Producto fila : filas) {
+            if (fila.getProveedorId() != null) proveedorIds.add(fila.getProveedorId());
+            if (fila.getTipoProductoId() != null) tipoIds.add(fila.getTipoProductoId());
+        }
+        try {
+            if (!proveedorIds.isEmpty()) proveedorClient.validarProveedores(proveedorIds);
+            if (!tipoIds.isEmpty()) tipoProductoClient.validarTiposProducto(tipoIds);
+        } catch (FeignException.NotFound ex) {
+            log.warn("Carga masiva con referencias inexistentes: {}", ex.getMessage());
+            throw new ResourceNotFoundException("Alguno de los proveedores o tipos de producto de la carga no existe.");
+        }
+    }
+
+    private Map<Long, BigDecimal> cotizacionesManuales(List<Producto> filas) {
+        Set<Long> proveedorIds = new HashSet<>();
+        for (Producto fila : filas) {
+            if (fila.getProveedorId() != null && !fila.isCostoFijo()) proveedorIds.add(fila.getProveedorId());
+        }
+        Map<Long, BigDecimal> cotizaciones = new HashMap<>();
+        if (proveedorIds.isEmpty()) {
+            return cotizaciones;
+        }
+        try {
+            referenciaCache.obtenerProveedores(proveedorIds).forEach((id, proveedor) -> {
+                BigDecimal manual = proveedor.getValorCotizacionManual();
+                if (manual != null && manual.compareTo(BigDecimal.ZERO) > 0) {
+                    cotizaciones.put(id, manual);
+                }
+            });
+        } catch (FeignException e) {
+            log.error("No se pudieron obtener las cotizaciones de los proveedores. Se usa el dólar general. Causa: {}", e.getMessage());
+        }
+        return cotizaciones;
+    }
+
+    private static Producto mapear(ResultSet rs) throws SQLException {
+        Producto p = new Producto();
+        p.setId(rs.getLong("id"));
+        Timestamp creado = rs.getTimestamp("created_at");
+        p.setCreatedAt(creado != null ? creado.toLocalDateTime() : null);
+        p.setCodigoProducto(rs.getString("codigo_producto"));
+        p.setDescripcion(rs.getString("descripcion"));
+        p.setCantidad(rs.getInt("cantidad"));
+        p.setIva(rs.getBigDecimal("iva"));
+        p.setPrecio_publico(rs.getBigDecimal("precio_publico"));
+        p.setResto(rs.getBigDecimal("resto"));
+        p.setPrecio_sin_redondear(rs.getBigDecimal("precio_sin_redondear"));
+        p.setPrecio_publico_us(rs.getBigDecimal("precio_publico_us"));
+        p.setPorcentaje_ganancia(rs.getBigDecimal("porcentaje_ganancia"));
+        p.setCosto_dolares(rs.getBigDecimal("costo_dolares"));
+        p.setCosto_pesos(rs.getBigDecimal("costo_pesos"));
+        p.setPrecio_sin_iva(rs.getBigDecimal("precio_sin_iva"));
+        p.setCostoFijo(rs.getBoolean("costo_fijo"));
+        p.setFecha_ingreso(rs.getObject("fecha_ingreso", LocalDate.class));
+        p.setProveedorId(rs.getObject("proveedor_id", Long.class));
+        p.setTipoProductoId(rs.getObject("tipo_producto_id", Long.class));
+        return p;
+    }
+
+    private record Clave(String codigo, Long proveedorId) {
+    }
+
+    /**
+     * Contenido persistido de un producto, con los decimales normalizados para que 21.00 y 21
+     * cuenten como iguales.
+     */
+    private record Huella(String codigo, String descripcion, int cantidad, BigDecimal iva, BigDecimal precioPublico,
+                          BigDecimal resto, BigDecimal precioSinRedondear, BigDecimal precioPublicoUs,
+                          BigDecimal ganancia, BigDecimal costoDolares, BigDecimal costoPesos, BigDecimal precioSinIva,
+                          boolean costoFijo, LocalDate fechaIngreso, Long proveedorId, Long tipoProductoId) {
+
+        static Huella de(Producto p) {
+            return new Huella(p.getCodigoProducto(), p.getDescripcion(), p.getCantidad(), n(p.getIva()),
+                    n(p.getPrecio_publico()), n(p.getResto()), n(p.getPrecio_sin_redondear()), n(p.getPrecio_publico_us()),
+                    n(p.getPorcentaje_ganancia()), n(p.getCosto_dolares()), n(p.getCosto_pesos()), n(p.getPrecio_sin_iva()),
+                    p.isCostoFijo(), p.getFecha_ingreso(), p.getProveedorId(), p.getTipoProductoId());
+        }
+
+        private static BigDecimal n(BigDecimal valor) {
+            return valor != null ? valor.stripTrailingZeros() : null;
+        }
+    }
+}
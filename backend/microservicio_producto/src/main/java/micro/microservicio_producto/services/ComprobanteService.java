@@ -22,12 +22,14 @@ import java.util.List;
 public class ComprobanteService {
 
     private final ComprobanteRepository comprobanteRepository;
+    private final NumeradorComprobantes numerador;
 
     @Value("${app.storage.local}")
     private String rutaAlmacenamientoLocal;
 
-    public ComprobanteService(ComprobanteRepository comprobanteRepository) {
+    public ComprobanteService(ComprobanteRepository comprobanteRepository, NumeradorComprobantes numerador) {
         this.comprobanteRepository = comprobanteRepository;
+        this.numerador = numerador;
     }
 
     @Transactional
@@ -54,52 +56,36 @@ public class ComprobanteService {
                 .orElseThrow(() -> new ResourceNotFoundException("Comprobante no encontrado con número: " + numeroCompleto));
     }
 
-    @Transactional
+    /**
+     * Toma el siguiente número de comprobante. El objeto devuelto no está persistido: sólo lleva
+     * prefijo y número.
+     */
     public NroComprobante incrementar() {
-        NroComprobante comprobante = comprobanteRepository.findById(1L)
-                .orElseThrow(() -> new ResourceNotFoundException("No se encontró el registro de control de comprobantes (ID 1)"));
-
-        int numeroActual = comprobante.getNumero();
-        String prefijoActual = comprobante.getPrefijo();
-
-        if (numeroActual >= 999999) {
-            comprobante.setNumero(0);
-            comprobante.setPrefijo(incrementarPrefijo(prefijoActual));
-        } else {
-            comprobante.setNumero(numeroActual + 1);
-        }
-        /*TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
-            @Override
-            public void afterCommit() {
-                OneDriveListener.exportChange(comprobante, "SAVE");
-            }
-        });*/
+        NumeradorComprobantes.Numero numero = numerador.siguiente();
+        NroComprobante comprobante = new NroComprobante();
+        comprobante.setPrefijo(numero.prefijo());
+        comprobante.setNumero(numero.numero());
         return comprobante;
     }
 
     public String generarNumeroComprobanteUnico(){
-        NroComprobante comprobante = incrementar();
-        return comprobante.getPrefijo() + String.format("%06d", comprobante.getNumero());
+        return numerador.siguiente().completo();
     }
 
     @Transactional
     public NroComprobante generarComprobanteCompleto(String htmlComprobante) throws IOException {
-        NroComprobante nroComprobante = incrementar();
-
-        String numeroCompleto = nroComprobante.getPrefijo() + String.format("%06d", nroComprobante.getNumero());
+        NumeradorComprobantes.Numero numero = numerador.siguiente();
+        String numeroCompleto = numero.completo();
 
         NroComprobante nuevoComprobante = new NroComprobante();
-        nuevoComprobante.setNumero(nroComprobante.getNumero());
-        nuevoComprobante.setPrefijo(nroComprobante.getPrefijo());
+        nuevoComprobante.setNumero(numero.numero());
+        nuevoComprobante.setPrefijo(numero.prefijo());
         nuevoComprobante.setContenidoHtml(htmlComprobante);
         nuevoComprobante.setFechaGeneracion(LocalDateTime.now());
 
         comprobanteRepository.save(nuevoComprobante);
         guardarCopiaLocal(htmlComprobante, numeroCompleto);
 
-        comprobanteRepository.save(nroComprobante);
-
-
         return nuevoComprobante;
     }
 
@@ -111,22 +97,4 @@ public class ComprobanteService {
         Path archivo = directorio.resolve("comp_" + numeroComprobante + ".html");
         Files.write(archivo, contenido.getBytes(StandardCharsets.UTF_8));
     }
-
-    private String incrementarPrefijo(String prefijo) {
-        if (prefijo == null || prefijo.length() != 2) {
-            throw new IllegalArgumentException("El prefijo para incrementar debe ser de 2 caracteres.");
-        }
-        char[] letras = prefijo.toCharArray();
-        if (letras[1] < 'Z') {
-            letras[1]++;
-        } else {
-            letras[1] = 'A';
-            if (letras[0] < 'Z') {
-                letras[0]++;
-            } else {
-                throw new IllegalStateException("Se ha alcanzado el límite máximo de prefijos (ZZ).");
-            }
-        }
-        return new String(letras);
-    }
-}
\ No newline at end of file
+}
@@ -7,36 +7,72 @@ import micro.microservicio_producto.repositories.ProductoRepository;
 import org.apache.commons.csv.CSVFormat;
 import org.apache.commons.csv.CSVParser;
 import org.apache.commons.csv.CSVRecord;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 
 import java.io.BufferedReader;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.sql.Statement;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
 import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 @Service
 public class DataLoaderService {
 
     private static final Logger log = LoggerFactory.getLogger(DataLoaderService.class);
 
+    private static final String CSV_INICIAL = "/BFT - copia.csv";
+    private static final int FILAS_POR_BLOQUE = 2000;
+    // Primera fila como encabezado
+    private static final CSVFormat FORMATO_CSV = CSVFormat.DEFAULT.builder().setHeader().setSkipHeaderRecord(true).build();
+    private static final String SQL_COPY = "COPY producto (id, codigo_producto, descripcion, cantidad, iva, precio_publico, "
+            + "resto, precio_sin_redondear, precio_publico_us, porcentaje_ganancia, costo_dolares, costo_pesos, "
+            + "precio_sin_iva, costo_fijo, fecha_ingreso, proveedor_id, tipo_producto_id, created_at, updated_at) "
+            + "FROM STDIN WITH (FORMAT csv)";
+
     private final ProductoRepository productoRepository;
     private final DolarFeignClient dolarFeignClient;
+    private final JdbcTemplate jdbcTemplate;
 
     @Value("${app.dolar.default-value:1000.00}")
     private String dolarDefaultValue;
 
-    public DataLoaderService(ProductoRepository productoRepository, DolarFeignClient dolarFeignClient) {
+    // copy: COPY FROM STDIN con parseo en paralelo; jpa: saveAll de las entidades
+    @Value("${app.data-loader.modo:copy}")
+    private String modo;
+
+    // 0 = procesadores disponibles
+    @Value("${app.data-loader.hilos:0}")
+    private int hilos;
+
+    public DataLoaderService(ProductoRepository productoRepository, DolarFeignClient dolarFeignClient, JdbcTemplate jdbcTemplate) {
         this.productoRepository = productoRepository;
         this.dolarFeignClient = dolarFeignClient;
+        this.jdbcTemplate = jdbcTemplate;
     }
 
     @Transactional
@@ -46,14 +82,18 @@ public class DataLoaderService {
             return 0; // No se cargó nada
         }
 
+        if ("copy".equalsIgnoreCase(modo)) {
+            return cargarConCopy();
+        }
+
         log.info("Iniciando carga masiva de datos desde CSV...");
         DateTimeFormatter formatter = DateTimeFormatter.ofPattern("dd/MM/yyyy");
         BigDecimal valorDolar = obtenerValorDolar();
         List<Producto> productosParaGuardar = new ArrayList<>();
 
-        try (InputStream inputStream = getClass().getResourceAsStream("/BFT - copia.csv");
+        try (InputStream inputStream = getClass().getResourceAsStream(CSV_INICIAL);
              BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream));
-             CSVParser datosProducto = new CSVParser(reader, CSVFormat.DEFAULT.withHeader())) {
+             CSVParser datosProducto = new CSVParser(reader, FORMATO_CSV)) {
 
             for (CSVRecord record : datosProducto) {
                 Producto p = crearProductoDesdeCSV(record, valorDolar, formatter);
@@ -71,6 +111,170 @@ public class DataLoaderService {
         }
     }
 
+    /**
+     * Carga inicial con COPY FROM STDIN. El CSV se lee en un solo hilo, pero la conversión de
+     * cada bloque de {@value #FILAS_POR_BLOQUE} filas a Producto (mismas reglas que la carga con
+     * JPA) y a texto de COPY se reparte entre {@code app.data-loader.hilos} hilos; los bloques se
+     * escriben en orden a medida que terminan, con a lo sumo dos por hilo en memoria. Las filas
+     * se leen una sola vez y quedan en memoria, como en la carga con JPA, para saber cuántos IDs
+     * reservar antes del COPY (durante el COPY la conexión no admite otras consultas). Los IDs
+     * salen de nextval en el orden del archivo: la secuencia sólo avanza y no choca con bloques
+     * que Hibernate ya tenga entregados.
+     * <p>
+     * Corre en la transacción de {@link #cargarDatosDesdeCSV()}, con la tabla bloqueada para que
+     * nadie inserte entre la verificación de tabla vacía y el COPY.
+     */
+    private int cargarConCopy() {
+        log.info("Iniciando carga inicial con COPY desde CSV...");
+        long inicio = System.currentTimeMillis();
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("dd/MM/yyyy");
+        BigDecimal valorDolar = obtenerValorDolar();
+        LocalDateTime ahora = LocalDateTime.now();
+        int cantidadHilos = hilos > 0 ? hilos : Runtime.getRuntime().availableProcessors();
+
+        Integer cargados = jdbcTemplate.execute((ConnectionCallback<Integer>) con -> {
+            try (Statement st = con.createStatement()) {
+                st.execute("LOCK TABLE producto IN SHARE ROW EXCLUSIVE MODE");
+            }
+            if (Boolean.TRUE.equals(jdbcTemplate.queryForObject("SELECT EXISTS (SELECT 1 FROM producto)", Boolean.class))) {
+                log.warn("La tabla de productos no está vacía. Omitiendo carga de datos desde CSV.");
+                return 0;
+            }
+
+            List<CSVRecord> registros = leerCsv();
+            List<Long> ids = reservarIds(registros.size());
+
+            ExecutorService pool = Executors.newFixedThreadPool(cantidadHilos, r -> {
+                Thread hilo = new Thread(r, "CargaCopy");
+                hilo.setDaemon(true);
+                return hilo;
+            });
+            CopyIn copyIn = con.unwrap(PGConnection.class).getCopyAPI().copyIn(SQL_COPY);
+            try {
+                Deque<Future<byte[]>> pendientes = new ArrayDeque<>();
+                for (int desde = 0; desde < registros.size(); desde += FILAS_POR_BLOQUE) {
+                    int hasta = Math.min(desde + FILAS_POR_BLOQUE, registros.size());
+                    pendientes.add(enviarBloque(pool, registros.subList(desde, hasta), ids.subList(desde, hasta),
+                            valorDolar, formatter, ahora));
+                    if (pendientes.size() >= 2 * cantidadHilos) {
+                        escribirBloque(copyIn, pendientes.poll());
+                    }
+                }
+                while (!pendientes.isEmpty()) {
+                    escribirBloque(copyIn, pendientes.poll());
+                }
+                return (int) copyIn.endCopy();
+            } catch (Exception e) {
+                if (copyIn.isActive()) {
+                    copyIn.cancelCopy();
+                }
+                log.error("Error crítico durante la carga de datos con COPY", e);
+                throw new RuntimeException("Error al leer o procesar el archivo CSV.", e);
+            } finally {
+                pool.shutdownNow();
+            }
+        });
+
+        log.info("Carga de datos con COPY finalizada. {} productos guardados en {} ms.", cargados, System.currentTimeMillis() - inicio);
+        return cargados != null ? cargados : 0;
+    }
+
+    private List<CSVRecord> leerCsv() {
+        try (InputStream inputStream = getClass().getResourceAsStream(CSV_INICIAL);
+             BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+             CSVParser datosProducto = new CSVParser(reader, FORMATO_CSV)) {
+            return datosProducto.getRecords();
+        } catch (IOException e) {
+            throw new RuntimeException("Error al leer o procesar el archivo CSV.", e);
+        }
+    }
+
+    /**
+     * {@code cantidad} IDs de producto_id_seq. Cada nextval entrega el tope de un bloque de
+     * {@code increment_by} IDs (el optimizador pooled de Hibernate la usa igual), así que se
+     * pide un nextval por bloque y se usan todos sus IDs.
+     */
+    private List<Long> reservarIds(int cantidad) {
+        Long incremento = jdbcTemplate.queryForObject(
+                "SELECT increment_by FROM pg_sequences WHERE schemaname = current_schema() AND sequencename = 'producto_id_seq'",
+                Long.class);
+        long tamanioBloque = incremento != null && incremento > 0 ? incremento : 1;
+        long bloques = (cantidad + tamanioBloque - 1) / tamanioBloque;
+        List<Long> topes = jdbcTemplate.queryForList(
+                "SELECT nextval('producto_id_seq') FROM generate_series(1, ?)", Long.class, bloques);
+        List<Long> ids = new ArrayList<>(cantidad);
+        for (Long tope : topes) {
+            for (long id = tope - tamanioBloque + 1; id <= tope && ids.size() < cantidad; id++) {
+                ids.add(id);
+            }
+        }
+        return ids;
+    }
+
+    private Future<byte[]> enviarBloque(ExecutorService pool, List<CSVRecord> bloque, List<Long> ids, BigDecimal valorDolar,
+                                        DateTimeFormatter formatter, LocalDateTime ahora) {
+        return pool.submit(() -> {
+            StringBuilder sb = new StringBuilder(bloque.size() * 200);
+            Iterator<Long> id = ids.iterator();
+            for (CSVRecord record : bloque) {
+                Producto p = crearProductoDesdeCSV(record, valorDolar, formatter);
+                if (p.getCodigoProducto() == null || p.getCodigoProducto().trim().isEmpty()) {
+                    p.setCodigoProducto("PROD-" + UUID.randomUUID().toString().substring(0, 8).toUpperCase());
+                }
+                agregarFilaCopy(sb, id.next(), p, ahora);
+            }
+            return sb.toString().getBytes(StandardCharsets.UTF_8);
+        });
+    }
+
+    private static void escribirBloque(CopyIn copyIn, Future<byte[]> pendiente) throws SQLException, InterruptedException {
+        byte[] datos;
+        try {
+            datos = pendiente.get();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Error al convertir un bloque del CSV: " + e.getCause().getMessage(), e.getCause());
+        }
+        copyIn.writeToCopy(datos, 0, datos.length);
+    }
+
+    /** Una fila en formato CSV de COPY: vacío sin comillas es NULL y los textos van siempre entre comillas. */
+    private static void agregarFilaCopy(StringBuilder sb, long id, Producto p, LocalDateTime ahora) {
+        sb.append(id).append(',');
+        texto(sb, p.getCodigoProducto());
+        sb.append(',');
+        texto(sb, p.getDescripcion());
+        sb.append(',').append(p.getCantidad()).append(',');
+        numero(sb, p.getIva());
+        numero(sb, p.getPrecio_publico());
+        numero(sb, p.getResto());
+        numero(sb, p.getPrecio_sin_redondear());
+        numero(sb, p.getPrecio_publico_us());
+        numero(sb, p.getPorcentaje_ganancia());
+        numero(sb, p.getCosto_dolares());
+        numero(sb, p.getCosto_pesos());
+        numero(sb, p.getPrecio_sin_iva());
+        sb.append(p.isCostoFijo()).append(',');
+        if (p.getFecha_ingreso() != null) sb.append(p.getFecha_ingreso());
+        sb.append(',');
+        if (p.getProveedorId() != null) sb.append(p.getProveedorId());
+        sb.append(',');
+        if (p.getTipoProductoId() != null) sb.append(p.getTipoProductoId());
+        sb.append(',').append(ahora).append(',').append(ahora).append('\n');
+    }
+
+    private static void texto(StringBuilder sb, String valor) {
+        if (valor != null) {
+            sb.append('"').append(valor.replace("\"", "\"\"")).append('"');
+        }
+    }
+
+    private static void numero(StringBuilder sb, BigDecimal valor) {
+        if (valor != null) {
+            sb.append(valor.toPlainString());
+        }
+        sb.append(',');
+    }
+
     private Producto crearProductoDesdeCSV(CSVRecord record, BigDecimal valorDolar, DateTimeFormatter formatter) {
         Producto p = new Producto();
         p.setCodigoProducto(record.get("CODIGO"));
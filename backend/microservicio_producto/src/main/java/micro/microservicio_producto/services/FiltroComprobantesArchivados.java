@@ -0,0 +1,93 @@
+package micro.microservicio_producto.services;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Qué partes numéricas (los 6 dígitos finales) existen en {@code venta_archivada}, para que una
+ * búsqueda de comprobante que no está en el archivo no tenga que consultarlo. Es un bit por
+ * número posible: 125 KB para todo el rango, sin falsos negativos. Hay falsos positivos sólo
+ * cuando el mismo número existe archivado con otro prefijo.
+ * <p>
+ * Se marca antes de que las ventas salgan de la tabla principal, y mientras no terminó la carga
+ * inicial responde siempre que puede estar.
+ */
+@Component
+public class FiltroComprobantesArchivados {
+
+    private static final Logger log = LoggerFactory.getLogger(FiltroComprobantesArchivados.class);
+
+    private static final int NUMEROS_POR_PREFIJO = 1_000_000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final AtomicLongArray bits = new AtomicLongArray((NUMEROS_POR_PREFIJO + 63) / 64);
+    private volatile boolean cargado;
+
+    public FiltroComprobantesArchivados(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void cargar() {
+        try {
+            int[] total = {0};
+            jdbcTemplate.query("SELECT DISTINCT right(numero_comprobante, 6) AS sufijo FROM venta_archivada", rs -> {
+                Integer numero = parteNumerica(rs.getString("sufijo"));
+                if (numero != null) {
+                    marcar(numero);
+                    total[0]++;
+                }
+            });
+            cargado = true;
+            log.info("Filtro de comprobantes archivados cargado con {} números.", total[0]);
+        } catch (Exception e) {
+            // Sin filtro las búsquedas consultan siempre el archivo, como antes
+            log.warn("No se pudo cargar el filtro de comprobantes archivados: {}", e.getMessage());
+        }
+    }
+
+    public void marcar(String numeroComprobante) {
+        Integer numero = parteNumerica(numeroComprobante);
+        if (numero != null) {
+            marcar(numero);
+        }
+    }
+
+    public boolean puedeEstar(int numero) {
+        if (!cargado || numero < 0 || numero >= NUMEROS_POR_PREFIJO) {
+            return !cargado;
+        }
+        return (bits.get(numero >>> 6) & (1L << numero)) != 0;
+    }
+
+    private void marcar(int numero) {
+        int indice = numero >>> 6;
+        long mascara = 1L << numero;
+        long actual;
+        do {
+            actual = bits.get(indice);
+        } while ((actual & mascara) == 0 && !bits.compareAndSet(indice, actual, actual | mascara));
+    }
+
+    /** Últimos 6 caracteres como número, o null si no son dígitos. */
+    static Integer parteNumerica(String numeroComprobante) {
+        if (numeroComprobante == null || numeroComprobante.length() < 6) {
+            return null;
+        }
+        int numero = 0;
+        for (int i = numeroComprobante.length() - 6; i < numeroComprobante.length(); i++) {
+            char c = numeroComprobante.charAt(i);
+            if (c < '0' || c > '9') {
+                return null;
+            }
+            numero = numero * 10 + (c - '0');
+        }
+        return numero;
+    }
+}
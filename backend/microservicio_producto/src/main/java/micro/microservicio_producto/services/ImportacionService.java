@@ -0,0 +1,377 @@
+package micro.microservicio_producto.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import micro.microservicio_producto.entities.DTO.ImportacionJobDTO;
+import micro.microservicio_producto.entities.Producto;
+import micro.microservicio_producto.exceptions.BusinessLogicException;
+import micro.microservicio_producto.exceptions.ResourceNotFoundException;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVPrinter;
+import org.apache.commons.csv.CSVRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.*;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Importaciones de productos en segundo plano. El cuerpo subido se copia a disco tal cual y se
+ * procesa en el ejecutor {@code importacionExecutor} leyendo fila por fila, en lotes de
+ * {@code app.carga-masiva.lote} que se confirman cada uno en su transacción; en memoria sólo vive
+ * el lote en curso. Si un lote falla por datos inválidos se reintenta fila por fila y las que
+ * vuelven a fallar se escriben en el archivo de rechazos con su línea y el motivo.
+ * <p>
+ * Formatos: CSV con encabezado y NDJSON (un producto JSON por línea). En ambos los nombres de
+ * columna son los de las propiedades JSON de {@link Producto}; las columnas desconocidas se
+ * ignoran. El ID de la fila no se usa: los productos se identifican por código y proveedor.
+ * <p>
+ * El estado de los trabajos se guarda en memoria; los terminados se borran, con sus archivos,
+ * pasadas {@code app.carga-masiva.retencion-horas}.
+ */
+@Service
+public class ImportacionService {
+
+    private static final Logger log = LoggerFactory.getLogger(ImportacionService.class);
+
+    public enum Formato { CSV, NDJSON }
+
+    public enum Estado { PENDIENTE, EN_PROCESO, COMPLETADO, FALLIDO }
+
+    private static final String ARCHIVO_RECHAZOS = "rechazos.csv";
+
+    private final ProductoService productoService;
+    private final TaskExecutor importacionExecutor;
+    private final Map<String, Trabajo> trabajos = new ConcurrentHashMap<>();
+
+    private final ObjectMapper mapper = new ObjectMapper()
+            .registerModule(new JavaTimeModule())
+            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+
+    @Value("${app.carga-masiva.lote:500}")
+    private int tamanioLote;
+
+    @Value("${app.carga-masiva.directorio:${java.io.tmpdir}/importaciones}")
+    private String directorio;
+
+    @Value("${app.carga-masiva.retencion-horas:24}")
+    private long retencionHoras;
+
+    public ImportacionService(ProductoService productoService,
+                              @Qualifier("importacionExecutor") TaskExecutor importacionExecutor) {
+        this.productoService = productoService;
+        this.importacionExecutor = importacionExecutor;
+    }
+
+    /**
+     * Guarda el archivo recibido y encola su procesamiento.
+     *
+     * @throws BusinessLogicException si la cola de importaciones está llena
+     */
+    public ImportacionJobDTO crear(InputStream cuerpo, Formato formato) {
+        String id = UUID.randomUUID().toString();
+        Path carpeta = Path.of(directorio, id);
+        Path entrada = carpeta.resolve("entrada." + formato.name().toLowerCase());
+        long bytes;
+        try {
+            Files.createDirectories(carpeta);
+            bytes = Files.copy(cuerpo, entrada);
+        } catch (IOException e) {
+            borrar(carpeta);
+            throw new UncheckedIOException("No se pudo guardar el archivo de importación.", e);
+        }
+
+        Trabajo trabajo = new Trabajo(id, formato, carpeta, entrada, bytes);
+        trabajos.put(id, trabajo);
+        try {
+            importacionExecutor.execute(() -> procesar(trabajo));
+        } catch (TaskRejectedException e) {
+            trabajos.remove(id);
+            borrar(carpeta);
+            throw new BusinessLogicException("Hay demasiadas importaciones en cola. Intente nuevamente más tarde.");
+        }
+        log.info("Importación {} encolada: {} ({} bytes).", id, formato, bytes);
+        return trabajo.aDTO();
+    }
+
+    public ImportacionJobDTO obtener(String id) {
+        return buscar(id).aDTO();
+    }
+
+    /**
+     * Archivo CSV de filas rechazadas (linea, error, contenido). Existe desde que el trabajo
+     * empieza a procesarse.
+     */
+    public Path archivoRechazos(String id) {
+        Path rechazos = buscar(id).carpeta.resolve(ARCHIVO_RECHAZOS);
+        if (!Files.exists(rechazos)) {
+            throw new ResourceNotFoundException("La importación " + id + " todavía no tiene archivo de rechazos.");
+        }
+        return rechazos;
+    }
+
+    private Trabajo buscar(String id) {
+        Trabajo trabajo = trabajos.get(id);
+        if (trabajo == null) {
+            throw new ResourceNotFoundException("Importación no encontrada con ID: " + id);
+        }
+        return trabajo;
+    }
+
+    // --- Procesamiento ---
+
+    private void procesar(Trabajo trabajo) {
+        trabajo.inicio = LocalDateTime.now();
+        trabajo.estado = Estado.EN_PROCESO;
+        BigDecimal valorDolar = productoService.obtenerValorDolar();
+        try (InputStream archivo = new ContadorBytes(Files.newInputStream(trabajo.entrada), trabajo.bytesLeidos);
+             BufferedReader lector = new BufferedReader(new InputStreamReader(archivo, StandardCharsets.UTF_8));
+             CSVPrinter rechazos = new CSVPrinter(
+                     Files.newBufferedWriter(trabajo.carpeta.resolve(ARCHIVO_RECHAZOS), StandardCharsets.UTF_8),
+                     CSVFormat.DEFAULT.builder().setHeader("linea", "error", "contenido").build())) {
+
+            List<Fila> lote = new ArrayList<>(tamanioLote);
+            Consumer<Fila> alLeer = fila -> {
+                trabajo.filasLeidas.incrementAndGet();
+                if (fila.error() != null) {
+                    rechazar(trabajo, rechazos, fila, fila.error());
+                    return;
+                }
+                lote.add(fila);
+                if (lote.size() >= tamanioLote) {
+                    procesarLote(trabajo, lote, valorDolar, rechazos);
+                    lote.clear();
+                }
+            };
+            if (trabajo.formato == Formato.CSV) {
+                leerCsv(lector, alLeer);
+            } else {
+                leerNdjson(lector, alLeer);
+            }
+            if (!lote.isEmpty()) {
+                procesarLote(trabajo, lote, valorDolar, rechazos);
+            }
+            trabajo.estado = Estado.COMPLETADO;
+            log.info("Importación {} completada: {} filas, {} insertadas, {} actualizadas, {} sin cambios, {} rechazadas.",
+                    trabajo.id, trabajo.filasLeidas.get(), trabajo.insertados.get(), trabajo.actualizados.get(),
+                    trabajo.sinCambios.get(), trabajo.rechazados.get());
+        } catch (Exception e) {
+            // Los lotes ya confirmados quedan guardados
+            trabajo.error = e.getMessage();
+            trabajo.estado = Estado.FALLIDO;
+            log.error("Importación {} interrumpida después de {} filas: {}", trabajo.id, trabajo.filasLeidas.get(), e.getMessage(), e);
+        } finally {
+            trabajo.fin = LocalDateTime.now();
+            try {
+                Files.deleteIfExists(trabajo.entrada);
+            } catch (IOException e) {
+                log.warn("No se pudo borrar el archivo de la importación {}: {}", trabajo.id, e.getMessage());
+            }
+        }
+    }
+
+    private void procesarLote(Trabajo trabajo, List<Fila> lote, BigDecimal valorDolar, CSVPrinter rechazos) {
+        try {
+            sumar(trabajo, productoService.importarLote(lote.stream().map(Fila::producto).toList(), valorDolar));
+            return;
+        } catch (BusinessLogicException | ResourceNotFoundException | DataAccessException e) {
+            log.warn("Importación {}: lote rechazado ({}). Se reintenta fila por fila.", trabajo.id, e.getMessage());
+        }
+        for (Fila fila : lote) {
+            // El intento del lote pudo haberle asignado un ID que se perdió con el rollback
+            fila.producto().setId(null);
+            try {
+                sumar(trabajo, productoService.importarLote(List.of(fila.producto()), valorDolar));
+            } catch (BusinessLogicException | ResourceNotFoundException e) {
+                rechazar(trabajo, rechazos, fila, e.getMessage());
+            } catch (DataAccessException e) {
+                rechazar(trabajo, rechazos, fila, e.getMostSpecificCause().getMessage());
+            }
+        }
+    }
+
+    private static void sumar(Trabajo trabajo, CargaMasivaService.Resultado resultado) {
+        trabajo.insertados.addAndGet(resultado.insertados());
+        trabajo.actualizados.addAndGet(resultado.actualizados());
+        trabajo.sinCambios.addAndGet(resultado.sinCambios());
+    }
+
+    private static void rechazar(Trabajo trabajo, CSVPrinter rechazos, Fila fila, String motivo) {
+        trabajo.rechazados.incrementAndGet();
+        try {
+            rechazos.printRecord(fila.linea(), motivo, fila.contenido());
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo escribir el archivo de rechazos.", e);
+        }
+    }
+
+    // --- Lectura ---
+
+    private record Fila(long linea, String contenido, Producto producto, String error) {
+    }
+
+    private void leerCsv(BufferedReader lector, Consumer<Fila> alLeer) throws IOException {
+        CSVFormat formato = CSVFormat.DEFAULT.builder()
+                .setHeader()
+                .setSkipHeaderRecord(true)
+                .setIgnoreEmptyLines(true)
+                .setTrim(true)
+                .build();
+        try (CSVParser parser = formato.parse(lector)) {
+            for (CSVRecord registro : parser) {
+                String contenido = CSVFormat.DEFAULT.format((Object[]) registro.values());
+                // Contando el encabezado como línea 1
+                long linea = registro.getRecordNumber() + 1;
+                Map<String, String> valores = new HashMap<>();
+                registro.toMap().forEach((columna, valor) -> {
+                    if (valor != null && !valor.isBlank()) valores.put(columna, valor);
+                });
+                try {
+                    alLeer.accept(new Fila(linea, contenido, aProducto(mapper.convertValue(valores, Producto.class)), null));
+                } catch (IllegalArgumentException e) {
+                    alLeer.accept(new Fila(linea, contenido, null, "Fila inválida: " + e.getMessage()));
+                }
+            }
+        }
+    }
+
+    private void leerNdjson(BufferedReader lector, Consumer<Fila> alLeer) throws IOException {
+        String contenido;
+        long linea = 0;
+        while ((contenido = lector.readLine()) != null) {
+            linea++;
+            if (contenido.isBlank()) {
+                continue;
+            }
+            Producto producto;
+            try {
+                producto = aProducto(mapper.readValue(contenido, Producto.class));
+            } catch (JsonProcessingException e) {
+                alLeer.accept(new Fila(linea, contenido, null, "JSON inválido: " + e.getOriginalMessage()));
+                continue;
+            }
+            alLeer.accept(new Fila(linea, contenido, producto, null));
+        }
+    }
+
+    private static Producto aProducto(Producto leido) {
+        leido.setId(null);
+        return leido;
+    }
+
+    // --- Limpieza ---
+
+    @Scheduled(fixedDelayString = "${app.carga-masiva.limpieza-ms:3600000}")
+    void limpiarTerminados() {
+        LocalDateTime limite = LocalDateTime.now().minusHours(retencionHoras);
+        trabajos.values().removeIf(trabajo -> {
+            if (trabajo.fin == null || trabajo.fin.isAfter(limite)) {
+                return false;
+            }
+            borrar(trabajo.carpeta);
+            return true;
+        });
+    }
+
+    private static void borrar(Path carpeta) {
+        if (!Files.exists(carpeta)) {
+            return;
+        }
+        try (Stream<Path> archivos = Files.walk(carpeta)) {
+            archivos.sorted(Comparator.reverseOrder()).forEach(archivo -> archivo.toFile().delete());
+        } catch (IOException e) {
+            log.warn("No se pudo borrar la carpeta de importación {}: {}", carpeta, e.getMessage());
+        }
+    }
+
+    // --- Estado ---
+
+    private static final class Trabajo {
+        final String id;
+        final Formato formato;
+        final Path carpeta;
+        final Path entrada;
+        final long bytesTotales;
+        final AtomicLong bytesLeidos = new AtomicLong();
+        final AtomicLong filasLeidas = new AtomicLong();
+        final AtomicLong insertados = new AtomicLong();
+        final AtomicLong actualizados = new AtomicLong();
+        final AtomicLong sinCambios = new AtomicLong();
+        final AtomicLong rechazados = new AtomicLong();
+        volatile Estado estado = Estado.PENDIENTE;
+        volatile LocalDateTime inicio;
+        volatile LocalDateTime fin;
+        volatile String error;
+
+        Trabajo(String id, Formato formato, Path carpeta, Path entrada, long bytesTotales) {
+            this.id = id;
+            this.formato = formato;
+            this.carpeta = carpeta;
+            this.entrada = entrada;
+            this.bytesTotales = bytesTotales;
+        }
+
+        ImportacionJobDTO aDTO() {
+            double porcentaje;
+            if (estado == Estado.PENDIENTE) {
+                porcentaje = 0;
+            } else if (estado == Estado.COMPLETADO || bytesTotales == 0) {
+                porcentaje = 100;
+            } else {
+                porcentaje = Math.min(100, 100.0 * bytesLeidos.get() / bytesTotales);
+            }
+            double filasPorSegundo = 0;
+            if (inicio != null) {
+                long millis = Duration.between(inicio, fin != null ? fin : LocalDateTime.now()).toMillis();
+                filasPorSegundo = millis > 0 ? filasLeidas.get() * 1000.0 / millis : 0;
+            }
+            return new ImportacionJobDTO(id, formato.name(), estado.name(), filasLeidas.get(), insertados.get(),
+                    actualizados.get(), sinCambios.get(), rechazados.get(), porcentaje, filasPorSegundo,
+                    inicio, fin, error);
+        }
+    }
+
+    /** Cuenta los bytes leídos del archivo para informar el avance. */
+    private static final class ContadorBytes extends FilterInputStream {
+        private final AtomicLong contador;
+
+        ContadorBytes(InputStream in, AtomicLong contador) {
+            super(in);
+            this.contador = contador;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) contador.incrementAndGet();
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) contador.addAndGet(n);
+            return n;
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package micro.microservicio_producto.services;
+
+import jakarta.annotation.PreDestroy;
+import micro.microservicio_producto.exceptions.ResourceNotFoundException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Entrega números de comprobante reservando bloques de {@code app.comprobantes.bloque} en la fila
+ * de control (ID 1) de {@code nro_comprobante}. La reserva corre en una transacción propia y
+ * corta, así las ventas no esperan el bloqueo de esa fila; dentro del bloque los números salen
+ * de un contador en memoria.
+ * <p>
+ * La fila de control guarda el último número reservado, por lo que tras un reinicio nunca se
+ * repite un número. Con bloques la numeración tiene huecos: el número de una venta que se
+ * revierte (o de todo un lote de {@code registrarLote}) no vuelve a entregarse, y al apagar sólo
+ * se devuelve lo que quedó sin usar si nadie reservó después. Además, la reserva toma una
+ * segunda conexión del pool mientras la venta tiene la suya: el pool necesita margen para eso.
+ * <p>
+ * Con bloque 1 el número se toma en la transacción de la venta, como siempre: sin huecos ni
+ * segunda conexión, pero las ventas esperan el bloqueo de la fila hasta el commit de la anterior.
+ * <p>
+ * Cada número se ve como posición lineal {@code prefijo * 1.000.000 + numero}, con el prefijo de
+ * dos letras en base 26: sumar 1 a AA999999 da AB000000 y a AZ999999 da BA000000, igual que el
+ * pase de prefijo de siempre. Después de ZZ999999 no hay más números.
+ */
+@Service
+public class NumeradorComprobantes {
+
+    private static final Logger log = LoggerFactory.getLogger(NumeradorComprobantes.class);
+
+    private static final long NUMEROS_POR_PREFIJO = 1_000_000L;
+    private static final long ULTIMA_POSICION = 26L * 26L * NUMEROS_POR_PREFIJO - 1;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate reservaTemplate;
+    private final TransactionTemplate ventaTemplate;
+    private final AtomicReference<Bloque> bloque = new AtomicReference<>(new Bloque(1, 0));
+
+    @Value("${app.comprobantes.bloque:100}")
+    private int tamanioBloque;
+
+    public NumeradorComprobantes(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.reservaTemplate = new TransactionTemplate(transactionManager);
+        this.reservaTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.ventaTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /** Número reservado, separado en prefijo y parte numérica. */
+    public record Numero(String prefijo, int numero) {
+        public String completo() {
+            return prefijo + String.format("%06d", numero);
+        }
+    }
+
+    public Numero siguiente() {
+        if (tamanioBloque <= 1) {
+            // Sin bloque en memoria: si la venta se revierte, el número vuelve con ella
+            return aNumero(reservar(ventaTemplate, 1).inicio);
+        }
+        while (true) {
+            Bloque actual = bloque.get();
+            long posicion = actual.siguiente.getAndIncrement();
+            if (posicion <= actual.fin) {
+                return aNumero(posicion);
+            }
+            synchronized (this) {
+                // Otro hilo pudo haber reservado mientras esperábamos
+                if (bloque.get() == actual) {
+                    bloque.set(reservar(reservaTemplate, tamanioBloque));
+                }
+            }
+        }
+    }
+
+    private Bloque reservar(TransactionTemplate template, int tamanio) {
+        Bloque nuevo = template.execute(status -> {
+            List<Long> filas = jdbcTemplate.query(
+                    "SELECT prefijo, numero FROM nro_comprobante WHERE id = 1 FOR UPDATE",
+                    (rs, i) -> aPosicion(rs.getString("prefijo"), rs.getInt("numero")));
+            if (filas.isEmpty()) {
+                throw new ResourceNotFoundException("No se encontró el registro de control de comprobantes (ID 1)");
+            }
+            long ultimo = filas.get(0);
+            if (ultimo >= ULTIMA_POSICION) {
+                throw new IllegalStateException("Se ha alcanzado el límite máximo de prefijos (ZZ).");
+            }
+            long fin = Math.min(ultimo + tamanio, ULTIMA_POSICION);
+            Numero finNumero = aNumero(fin);
+            jdbcTemplate.update("UPDATE nro_comprobante SET prefijo = ?, numero = ? WHERE id = 1",
+                    finNumero.prefijo(), finNumero.numero());
+            return new Bloque(ultimo + 1, fin);
+        });
+        log.debug("Reservado bloque de comprobantes {} a {}.", aNumero(nuevo.inicio).completo(), aNumero(nuevo.fin).completo());
+        return nuevo;
+    }
+
+    /**
+     * Devuelve a la fila de control los números sin usar del bloque actual, sólo si sigue
+     * apuntando al final de ese bloque.
+     */
+    @PreDestroy
+    void devolverSobrante() {
+        Bloque actual = bloque.getAndSet(new Bloque(1, 0));
+        long ultimoEntregado = Math.min(actual.siguiente.get() - 1, actual.fin);
+        if (ultimoEntregado >= actual.fin) {
+            return;
+        }
+        Numero fin = aNumero(actual.fin);
+        Numero devuelto = aNumero(ultimoEntregado);
+        try {
+            int filas = jdbcTemplate.update(
+                    "UPDATE nro_comprobante SET prefijo = ?, numero = ? WHERE id = 1 AND prefijo = ? AND numero = ?",
+                    devuelto.prefijo(), devuelto.numero(), fin.prefijo(), fin.numero());
+            if (filas == 1) {
+                log.info("Devueltos {} números de comprobante sin usar.", actual.fin - ultimoEntregado);
+            }
+        } catch (Exception e) {
+            log.warn("No se pudieron devolver los números de comprobante sin usar: {}", e.getMessage());
+        }
+    }
+
+    static long aPosicion(String prefijo, int numero) {
+        if (prefijo == null || prefijo.length() != 2
+                || prefijo.charAt(0) < 'A' || prefijo.charAt(0) > 'Z'
+                || prefijo.charAt(1) < 'A' || prefijo.charAt(1) > 'Z') {
+            throw new IllegalArgumentException("El prefijo del comprobante debe ser de 2 letras (A-Z): " + prefijo);
+        }
+        long indicePrefijo = (prefijo.charAt(0) - 'A') * 26L + (prefijo.charAt(1) - 'A');
+        return indicePrefijo * NUMEROS_POR_PREFIJO + numero;
+    }
+
+    static Numero aNumero(long posicion) {
+        int indicePrefijo = (int) (posicion / NUMEROS_POR_PREFIJO);
+        String prefijo = new String(new char[]{(char) ('A' + indicePrefijo / 26), (char) ('A' + indicePrefijo % 26)});
+        return new Numero(prefijo, (int) (posicion % NUMEROS_POR_PREFIJO));
+    }
+
+    /** Posiciones {@code [inicio, fin]}; {@code siguiente} puede pasarse de {@code fin}. */
+    private static final class Bloque {
+        final long inicio;
+        final long fin;
+        final AtomicLong siguiente;
+
+        Bloque(long inicio, long fin) {
+            this.inicio = inicio;
+            this.fin = fin;
+            this.siguiente = new AtomicLong(inicio);
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package micro.microservicio_producto.services;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Particiones mensuales de {@code venta} y {@code venta_item} (V13). Crea por adelantado las de
+ * los meses siguientes y pasa al archivo las de meses ya cerrados. Si {@code venta_default} ya
+ * tiene filas de un mes a crear, la función (V16) las mueve a la partición nueva; un mes que falla
+ * no frena a los demás.
+ * <p>
+ * Archivar un mes es quitar la partición de {@code venta} y adjuntarla a {@code venta_archivada},
+ * lo mismo con los ítems: no se copian filas. Postgres sólo recorre la partición para verificar
+ * que las fechas entran en el rango. Si el archivo ya tenía ese mes (datos de antes de V13) las
+ * filas se copian y la partición se elimina.
+ * <p>
+ * Los meses del archivo más viejos que {@code app.ventas.frio.meses-en-base} terminan fuera de la
+ * base, en segmentos de {@link AlmacenFrioVentas}.
+ */
+@Service
+public class ParticionesVentaService {
+
+    private static final Logger log = LoggerFactory.getLogger(ParticionesVentaService.class);
+
+    private static final Pattern NOMBRE_PARTICION = Pattern.compile("venta_(\\d{4})_(\\d{2})");
+    // En el archivo conviven las particiones movidas desde venta y las creadas por V13 para datos viejos
+    private static final Pattern NOMBRE_PARTICION_ARCHIVO = Pattern.compile("(venta|venta_archivada)_(\\d{4})_(\\d{2})");
+    private static final Pattern NOMBRE_PARTICION_ITEMS_ARCHIVO = Pattern.compile("(venta_item|venta_item_archivado)_(\\d{4})_(\\d{2})");
+
+    /** Par de particiones de un mes archivado: la de ventas y la de sus ítems. */
+    public record ParticionArchivada(YearMonth mes, String ventas, String items) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${app.ventas.particiones.meses-adelante:3}")
+    private int mesesAdelante;
+
+    // DETACH necesita un lock exclusivo breve sobre venta; esperándolo trabaría las ventas nuevas
+    @Value("${app.ventas.particiones.lock-timeout-ms:5000}")
+    private long lockTimeoutMs;
+
+    public ParticionesVentaService(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(cron = "${app.ventas.particiones.cron:0 30 2 * * ?}")
+    public void crearParticionesFuturas() {
+        LocalDate hoy = LocalDate.now();
+        try {
+            Integer creadas = jdbcTemplate.queryForObject("SELECT fn_crear_particiones_venta(?, ?)", Integer.class,
+                    Date.valueOf(hoy), Date.valueOf(hoy.plusMonths(mesesAdelante)));
+            if (creadas != null && creadas > 0) {
+                log.info("Creadas {} particiones de ventas hasta {}.", creadas, YearMonth.from(hoy.plusMonths(mesesAdelante)));
+            }
+        } catch (Exception e) {
+            // Sin la partición del mes las ventas caen en venta_default, no se pierden
+            log.error("No se pudieron crear las particiones de ventas: {}", e.getMessage());
+        }
+    }
+
+    /** Meses con partición propia en {@code venta} anteriores a {@code limite}, del más viejo al más nuevo. */
+    public List<YearMonth> mesesSinArchivar(YearMonth limite) {
+        List<String> nombres = jdbcTemplate.queryForList("""
+                SELECT c.relname
+                FROM pg_inherits i
+                JOIN pg_class c ON c.oid = i.inhrelid
+                WHERE i.inhparent = CAST('venta' AS regclass)
+                """, String.class);
+        return nombres.stream()
+                .map(NOMBRE_PARTICION::matcher)
+                .filter(Matcher::matches)
+                .map(m -> YearMonth.of(Integer.parseInt(m.group(1)), Integer.parseInt(m.group(2))))
+                .filter(mes -> mes.isBefore(limite))
+                .sorted()
+                .toList();
+    }
+
+    /** Partes numéricas de los comprobantes de un mes todavía en {@code venta}. */
+    public List<String> sufijosDelMes(YearMonth mes) {
+        return jdbcTemplate.queryForList("SELECT DISTINCT right(numero_comprobante, 6) FROM " + nombre("venta", mes),
+                String.class);
+    }
+
+    /**
+     * Mueve el mes al archivo. Tiene que correr dentro de una transacción: las cuatro operaciones
+     * se confirman juntas o ninguna.
+     */
+    public void archivarMes(YearMonth mes) {
+        String venta = nombre("venta", mes);
+        String items = nombre("venta_item", mes);
+        String rango = "FROM ('%s') TO ('%s')".formatted(mes.atDay(1), mes.plusMonths(1).atDay(1));
+        jdbcTemplate.execute("SET LOCAL lock_timeout = " + lockTimeoutMs);
+
+        Boolean archivoTieneMes = jdbcTemplate.queryForObject("SELECT to_regclass(?) IS NOT NULL", Boolean.class,
+                nombre("venta_archivada", mes));
+        if (Boolean.TRUE.equals(archivoTieneMes)) {
+            jdbcTemplate.execute("INSERT INTO venta_archivada SELECT * FROM " + venta);
+            jdbcTemplate.execute("INSERT INTO venta_item_archivado SELECT * FROM " + items);
+            jdbcTemplate.execute("DROP TABLE " + items);
+            jdbcTemplate.execute("DROP TABLE " + venta);
+            log.info("Mes {} copiado a particiones de archivo existentes.", mes);
+            return;
+        }
+
+        jdbcTemplate.execute("ALTER TABLE venta DETACH PARTITION " + venta);
+        jdbcTemplate.execute("ALTER TABLE venta_item DETACH PARTITION " + items);
+        jdbcTemplate.execute("ALTER TABLE venta_archivada ATTACH PARTITION " + venta + " FOR VALUES " + rango);
+        jdbcTemplate.execute("ALTER TABLE venta_item_archivado ATTACH PARTITION " + items + " FOR VALUES " + rango);
+        log.info("Mes {} archivado moviendo sus particiones.", mes);
+    }
+
+    /** Partes numéricas de las ventas anteriores a {@code limite} que quedaron en la partición por defecto. */
+    public List<String> sufijosRezagados(YearMonth limite) {
+        return jdbcTemplate.queryForList(
+                "SELECT DISTINCT right(numero_comprobante, 6) FROM venta_default WHERE fecha_venta < ?",
+                String.class, inicio(limite));
+    }
+
+    /**
+     * Ventas anteriores a {@code limite} que cayeron en {@code venta_default} (por ejemplo, cargadas
+     * sin conexión después de archivar su mes). Son pocas: se copian al archivo y se borran.
+     */
+    public int archivarRezagadas(YearMonth limite) {
+        Timestamp desde = inicio(limite);
+        int ventas = jdbcTemplate.update("""
+                WITH movidas AS (DELETE FROM venta_default WHERE fecha_venta < ? RETURNING *)
+                INSERT INTO venta_archivada SELECT * FROM movidas
+                """, desde);
+        jdbcTemplate.update("""
+                WITH movidos AS (DELETE FROM venta_item_default WHERE fecha_venta < ? RETURNING *)
+                INSERT INTO venta_item_archivado SELECT * FROM movidos
+                """, desde);
+        return ventas;
+    }
+
+    /**
+     * Meses del archivo anteriores a {@code limite}, del más viejo al más nuevo, con los nombres de
+     * sus particiones. Un mes sin partición de ítems no se devuelve.
+     */
+    public List<ParticionArchivada> particionesArchivadas(YearMonth limite) {
+        Map<YearMonth, String> ventas = hijasPorMes("venta_archivada", NOMBRE_PARTICION_ARCHIVO);
+        Map<YearMonth, String> items = hijasPorMes("venta_item_archivado", NOMBRE_PARTICION_ITEMS_ARCHIVO);
+        return ventas.entrySet().stream()
+                .filter(e -> e.getKey().isBefore(limite) && items.containsKey(e.getKey()))
+                .map(e -> new ParticionArchivada(e.getKey(), e.getValue(), items.get(e.getKey())))
+                .toList();
+    }
+
+    public long contarVentas(ParticionArchivada particion) {
+        Long cantidad = jdbcTemplate.queryForObject("SELECT count(*) FROM " + particion.ventas(), Long.class);
+        return cantidad != null ? cantidad : 0;
+    }
+
+    /**
+     * Quita el mes del archivo y borra sus tablas, una vez que quedó en un segmento. Tiene que
+     * correr dentro de una transacción.
+     */
+    public void eliminarDelArchivo(ParticionArchivada particion) {
+        jdbcTemplate.execute("SET LOCAL lock_timeout = " + lockTimeoutMs);
+        jdbcTemplate.execute("ALTER TABLE venta_item_archivado DETACH PARTITION " + particion.items());
+        jdbcTemplate.execute("ALTER TABLE venta_archivada DETACH PARTITION " + particion.ventas());
+        jdbcTemplate.execute("DROP TABLE " + particion.items());
+        jdbcTemplate.execute("DROP TABLE " + particion.ventas());
+    }
+
+    private Map<YearMonth, String> hijasPorMes(String padre, Pattern patron) {
+        List<String> nombres = jdbcTemplate.queryForList("""
+                SELECT c.relname
+                FROM pg_inherits i
+                JOIN pg_class c ON c.oid = i.inhrelid
+                WHERE i.inhparent = CAST(? AS regclass)
+                """, String.class, padre);
+        Map<YearMonth, String> porMes = new TreeMap<>();
+        for (String nombre : nombres) {
+            Matcher m = patron.matcher(nombre);
+            if (m.matches()) {
+                porMes.put(YearMonth.of(Integer.parseInt(m.group(2)), Integer.parseInt(m.group(3))), nombre);
+            }
+        }
+        return porMes;
+    }
+
+    private static Timestamp inicio(YearMonth mes) {
+        return Timestamp.valueOf(mes.atDay(1).atStartOfDay());
+    }
+
+    private static String nombre(String tabla, YearMonth mes) {
+        return "%s_%04d_%02d".formatted(tabla, mes.getYear(), mes.getMonthValue());
+    }
+}
@@ -0,0 +1,66 @@
+package micro.microservicio_producto.services;
+
+import micro.microservicio_producto.exceptions.BusinessLogicException;
+import org.springframework.data.domain.Sort;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Base64;
+import java.util.Map;
+
+/**
+ * Posición de un scroll por keyset: campo y dirección de orden, valor de ese campo en la
+ * última fila devuelta y su id como desempate. Se serializa como base64url para que el
+ * cliente lo trate como opaco.
+ */
+record ProductoCursor(String campo, Sort.Direction direccion, Object valor, long ultimoId) {
+
+    /** Campos por los que se puede hacer scroll y el tipo Java del atributo. */
+    static final Map<String, Class<?>> CAMPOS = Map.ofEntries(
+            Map.entry("id", Long.class),
+            Map.entry("codigoProducto", String.class),
+            Map.entry("descripcion", String.class),
+            Map.entry("cantidad", Integer.class),
+            Map.entry("precio_publico", BigDecimal.class),
+            Map.entry("costo_pesos", BigDecimal.class),
+            Map.entry("costo_dolares", BigDecimal.class),
+            Map.entry("porcentaje_ganancia", BigDecimal.class),
+            Map.entry("iva", BigDecimal.class),
+            Map.entry("precio_sin_iva", BigDecimal.class),
+            Map.entry("fecha_ingreso", LocalDate.class)
+    );
+
+    private static final char SEPARADOR = '\u001F';
+    private static final String NULO = "\u0000";
+
+    String codificar() {
+        String texto = campo + SEPARADOR + direccion.name() + SEPARADOR + ultimoId + SEPARADOR
+                + (valor != null ? valor.toString() : NULO);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(texto.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static ProductoCursor decodificar(String cursor) {
+        try {
+            String texto = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] partes = texto.split(String.valueOf(SEPARADOR), 4);
+            String campo = partes[0];
+            Class<?> tipo = CAMPOS.get(campo);
+            if (tipo == null || partes.length != 4) {
+                throw new BusinessLogicException("Cursor inválido.");
+            }
+            Object valor = NULO.equals(partes[3]) ? null : convertir(partes[3], tipo);
+            return new ProductoCursor(campo, Sort.Direction.valueOf(partes[1]), valor, Long.parseLong(partes[2]));
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException | java.time.DateTimeException e) {
+            throw new BusinessLogicException("Cursor inválido.");
+        }
+    }
+
+    private static Object convertir(String texto, Class<?> tipo) {
+        if (tipo == Long.class) return Long.valueOf(texto);
+        if (tipo == Integer.class) return Integer.valueOf(texto);
+        if (tipo == BigDecimal.class) return new BigDecimal(texto);
+        if (tipo == LocalDate.class) return LocalDate.parse(texto);
+        return texto;
+    }
+}
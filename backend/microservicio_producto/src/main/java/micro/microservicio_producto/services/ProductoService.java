@@ -6,10 +6,16 @@ import micro.microservicio_producto.sync.OneDriveListener;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.domain.Pageable;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import feign.FeignException;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Path;
 import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
 import micro.microservicio_producto.entities.DTO.*;
 import micro.microservicio_producto.entities.Producto;
 import micro.microservicio_producto.exceptions.BusinessLogicException;
@@ -18,11 +24,14 @@ import micro.microservicio_producto.feignClients.DolarFeignClient;
 import micro.microservicio_producto.feignClients.ProveedorClient;
 import micro.microservicio_producto.feignClients.TipoProductoClient;
 import micro.microservicio_producto.repositories.ProductoRepository;
+import micro.microservicio_producto.search.CatalogoIndex;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Profile;
 import org.springframework.data.jpa.domain.Specification;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -30,10 +39,18 @@ import org.springframework.transaction.support.TransactionSynchronization;
 import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.math.BigDecimal;
-import java.math.RoundingMode;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.Instant;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
 import java.util.function.Function;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -46,31 +63,91 @@ public class ProductoService {
     private final DolarFeignClient dolarFeignClient;
     private final TipoProductoClient tipoProductoClient;
     private final ProveedorClient proveedorClient;
+    private final CatalogoIndex catalogoIndex;
+    private final ReferenciaCacheService referenciaCache;
+    private final RecalculoPreciosService recalculoPreciosService;
+    private final CargaMasivaService cargaMasivaService;
+    private final JdbcTemplate jdbcTemplate;
+    private final Executor feignExecutor;
     private final ObjectMapper objectMapper;
 
     @PersistenceContext
     private EntityManager em;
 
-    private static final java.math.BigDecimal RESTO_DEFAULT = new java.math.BigDecimal("100");
+    // updated_at con el reloj de la JVM, como lo escribe Hibernate: el feed de cambios lo compara con él
+    private static final String SQL_DESCONTAR = """
+            UPDATE producto p SET cantidad = p.cantidad - d.cantidad, updated_at = ?
+            FROM unnest(CAST(? AS bigint[]), CAST(? AS integer[])) AS d(id, cantidad)
+            WHERE p.id = d.id AND (? OR p.cantidad >= d.cantidad)
+            RETURNING p.id, p.cantidad
+            """;
+
+    private static final int SCROLL_MAX_SIZE = 200;
+    private static final long CONTEO_ESTIMADO_TTL_MS = 60_000;
+
+    private volatile long conteoEstimado;
+    private volatile long conteoEstimadoEn;
+
+    // Un término sin espacios con al menos un dígito se trata como posible id o código de producto
+    private static final Pattern PATRON_CODIGO = Pattern.compile("^(?=.*\\d)[\\p{Alnum}._/-]{1,64}$");
 
     @Value("${app.dolar.default-value:1200.00}")
     private String dolarDefaultValue;
 
+    @Value("${app.changes.margen-segundos:60}")
+    private long margenCambiosSegundos;
+
+    @Value("${app.changes.max-cambios:5000}")
+    private int maxCambios;
+
+    @Value("${app.changes.tombstone-retencion-dias:30}")
+    private int retencionTombstonesDias;
+
+    @Value("${app.pricing.modo:lotes}")
+    private String modoRecalculo;
+
+    @Value("${app.ventas.permitir-stock-negativo:true}")
+    private boolean permitirStockNegativo;
+
     public ProductoService(ProductoRepository productoRepository,
                            DolarFeignClient dolarFeignClient,
                            TipoProductoClient tipoProductoClient,
-                           ProveedorClient proveedorClient) {
+                           ProveedorClient proveedorClient,
+                           CatalogoIndex catalogoIndex,
+                           ReferenciaCacheService referenciaCache,
+                           RecalculoPreciosService recalculoPreciosService,
+                           CargaMasivaService cargaMasivaService,
+                           JdbcTemplate jdbcTemplate,
+                           @Qualifier("feignExecutor") Executor feignExecutor) {
         this.productoRepository = productoRepository;
         this.dolarFeignClient = dolarFeignClient;
         this.tipoProductoClient = tipoProductoClient;
         this.proveedorClient = proveedorClient;
+        this.catalogoIndex = catalogoIndex;
+        this.referenciaCache = referenciaCache;
+        this.recalculoPreciosService = recalculoPreciosService;
+        this.cargaMasivaService = cargaMasivaService;
+        this.jdbcTemplate = jdbcTemplate;
+        this.feignExecutor = feignExecutor;
         this.objectMapper = new ObjectMapper();
     }
 
     private Page<ProductoPageDTO> convertToPageDTO(Page<Producto> productoPage, Pageable pageable) {
-        List<Long> productoIds = productoPage.stream().map(Producto::getId).toList();
-        List<Object[]> relaciones = productoRepository.findRelacionadosIdsByProductoIds(productoIds);
+        return new PageImpl<>(convertirADTOs(productoPage.getContent()), pageable, productoPage.getTotalElements());
+    }
+
+    private List<ProductoPageDTO> convertirADTOs(List<Producto> productos) {
+        if (productos.isEmpty()) {
+            return List.of();
+        }
+        List<Long> productoIds = productos.stream().map(Producto::getId).toList();
+        return mapearADTOs(productos, productoRepository.findRelacionadosIdsByProductoIds(productoIds));
+    }
 
+    /**
+     * Arma los DTO de una página a partir de las filas (producto_id, producto_relacionado_id).
+     */
+    static List<ProductoPageDTO> mapearADTOs(List<Producto> productos, List<Object[]> relaciones) {
         Map<Long, List<Long>> relacionadosMap = new HashMap<>();
         for (Object[] row : relaciones) {
             Long prodId = ((Number) row[0]).longValue();
@@ -78,30 +155,9 @@ public class ProductoService {
             relacionadosMap.computeIfAbsent(prodId, k -> new ArrayList<>()).add(relId);
         }
 
-        List<ProductoPageDTO> dtos = productoPage.stream().map(producto -> {
-            ProductoPageDTO dto = new ProductoPageDTO();
-            dto.setId(producto.getId());
-            dto.setCodigoProducto(producto.getCodigoProducto());
-            dto.setDescripcion(producto.getDescripcion());
-            dto.setCantidad(producto.getCantidad());
-            dto.setPrecio_publico(producto.getPrecio_publico());
-            dto.setProveedorId(producto.getProveedorId());
-            dto.setTipoProductoId(producto.getTipoProductoId());
-            dto.setProductosRelacionadosIds(relacionadosMap.getOrDefault(producto.getId(), List.of()));
-            dto.setCostoFijo(producto.isCostoFijo());
-            dto.setCosto_dolares(producto.getCosto_dolares());
-            dto.setCosto_pesos(producto.getCosto_pesos());
-            dto.setPorcentaje_ganancia(producto.getPorcentaje_ganancia());
-            dto.setIva(producto.getIva());
-            dto.setResto(producto.getResto());
-            dto.setPrecio_sin_redondear(producto.getPrecio_sin_redondear());
-            dto.setPrecio_publico_us(producto.getPrecio_publico_us());
-            dto.setPrecio_sin_iva(producto.getPrecio_sin_iva());
-            dto.setFecha_ingreso(producto.getFecha_ingreso());
-            return dto;
-        }).toList();
-
-        return new PageImpl<>(dtos, pageable, productoPage.getTotalElements());
+        return productos.stream()
+                .map(producto -> ProductoPageDTO.fromEntity(producto, relacionadosMap.getOrDefault(producto.getId(), List.of())))
+                .toList();
     }
 
     @Transactional(readOnly = true)
@@ -111,7 +167,16 @@ public class ProductoService {
                                                              Long proveedorId,
                                                              Long tipoId,
                                                              Pageable pageable) {
-        Specification<Producto> spec = (root, query, criteriaBuilder) -> {
+        Specification<Producto> spec = construirFiltro(id, codigo_producto, descripcion, proveedorId, tipoId);
+        return productoRepository.findPageDTO(spec, pageable);
+    }
+
+    private Specification<Producto> construirFiltro(Long id,
+                                                    String codigo_producto,
+                                                    String descripcion,
+                                                    Long proveedorId,
+                                                    Long tipoId) {
+        return (root, query, criteriaBuilder) -> {
             List<Predicate> predicates = new ArrayList<>();
 
             // Crear predicados de búsqueda de texto
@@ -135,9 +200,10 @@ public class ProductoService {
                 }
 
                 if (descripcion != null && !descripcion.trim().isEmpty()) {
+                    // Misma expresión que idx_producto_descripcion_trgm (V6) para que use el índice
                     searchPredicates.add(criteriaBuilder.like(
-                            criteriaBuilder.lower(root.get("descripcion")),
-                            "%" + descripcion.toLowerCase() + "%"
+                            criteriaBuilder.function("f_unaccent", String.class, criteriaBuilder.lower(root.get("descripcion"))),
+                            criteriaBuilder.function("f_unaccent", String.class, criteriaBuilder.literal("%" + descripcion.toLowerCase() + "%"))
                     ));
                 }
 
@@ -154,9 +220,173 @@ public class ProductoService {
 
             return criteriaBuilder.and(predicates.toArray(new Predicate[0]));
         };
+    }
+
+    /**
+     * Paginación por keyset: en lugar de OFFSET busca a partir de (campo de orden, id) de la
+     * última fila de la página anterior, así las páginas profundas cuestan lo mismo que la primera.
+     * El conteo es opcional: {@code none} no cuenta, {@code estimate} usa las estadísticas de
+     * pg_class (sólo sin filtros) y {@code exact} hace el count(*).
+     */
+    @Transactional(readOnly = true)
+    public ScrollResponseDTO<ProductoPageDTO> scroll(Long id,
+                                                     String codigo_producto,
+                                                     String descripcion,
+                                                     Long proveedorId,
+                                                     Long tipoId,
+                                                     Sort sort,
+                                                     String after,
+                                                     int size,
+                                                     String total) {
+        List<Sort.Order> ordenes = sort.toList();
+        if (ordenes.size() > 1) {
+            throw new BusinessLogicException("El scroll admite un único campo de orden.");
+        }
+        Sort.Order orden = ordenes.isEmpty() ? Sort.Order.desc("id") : ordenes.get(0);
+        if (!ProductoCursor.CAMPOS.containsKey(orden.getProperty())) {
+            throw new BusinessLogicException("No se puede hacer scroll ordenando por: " + orden.getProperty());
+        }
+        int limite = Math.max(1, Math.min(size, SCROLL_MAX_SIZE));
+
+        ProductoCursor cursor = null;
+        if (after != null && !after.isBlank()) {
+            cursor = ProductoCursor.decodificar(after);
+            if (!cursor.campo().equals(orden.getProperty()) || cursor.direccion() != orden.getDirection()) {
+                throw new BusinessLogicException("El cursor no corresponde al orden pedido.");
+            }
+        }
+
+        Specification<Producto> filtro = construirFiltro(id, codigo_producto, descripcion, proveedorId, tipoId);
+        List<Producto> productos = buscarDesdeCursor(filtro, orden, cursor, limite + 1);
+
+        boolean hasNext = productos.size() > limite;
+        if (hasNext) {
+            productos = productos.subList(0, limite);
+        }
+        String nextCursor = null;
+        if (hasNext) {
+            Producto ultimo = productos.get(productos.size() - 1);
+            nextCursor = new ProductoCursor(orden.getProperty(), orden.getDirection(),
+                    valorDeOrden(ultimo, orden.getProperty()), ultimo.getId()).codificar();
+        }
+
+        Long totalElements = null;
+        boolean estimado = false;
+        boolean sinFiltros = id == null && isBlank(codigo_producto) && isBlank(descripcion) && proveedorId == null && tipoId == null;
+        if ("exact".equalsIgnoreCase(total)) {
+            totalElements = productoRepository.count(filtro);
+        } else if ("estimate".equalsIgnoreCase(total) && sinFiltros) {
+            totalElements = conteoEstimado();
+            estimado = true;
+        }
+
+        return new ScrollResponseDTO<>(convertirADTOs(productos), nextCursor, hasNext, totalElements, estimado);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private List<Producto> buscarDesdeCursor(Specification<Producto> filtro, Sort.Order orden, ProductoCursor cursor, int maxResultados) {
+        CriteriaBuilder cb = em.getCriteriaBuilder();
+        CriteriaQuery<Producto> query = cb.createQuery(Producto.class);
+        Root<Producto> root = query.from(Producto.class);
+
+        boolean asc = orden.isAscending();
+        Path<Comparable> clave = root.get(orden.getProperty());
+        Path<Long> idPath = root.get("id");
+
+        List<Predicate> predicados = new ArrayList<>();
+        predicados.add(filtro.toPredicate(root, query, cb));
+        if (cursor != null) {
+            Predicate idSiguiente = asc ? cb.greaterThan(idPath, cursor.ultimoId()) : cb.lessThan(idPath, cursor.ultimoId());
+            if ("id".equals(orden.getProperty())) {
+                predicados.add(idSiguiente);
+            } else if (cursor.valor() == null) {
+                // Postgres ubica los NULL al final en ASC y al principio en DESC
+                predicados.add(asc
+                        ? cb.and(cb.isNull(clave), idSiguiente)
+                        : cb.or(cb.isNotNull(clave), cb.and(cb.isNull(clave), idSiguiente)));
+            } else {
+                Comparable valor = (Comparable) cursor.valor();
+                Predicate posterior = cb.or(
+                        asc ? cb.greaterThan(clave, valor) : cb.lessThan(clave, valor),
+                        cb.and(cb.equal(clave, valor), idSiguiente));
+                predicados.add(asc ? cb.or(posterior, cb.isNull(clave)) : posterior);
+            }
+        }
+
+        query.select(root)
+                .where(predicados.toArray(new Predicate[0]))
+                .orderBy(asc ? cb.asc(clave) : cb.desc(clave), asc ? cb.asc(idPath) : cb.desc(idPath));
+        return em.createQuery(query).setMaxResults(maxResultados).getResultList();
+    }
+
+    private static Object valorDeOrden(Producto producto, String campo) {
+        return switch (campo) {
+            case "id" -> producto.getId();
+            case "codigoProducto" -> producto.getCodigoProducto();
+            case "descripcion" -> producto.getDescripcion();
+            case "cantidad" -> producto.getCantidad();
+            case "precio_publico" -> producto.getPrecio_publico();
+            case "costo_pesos" -> producto.getCosto_pesos();
+            case "costo_dolares" -> producto.getCosto_dolares();
+            case "porcentaje_ganancia" -> producto.getPorcentaje_ganancia();
+            case "iva" -> producto.getIva();
+            case "precio_sin_iva" -> producto.getPrecio_sin_iva();
+            case "fecha_ingreso" -> producto.getFecha_ingreso();
+            default -> throw new BusinessLogicException("No se puede hacer scroll ordenando por: " + campo);
+        };
+    }
 
-        Page<Producto> productoPage = productoRepository.findAll(spec, pageable);
-        return convertToPageDTO(productoPage, pageable);
+    private long conteoEstimado() {
+        long ahora = System.currentTimeMillis();
+        if (ahora - conteoEstimadoEn > CONTEO_ESTIMADO_TTL_MS) {
+            Long estimado = productoRepository.estimarCantidadProductos();
+            // reltuples vale -1 (o 0) si la tabla nunca fue analizada
+            conteoEstimado = estimado != null && estimado > 0 ? estimado : productoRepository.count();
+            conteoEstimadoEn = ahora;
+        }
+        return conteoEstimado;
+    }
+
+    private static boolean isBlank(String valor) {
+        return valor == null || valor.trim().isEmpty();
+    }
+
+    /**
+     * Búsqueda con un único término: si parece un id o un código de producto se intenta primero
+     * la coincidencia exacta; si no hay, se usa la búsqueda trigram ordenada por similitud.
+     */
+    @Transactional(readOnly = true)
+    public Page<ProductoPageDTO> buscarRankeado(String termino, Long proveedorId, Long tipoId, Pageable pageable) {
+        if (termino == null || termino.trim().isEmpty()) {
+            return findAllPaginatedAndFiltered(null, null, null, proveedorId, tipoId, pageable);
+        }
+        String limpio = termino.trim();
+
+        if (PATRON_CODIGO.matcher(limpio).matches()) {
+            Long posibleId = parsearId(limpio);
+            List<Producto> exactos = productoRepository.findExactosPorIdOCodigo(posibleId, limpio, proveedorId, tipoId);
+            if (!exactos.isEmpty()) {
+                int desde = (int) Math.min(pageable.getOffset(), exactos.size());
+                int hasta = Math.min(desde + pageable.getPageSize(), exactos.size());
+                Page<Producto> pagina = new PageImpl<>(exactos.subList(desde, hasta), pageable, exactos.size());
+                return convertToPageDTO(pagina, pageable);
+            }
+        }
+
+        Pageable sinOrden = PageRequest.of(pageable.getPageNumber(), pageable.getPageSize());
+        Page<Producto> pagina = productoRepository.buscarRankeado(limpio, proveedorId, tipoId, sinOrden);
+        return convertToPageDTO(pagina, pageable);
+    }
+
+    private static Long parsearId(String termino) {
+        if (!termino.chars().allMatch(Character::isDigit)) {
+            return null;
+        }
+        try {
+            return Long.parseLong(termino);
+        } catch (NumberFormatException e) {
+            return null;
+        }
     }
 
     public List<Producto> findAll() {
@@ -216,6 +446,7 @@ public class ProductoService {
         }
 
         Producto saved = productoRepository.save(productToSave);
+        refrescarIndiceTrasCommit(List.of(saved.getId()));
 
         /*TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
             @Override
@@ -240,6 +471,7 @@ public class ProductoService {
             calculateFixedCostPrices(productoExistente);
         }
         Producto updated = productoRepository.save(productoExistente);
+        refrescarIndiceTrasCommit(List.of(id));
 
         /*TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
             @Override
@@ -257,8 +489,11 @@ public class ProductoService {
             throw new ResourceNotFoundException("No se puede eliminar. Producto no encontrado con ID: " + id);
         }
         Producto existing = findById(id);
+        Set<Long> afectados = new HashSet<>(productoRepository.findProductoIdsQueRelacionan(List.of(id)));
+        afectados.add(id);
         productoRepository.eliminarRelaciones(id);
         productoRepository.deleteById(id);
+        refrescarIndiceTrasCommit(afectados);
 
         /*TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
             @Override
@@ -268,40 +503,76 @@ public class ProductoService {
         });*/
     }
 
+    /**
+     * Descuenta el stock de todos los ítems con un único UPDATE sobre {@code unnest(ids, cantidades)};
+     * los IDs repetidos se suman antes. Marca updated_at para que el descuento salga en el feed de
+     * cambios. No toca el contexto de persistencia del llamador, que queda con las cantidades
+     * anteriores.
+     * Con {@code app.ventas.permitir-stock-negativo=false} se rechaza la operación completa si
+     * algún producto quedaría con stock negativo.
+     *
+     * @return cantidad resultante por ID de producto
+     */
     @Transactional
-    public void descontarProductos(List<ProductoDTO> productos) {
+    public Map<Long, Integer> descontarProductos(List<ProductoDTO> productos) {
         if (productos == null || productos.isEmpty()) {
             throw new IllegalArgumentException("La lista de productos a descontar no puede estar vacía.");
         }
 
-        List<Long> ids = new ArrayList<>();
-
+        Map<Long, Integer> aDescontar = new LinkedHashMap<>();
         for (ProductoDTO productoDTO : productos) {
-            int updatedRows = productoRepository.descontar(productoDTO.getId(), productoDTO.getCantidad());
-            if (updatedRows == 0) {
-                throw new ResourceNotFoundException("No se pudo descontar el producto con ID " + productoDTO.getId() + " porque no fue encontrado.");
+            if (productoDTO.getId() == null) {
+                throw new BusinessLogicException("Hay un ítem a descontar sin ID de producto.");
             }
-            ids.add(productoDTO.getId());
+            aDescontar.merge(productoDTO.getId(), productoDTO.getCantidad(), Integer::sum);
         }
+        Long[] ids = aDescontar.keySet().toArray(Long[]::new);
+        Integer[] cantidades = aDescontar.values().toArray(Integer[]::new);
+
+        Map<Long, Integer> resultantes = new HashMap<>();
+        jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(SQL_DESCONTAR);
+            ps.setTimestamp(1, Timestamp.valueOf(LocalDateTime.now()));
+            ps.setArray(2, con.createArrayOf("bigint", ids));
+            ps.setArray(3, con.createArrayOf("integer", cantidades));
+            ps.setBoolean(4, permitirStockNegativo);
+            return ps;
+        }, rs -> {
+            resultantes.put(rs.getLong(1), rs.getInt(2));
+        });
 
-        try {
-            em.flush();
-            em.clear();
-        } catch (Exception e) {
-            log.warn("No se pudo flush/clear el EntityManager: {}", e.getMessage());
+        if (resultantes.size() < ids.length) {
+            rechazarDescuento(aDescontar, resultantes.keySet());
         }
+        refrescarIndiceTrasCommit(resultantes.keySet());
+        return resultantes;
+    }
 
-        /*TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
-            @Override
-            public void afterCommit() {
-                try {
-                    List<Producto> productosActualizados = productoRepository.findAllById(ids);
-                    productosActualizados.forEach(p -> OneDriveListener.exportChange(p, "SAVE"));
-                } catch (Exception e) {
-                    log.error("Error exportando productos tras commit: {}", e.getMessage(), e);
-                }
+    /**
+     * Explica por qué no se actualizaron todos los productos. La excepción revierte los
+     * descuentos ya aplicados en la transacción.
+     */
+    private void rechazarDescuento(Map<Long, Integer> aDescontar, Set<Long> actualizados) {
+        Map<Long, Integer> stockActual = new HashMap<>();
+        productoRepository.findAllById(aDescontar.keySet().stream().filter(id -> !actualizados.contains(id)).toList())
+                .forEach(p -> stockActual.put(p.getId(), p.getCantidad()));
+
+        List<Long> inexistentes = new ArrayList<>();
+        List<String> sinStock = new ArrayList<>();
+        aDescontar.forEach((id, cantidad) -> {
+            if (actualizados.contains(id)) {
+                return;
             }
-        });*/
+            if (!stockActual.containsKey(id)) {
+                inexistentes.add(id);
+            } else {
+                sinStock.add("ID " + id + " (stock " + stockActual.get(id) + ", pedido " + cantidad + ")");
+            }
+        });
+        if (!inexistentes.isEmpty()) {
+            throw new ResourceNotFoundException("No se pudo descontar los productos con IDs " + inexistentes + " porque no fueron encontrados.");
+        }
+        throw new BusinessLogicException("Stock insuficiente para: " + String.join(", ", sinStock));
     }
 
     @Transactional
@@ -313,6 +584,7 @@ public class ProductoService {
         }
         producto1.agregarRelacion(producto2);
         Producto productoGuardado = productoRepository.save(producto1);
+        refrescarIndiceTrasCommit(List.of(producto1.getId(), producto2.getId()));
 
         /*TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
             @Override
@@ -327,6 +599,7 @@ public class ProductoService {
         Producto productoARemover = findById(dto.getProductoRelacionadoId());
 
         productoPrincipal.eliminarRelacion(productoARemover);
+        refrescarIndiceTrasCommit(List.of(productoPrincipal.getId(), productoARemover.getId()));
 
         log.info("Relación entre producto ID {} y producto ID {} eliminada.", dto.getProductoId(), dto.getProductoRelacionadoId());
     }
@@ -336,7 +609,7 @@ public class ProductoService {
         }
 
         try {
-            ProveedorDTO proveedor = proveedorClient.getProveedorById(proveedorId).getBody();
+            ProveedorDTO proveedor = referenciaCache.obtenerProveedor(proveedorId);
             if (proveedor != null
                     && proveedor.getValorCotizacionManual() != null
                     && proveedor.getValorCotizacionManual().compareTo(BigDecimal.ZERO) > 0) {
@@ -354,131 +627,152 @@ public class ProductoService {
     public List<ProductoRelacionadoResultadoDTO> obtenerRelacionadosConProveedor(Long productoId) {
         Producto producto = findById(productoId);
         Set<Producto> relacionados = producto.getProductosRelacionados();
+        if (relacionados.isEmpty()) {
+            return List.of();
+        }
+        Set<Long> proveedorIds = relacionados.stream().map(Producto::getProveedorId).filter(Objects::nonNull).collect(Collectors.toSet());
+        Set<Long> tipoIds = relacionados.stream().map(Producto::getTipoProductoId).filter(Objects::nonNull).collect(Collectors.toSet());
+
+        // Lo que no esté en la cache local se pide con una llamada por servicio, ambas en paralelo
+        CompletableFuture<Map<Long, ProveedorDTO>> proveedoresFuture = CompletableFuture.supplyAsync(
+                () -> referenciaCache.obtenerProveedores(proveedorIds),
+                feignExecutor);
+        CompletableFuture<Map<Long, TipoProductoDTO>> tiposFuture = CompletableFuture.supplyAsync(
+                () -> referenciaCache.obtenerTipos(tipoIds),
+                feignExecutor);
+
+        Map<Long, ProveedorDTO> proveedores = obtenerResultado(proveedoresFuture, "proveedores");
+        Map<Long, TipoProductoDTO> tipos = obtenerResultado(tiposFuture, "tipos de producto");
+
         List<ProductoRelacionadoResultadoDTO> dtos = new ArrayList<>();
         for (Producto p : relacionados) {
-            try {
-                ProveedorDTO proveedor = proveedorClient.getProveedorById(p.getProveedorId()).getBody();
-                TipoProductoDTO tipo = tipoProductoClient.getTipoProductoById(p.getTipoProductoId()).getBody();
-                dtos.add(new ProductoRelacionadoResultadoDTO(p.getId(), p.getDescripcion(), proveedor.getNombre(), p.getPrecio_publico(), tipo.getNombre()));
-            } catch (FeignException e) {
-                log.error("No se pudo obtener información completa para el producto relacionado ID: {}. Causa: {}", p.getId(), e.getMessage());
+            ProveedorDTO proveedor = proveedores.get(p.getProveedorId());
+            TipoProductoDTO tipo = tipos.get(p.getTipoProductoId());
+            if (proveedor == null || tipo == null) {
+                log.error("No se pudo obtener información completa para el producto relacionado ID: {}", p.getId());
+                continue;
             }
+            dtos.add(new ProductoRelacionadoResultadoDTO(p.getId(), p.getDescripcion(), proveedor.getNombre(), p.getPrecio_publico(), tipo.getNombre()));
         }
         return dtos;
     }
 
-    @Transactional
+    private <K, V> Map<K, V> obtenerResultado(CompletableFuture<Map<K, V>> future, String descripcion) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            log.error("No se pudieron obtener los {} de los productos relacionados. Causa: {}", descripcion,
+                    e.getCause() != null ? e.getCause().getMessage() : e.getMessage());
+            return Map.of();
+        }
+    }
+
+    /**
+     * Sin transacción propia: el recálculo commitea lote por lote y el índice se refresca con
+     * cada lote confirmado.
+     */
     @Profile("online")
     @ConditionalOnProperty(name = "app.pricing.auto-update.enabled", havingValue = "true", matchIfMissing = true)
     @Scheduled(cron = "0 0 */3 * * *")
     public void actualizarPreciosProgramado() {
         log.info("--- Iniciando tarea programada: Actualización de precios ---");
         BigDecimal valorDolarGeneral = obtenerValorDolar();
-        long productosActualizados = 0;
-
-        List<Producto> productosAActualizar = productoRepository.findAllByCostoFijoIsFalse();
-        Map<Long, ProveedorDTO> proveedoresCache = new HashMap<>();
-
-        for (Producto producto : productosAActualizar) {
-            BigDecimal valorDolarProducto = valorDolarGeneral;
-
-            if (producto.getProveedorId() != null) {
-                ProveedorDTO proveedor = proveedoresCache.computeIfAbsent(producto.getProveedorId(), id -> {
-                    try {
-                        return proveedorClient.getProveedorById(id).getBody();
-                    } catch (FeignException e) {
-                        log.error("No se pudo obtener el proveedor con ID {}. Causa: {}", id, e.getMessage());
-                        return null;
-                    }
-                });
-
-                if (proveedor != null && proveedor.getValorCotizacionManual() != null && proveedor.getValorCotizacionManual().compareTo(BigDecimal.ZERO) > 0) {
-                    log.info("Usando cotización manual del proveedor ID {} para el producto ID {}", proveedor.getId(), proveedor.getValorCotizacionManual());
-                    valorDolarProducto = proveedor.getValorCotizacionManual();
-                }
-            }
-            log.info("Recalculando precios para producto ID {} con valor de dólar: {}", producto.getId(), valorDolarProducto);
-            recalculatePrices(producto, valorDolarProducto);
-            productosActualizados++;
-        }
 
-        if (!productosAActualizar.isEmpty()) {
-            productoRepository.saveAll(productosAActualizar);
-        }
+        long actualizados = recalcularCatalogo(valorDolarGeneral, false);
 
         log.info("--- Finalizada tarea programada: {} productos actualizados. Valor de dólar general: {} ---",
-                productosActualizados, valorDolarGeneral);
+                actualizados, valorDolarGeneral);
+    }
+
+    /**
+     * Recalcula sólo los productos de proveedores que usan el dólar oficial, ante un cambio de
+     * cotización notificado por el microservicio de dólar.
+     *
+     * @return cantidad de productos actualizados
+     */
+    public long recalcularPorDolarOficial(BigDecimal valorDolar) {
+        long actualizados = recalcularCatalogo(valorDolar, true);
+        log.info("Recálculo por cambio de dólar oficial ({}): {} productos actualizados.", valorDolar, actualizados);
+        return actualizados;
+    }
+
+    /**
+     * Recalcula el catálogo según {@code app.pricing.modo}: {@code lotes} recorre rangos de IDs;
+     * {@code paralelo} reparte por proveedor entre varios hilos, más una partición para los
+     * productos sin proveedor. Las cotizaciones manuales se resuelven una sola vez, antes de
+     * empezar.
+     */
+    private long recalcularCatalogo(BigDecimal valorDolarGeneral, boolean soloDolarOficial) {
+        Map<Long, BigDecimal> cotizaciones = obtenerCotizacionesManuales();
+        if (!"paralelo".equalsIgnoreCase(modoRecalculo)) {
+            return recalculoPreciosService.recalcularPorLotes(valorDolarGeneral, cotizaciones, soloDolarOficial,
+                    this::refrescarIndiceTrasCommit);
+        }
+        List<Long> particiones = new ArrayList<>(productoRepository.findProveedorIdsSinCostoFijo());
+        if (soloDolarOficial) {
+            particiones.removeIf(cotizaciones::containsKey);
+        }
+        // Los productos sin proveedor usan el dólar general: también entran por dólar oficial
+        particiones.add(null);
+        return recalculoPreciosService.recalcularEnParalelo(valorDolarGeneral, cotizaciones, particiones,
+                        this::refrescarIndiceTrasCommit).stream()
+                .mapToLong(RecalculoPreciosService.TiempoParticion::actualizados).sum();
+    }
+
+    /**
+     * Cotizaciones manuales (> 0) de los proveedores con productos sin costo fijo, resueltas con
+     * una sola consulta por lote a la cache de referencias.
+     */
+    private Map<Long, BigDecimal> obtenerCotizacionesManuales() {
+        List<Long> proveedorIds = productoRepository.findProveedorIdsSinCostoFijo();
+        Map<Long, BigDecimal> cotizaciones = new HashMap<>();
+        if (proveedorIds.isEmpty()) {
+            return cotizaciones;
+        }
+        try {
+            referenciaCache.obtenerProveedores(proveedorIds).forEach((id, proveedor) -> {
+                BigDecimal manual = proveedor.getValorCotizacionManual();
+                if (manual != null && manual.compareTo(BigDecimal.ZERO) > 0) {
+                    cotizaciones.put(id, manual);
+                }
+            });
+        } catch (FeignException e) {
+            log.error("No se pudieron obtener las cotizaciones de los proveedores. Se usa el dólar general. Causa: {}", e.getMessage());
+        }
+        log.info("{} proveedores con cotización manual.", cotizaciones.size());
+        return cotizaciones;
     }
 
     @Transactional
     public void recalcularPreciosPorProveedor(Long proveedorId,BigDecimal valorDolar) {
         log.info("Recalculando con cotización forzada: {}", valorDolar);
+        // La cotización del proveedor cambió: la copia local quedó vieja
+        referenciaCache.invalidarProveedor(proveedorId);
 
-        List<Producto> productos = productoRepository.findAll(
-                (root, query, cb) -> cb.and(
-                        cb.equal(root.get("proveedorId"), proveedorId),
-                        cb.equal(root.get("costoFijo"), false)
-                )
-        );
-
-        if (productos.isEmpty()) {
+        List<Long> actualizados = recalculoPreciosService.recalcularProveedor(proveedorId, valorDolar);
+        if (actualizados.isEmpty()) {
             log.info("No hay productos sin costo fijo para el proveedor ID: {}", proveedorId);
             return;
         }
 
-        final BigDecimal valorDolarFinal = valorDolar;
-        productos.forEach(producto -> {
-            log.debug("Recalculando producto ID: {} con dólar: {}", producto.getId(), valorDolarFinal);
-            recalculatePrices(producto, valorDolarFinal);
-        });
-
-        productoRepository.saveAll(productos);
+        refrescarIndiceTrasCommit(actualizados);
         log.info("Recalculados {} productos del proveedor ID: {} con cotización: {}",
-                productos.size(), proveedorId, valorDolarFinal);
+                actualizados.size(), proveedorId, valorDolar);
     }
 
     private void calculateFixedCostPrices(Producto producto) {
-        if (producto.getCosto_pesos() == null || producto.getPorcentaje_ganancia() == null) {
+        if (!CalculadoraPrecios.calcularCostoFijo(producto)) {
             log.warn("Producto ID {} es costo fijo pero falta costo_pesos o porcentaje_ganancia", producto.getId());
-            return;
         }
-
-        BigDecimal cien = new BigDecimal("100");
-        BigDecimal porcentajeGanancia = producto.getPorcentaje_ganancia().divide(cien, 4, RoundingMode.HALF_UP);
-
-        BigDecimal precioSinRedondear = producto.getCosto_pesos().multiply(BigDecimal.ONE.add(porcentajeGanancia));
-        producto.setPrecio_sin_redondear(precioSinRedondear.setScale(4, RoundingMode.HALF_UP));
-
-        BigDecimal resto = producto.getResto() != null && producto.getResto().compareTo(BigDecimal.ZERO) > 0
-                ? producto.getResto()
-                : RESTO_DEFAULT;;
-        BigDecimal precioPublico = precioSinRedondear.divide(resto, 0, RoundingMode.CEILING).multiply(resto);
-        producto.setPrecio_publico(precioPublico.setScale(2, RoundingMode.HALF_UP));
     }
 
     private void recalculatePrices(Producto producto, BigDecimal valorDolar) {
-        if (producto.getPrecio_sin_iva() == null || producto.getIva() == null || producto.getPorcentaje_ganancia() == null) {
+        if (!CalculadoraPrecios.recalcular(producto, valorDolar)) {
             log.warn("Producto ID {} no tiene los datos base (precio sin iva, iva, ganancia) para calcular precios. Saltando...", producto.getId());
-            return;
         }
-        BigDecimal cien = new BigDecimal("100");
-        BigDecimal porcentajeGanancia = producto.getPorcentaje_ganancia().divide(cien, 4, RoundingMode.HALF_UP);
-        BigDecimal costoDolares = producto.getPrecio_sin_iva().multiply(BigDecimal.ONE.add(producto.getIva()));
-        producto.setCosto_dolares(costoDolares.setScale(4, RoundingMode.HALF_UP));
-        BigDecimal costoPesos = costoDolares.multiply(valorDolar);
-        producto.setCosto_pesos(costoPesos.setScale(4, RoundingMode.HALF_UP));
-        BigDecimal precioPublicoUs = costoDolares.multiply(BigDecimal.ONE.add(porcentajeGanancia));
-        producto.setPrecio_publico_us(precioPublicoUs.setScale(4, RoundingMode.HALF_UP));
-        BigDecimal precioSinRedondear = precioPublicoUs.multiply(valorDolar);
-        producto.setPrecio_sin_redondear(precioSinRedondear.setScale(4, RoundingMode.HALF_UP));
-        BigDecimal resto = producto.getResto() != null && producto.getResto().compareTo(BigDecimal.ZERO) > 0
-                ? producto.getResto()
-                : RESTO_DEFAULT;;
-        BigDecimal precioPublico = precioSinRedondear.divide(resto, 0, RoundingMode.CEILING).multiply(resto);
-        producto.setPrecio_publico(precioPublico.setScale(2, RoundingMode.HALF_UP));
-    }
-
-    private BigDecimal obtenerValorDolar() {
+    }
+
+    BigDecimal obtenerValorDolar() {
         try {
             return dolarFeignClient.getValorDolar(1).getBody();
         } catch (Exception e) {
@@ -491,8 +785,8 @@ public class ProductoService {
         try {
             Objects.requireNonNull(tipoProductoId, "El ID del tipo de producto no puede ser nulo.");
             Objects.requireNonNull(proveedorId, "El ID del proveedor no puede ser nulo.");
-            tipoProductoClient.getTipoProductoById(tipoProductoId);
-            proveedorClient.getProveedorById(proveedorId);
+            referenciaCache.obtenerTipo(tipoProductoId);
+            referenciaCache.obtenerProveedor(proveedorId);
         } catch (NullPointerException ex) {
             throw new BusinessLogicException(ex.getMessage());
         } catch (FeignException.NotFound ex) {
@@ -502,6 +796,17 @@ public class ProductoService {
     }
 
     private void updateProductoFields(Producto target, Producto source) {
+        copiarCamposEscalares(target, source);
+        if (source.getProductosRelacionadosIds() != null) {
+            Set<Producto> nuevasRelaciones = new HashSet<>(productoRepository.findAllById(source.getProductosRelacionadosIds()));
+            target.setProductosRelacionados(nuevasRelaciones);
+        }
+    }
+
+    /**
+     * Copia los campos informados de {@code source}; los nulos (y cantidad 0) no pisan el valor actual.
+     */
+    static void copiarCamposEscalares(Producto target, Producto source) {
         if (source.getCodigoProducto() != null) target.setCodigoProducto(source.getCodigoProducto());
         if (source.getDescripcion() != null) target.setDescripcion(source.getDescripcion());
         if (source.getTipoProductoId() != null) target.setTipoProductoId(source.getTipoProductoId());
@@ -512,102 +817,30 @@ public class ProductoService {
         if (source.getPorcentaje_ganancia() != null) target.setPorcentaje_ganancia(source.getPorcentaje_ganancia());
         if (source.getPrecio_sin_iva() != null) target.setPrecio_sin_iva(source.getPrecio_sin_iva());
         if (source.getResto() != null) target.setResto(source.getResto());
-        if (source.getProductosRelacionadosIds() != null) {
-            Set<Producto> nuevasRelaciones = new HashSet<>(productoRepository.findAllById(source.getProductosRelacionadosIds()));
-            target.setProductosRelacionados(nuevasRelaciones);
-        }
         if(source.isCostoFijo() != target.isCostoFijo()) target.setCostoFijo(source.isCostoFijo());
         if(source.getCosto_pesos() != null) target.setCosto_pesos(source.getCosto_pesos());
     }
+
+    /**
+     * Carga masiva en una sola transacción: si una fila falla no se guarda ninguna.
+     */
     @Transactional
     public void saveAllProducts(List<Producto> incomingProducts) {
         if (incomingProducts == null || incomingProducts.isEmpty()) {
             return;
         }
+        importarLote(incomingProducts, obtenerValorDolar());
+    }
 
-        Map<Long, Boolean> tipoOk = new HashMap<>();
-        Map<Long, Boolean> proveedorOk = new HashMap<>();
-        java.math.BigDecimal valorDolar = obtenerValorDolar();
-        int batchSize = 100;
-        int processed = 0;
-
-        for (Producto incoming : incomingProducts) {
-            log.info(incoming.toString());
-            for (int attempt = 1; attempt <= 2; attempt++) {
-                try {
-                    if (incoming.getCodigoProducto() == null || incoming.getCodigoProducto().trim().isEmpty()) {
-                        incoming.setCodigoProducto("PROD-" + UUID.randomUUID().toString().substring(0, 8).toUpperCase());
-                    }
-
-                    if (incoming.getResto() == null || incoming.getResto().compareTo(java.math.BigDecimal.ZERO) <= 0) {
-                        incoming.setResto(RESTO_DEFAULT);
-                    }
-
-                    Long tipoId = incoming.getTipoProductoId();
-                    Long proveedorId = incoming.getProveedorId();
-                    if (tipoId != null && !Boolean.TRUE.equals(tipoOk.get(tipoId))) {
-                        tipoProductoClient.getTipoProductoById(tipoId);
-                        tipoOk.put(tipoId, Boolean.TRUE);
-                    }
-                    if (proveedorId != null && !Boolean.TRUE.equals(proveedorOk.get(proveedorId))) {
-                        proveedorClient.getProveedorById(proveedorId);
-                        proveedorOk.put(proveedorId, Boolean.TRUE);
-                    }
-
-                    Optional<Producto> existingOpt = productoRepository.findByCodigoProductoAndProveedorId(
-                            incoming.getCodigoProducto(),
-                            incoming.getProveedorId()
-                    );
-
-                    Producto entity;
-                    if (existingOpt.isPresent()) {
-                        entity = existingOpt.get();
-                        updateProductoFields(entity, incoming);
-                    } else {
-                        entity = incoming;
-                        if (entity.getFecha_ingreso() == null) {
-                            entity.setFecha_ingreso(LocalDate.now());
-                        }
-                    }
-
-                    if (entity.isCostoFijo()) {
-                        calculateFixedCostPrices(entity);
-                    } else {
-                        recalculatePrices(entity, valorDolar);
-                    }
-
-                    Producto saved = productoRepository.save(entity);
-
-                    /*TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
-                        @Override
-                        public void afterCommit() {
-                            OneDriveListener.exportChange(saved, "SAVE");
-                        }
-                    });*/
-
-                    if (++processed % batchSize == 0) {
-                        em.flush();
-                        em.clear();
-                    }
-
-                    break;
-                } catch (feign.FeignException | ResourceNotFoundException ex) {
-                    if (attempt == 2) {
-                        log.error("Fallo definitivo al procesar producto {}: {}", incoming.getCodigoProducto(), ex.getMessage());
-                        throw ex;
-                    }
-                    log.warn("Fallo al procesar producto {} (intento {}/2). Reintentando...", incoming.getCodigoProducto(), attempt);
-                    try {
-                        Thread.sleep(200L);
-                    } catch (InterruptedException ie) {
-                        Thread.currentThread().interrupt();
-                    }
-                }
-            }
-        }
-
-        em.flush();
-        em.clear();
+    /**
+     * Importa un lote de filas en la transacción actual o en una nueva. Lo usan la carga masiva
+     * y los trabajos de importación, que confirman cada lote por separado.
+     */
+    @Transactional
+    public CargaMasivaService.Resultado importarLote(List<Producto> filas, BigDecimal valorDolar) {
+        CargaMasivaService.Resultado resultado = cargaMasivaService.importar(filas, valorDolar);
+        refrescarIndiceTrasCommit(resultado.idsEscritos());
+        return resultado;
     }
     @Transactional
     public void deleteMultiple(List<Long> ids) {
@@ -616,10 +849,13 @@ public class ProductoService {
         }
         List<Producto> snapshots = productoRepository.findAllById(ids);
         log.info("Eliminando múltiples relaciones con IDs en service: {}", ids);
+        Set<Long> afectados = new HashSet<>(productoRepository.findProductoIdsQueRelacionan(ids));
+        afectados.addAll(ids);
         productoRepository.eliminarRelacionesEnBloque(ids);
         log.info("Se eliminaron las relaciones: {}", ids);
         productoRepository.deleteAllById(ids);
         log.info("Se eliminaron los productos: {}", ids);
+        refrescarIndiceTrasCommit(afectados);
         /*TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
             @Override
             public void afterCommit() {
@@ -627,6 +863,103 @@ public class ProductoService {
             }
         });*/
     }
+    /**
+     * Programa el refresco del índice de catálogo para después del commit, así nunca
+     * expone cambios que terminen en rollback.
+     */
+    private void refrescarIndiceTrasCommit(Collection<Long> ids) {
+        if (!catalogoIndex.isEnabled() || ids.isEmpty()) {
+            return;
+        }
+        List<Long> afectados = List.copyOf(ids);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            catalogoIndex.refrescar(afectados);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                catalogoIndex.refrescar(afectados);
+            }
+        });
+    }
+
+    /**
+     * Cambios del catálogo desde {@code since}: productos con updated_at posterior y bajas
+     * registradas en producto_tombstone. El token combina una marca de tiempo, que se deja
+     * {@code margenCambiosSegundos} por detrás del reloj para no perder transacciones que
+     * commitean tarde, con la última secuencia de tombstone entregada. Los tombstones se retienen
+     * con el mismo margen: su seq sale al insertar, no al commitear.
+     */
+    @Transactional(readOnly = true)
+    public ProductoChangesDTO obtenerCambios(String since) {
+        if (since == null || since.isBlank()) {
+            return new ProductoChangesDTO(List.of(), List.of(), tokenActual(), true);
+        }
+        long[] token = parsearTokenCambios(since);
+        long desdeMillis = token[0];
+        long desdeSeq = token[1];
+
+        Long minSeq = productoRepository.findMinTombstoneSeq();
+        if (minSeq != null && desdeSeq < minSeq - 1) {
+            log.info("Token de cambios {} anterior a la purga de tombstones. Se pide resincronización completa.", since);
+            return new ProductoChangesDTO(List.of(), List.of(), tokenActual(), true);
+        }
+
+        List<Producto> modificados = productoRepository.findModificadosDesde(
+                desdeMillisAFecha(desdeMillis), PageRequest.of(0, maxCambios + 1));
+        List<Object[]> tombstones = productoRepository.findTombstonesDesde(desdeSeq, margenCambiosSegundos, maxCambios + 1);
+        if (modificados.size() > maxCambios || tombstones.size() > maxCambios) {
+            return new ProductoChangesDTO(List.of(), List.of(), tokenActual(), true);
+        }
+
+        long siguienteSeq = desdeSeq;
+        Set<Long> eliminados = new LinkedHashSet<>();
+        for (Object[] row : tombstones) {
+            siguienteSeq = Math.max(siguienteSeq, ((Number) row[0]).longValue());
+            eliminados.add(((Number) row[1]).longValue());
+        }
+        long siguienteMillis = Math.max(desdeMillis, horizonteCambiosMillis());
+
+        return new ProductoChangesDTO(convertirADTOs(modificados), new ArrayList<>(eliminados),
+                siguienteMillis + "-" + siguienteSeq, false);
+    }
+
+    private String tokenActual() {
+        return horizonteCambiosMillis() + "-" + productoRepository.findMaxTombstoneSeq(margenCambiosSegundos);
+    }
+
+    // updated_at es un TIMESTAMP sin zona escrito con el reloj de la JVM; se lo interpreta como UTC
+    // igual que findMaxLastModifiedTimestamp para que el token sea un número comparable.
+    private long horizonteCambiosMillis() {
+        return LocalDateTime.now().minusSeconds(margenCambiosSegundos).toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    private static LocalDateTime desdeMillisAFecha(long millis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneOffset.UTC);
+    }
+
+    private static long[] parsearTokenCambios(String token) {
+        String[] partes = token.split("-");
+        try {
+            if (partes.length != 2) {
+                throw new NumberFormatException();
+            }
+            return new long[]{Long.parseLong(partes[0]), Long.parseLong(partes[1])};
+        } catch (NumberFormatException e) {
+            throw new BusinessLogicException("Token de cambios inválido: " + token);
+        }
+    }
+
+    @Scheduled(cron = "${app.changes.purga-cron:0 15 3 * * *}")
+    @Transactional
+    public void purgarTombstones() {
+        int borrados = productoRepository.purgarTombstones(LocalDateTime.now().minusDays(retencionTombstonesDias));
+        if (borrados > 0) {
+            log.info("Purgados {} tombstones de productos con más de {} días.", borrados, retencionTombstonesDias);
+        }
+    }
+
     @Transactional(readOnly = true)
     public LastModifiedDTO getLastModified() {
         Long timestamp = productoRepository.findMaxLastModifiedTimestamp();
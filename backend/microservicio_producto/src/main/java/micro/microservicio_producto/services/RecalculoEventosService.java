@@ -0,0 +1,84 @@
+package micro.microservicio_producto.services;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Recibe los avisos de cambio del dólar oficial y dispara el recálculo de precios. Los avisos que
+ * llegan dentro de {@code app.pricing.evento.demora-ms} se agrupan en una sola corrida con el
+ * último valor recibido; las corridas se ejecutan de a una en un hilo propio, así una ráfaga de
+ * cambios nunca recalcula el catálogo en paralelo.
+ */
+@Service
+public class RecalculoEventosService {
+
+    private static final Logger log = LoggerFactory.getLogger(RecalculoEventosService.class);
+
+    // ID del dólar que usa ProductoService para el precio general
+    private static final long DOLAR_OFICIAL_ID = 1L;
+
+    private final ProductoService productoService;
+    private final ScheduledExecutorService ejecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread hilo = new Thread(r, "RecalculoDolar");
+        hilo.setDaemon(true);
+        return hilo;
+    });
+
+    private final AtomicReference<BigDecimal> dolarPendiente = new AtomicReference<>();
+    private final AtomicBoolean programado = new AtomicBoolean();
+
+    @Value("${app.pricing.evento.demora-ms:5000}")
+    private long demoraMs;
+
+    public RecalculoEventosService(ProductoService productoService) {
+        this.productoService = productoService;
+    }
+
+    /**
+     * Registra un cambio de dólar. Si ya hay una corrida programada, sólo se reemplaza el valor.
+     *
+     * @return false si el dólar no es el oficial y el aviso se ignora
+     */
+    public boolean notificarCambioDolar(Long dolarId, BigDecimal valor) {
+        if (dolarId == null || dolarId != DOLAR_OFICIAL_ID || valor == null) {
+            log.debug("Aviso de dólar ID {} ignorado: no es el dólar oficial.", dolarId);
+            return false;
+        }
+        dolarPendiente.set(valor);
+        if (programado.compareAndSet(false, true)) {
+            ejecutor.schedule(this::procesar, demoraMs, TimeUnit.MILLISECONDS);
+            log.info("Recálculo por cambio de dólar programado en {} ms (valor {}).", demoraMs, valor);
+        }
+        return true;
+    }
+
+    private void procesar() {
+        // Desde acá un aviso nuevo programa otra corrida, que espera a que termine ésta
+        programado.set(false);
+        BigDecimal valor = dolarPendiente.getAndSet(null);
+        if (valor == null) {
+            return;
+        }
+        try {
+            productoService.recalcularPorDolarOficial(valor);
+        } catch (Exception e) {
+            log.error("Falló el recálculo por cambio de dólar ({}). Se aplicará en la próxima corrida programada. Causa: {}",
+                    valor, e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    void detener() {
+        ejecutor.shutdownNow();
+    }
+}
@@ -0,0 +1,354 @@
+package micro.microservicio_producto.services;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.hibernate.query.TypedParameterValue;
+import org.hibernate.type.StandardBasicTypes;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * Recalcula precios de productos sin costo fijo con un único UPDATE ejecutado en Postgres.
+ * <p>
+ * La fórmula replica {@code ProductoService.recalculatePrices}, que sigue siendo la referencia:
+ * los intermedios se calculan sin redondear (la multiplicación de numeric es exacta), cada
+ * columna se guarda con {@code round(x, 4)} (mitad hacia afuera, igual que HALF_UP) y el
+ * redondeo a múltiplo de {@code resto} usa div/mod en lugar de {@code ceil(a / b)}, porque la
+ * división de numeric se redondea a ~16 dígitos antes del ceil y puede diferir de
+ * {@code divide(resto, 0, CEILING)}.
+ * <p>
+ * Sólo se escriben las filas cuyo resultado cambió: un recálculo sin movimiento de cotización
+ * no toca updated_at ni obliga a los clientes a resincronizar.
+ */
+@Service
+public class RecalculoPreciosService {
+
+    private static final Logger log = LoggerFactory.getLogger(RecalculoPreciosService.class);
+
+    private static final String SQL_RECALCULO = """
+            WITH cotizaciones AS (
+                SELECT CAST(unnest(string_to_array(:proveedorIds, ',')) AS BIGINT) AS proveedor_id,
+                       CAST(unnest(string_to_array(:cotizaciones, ',')) AS NUMERIC) AS cotizacion
+            ), base AS (
+                SELECT p.id,
+                       p.precio_sin_iva * (1 + p.iva) AS costo_dolares,
+                       round(p.porcentaje_ganancia / 100, 4) AS ganancia,
+                       COALESCE(c.cotizacion, CAST(:dolar AS numeric)) AS dolar,
+                       CASE WHEN p.resto > 0 THEN p.resto ELSE 100 END AS resto
+                FROM producto p
+                LEFT JOIN cotizaciones c ON c.proveedor_id = p.proveedor_id
+                WHERE p.costo_fijo = false
+                  AND p.precio_sin_iva IS NOT NULL
+                  AND p.iva IS NOT NULL
+                  AND p.porcentaje_ganancia IS NOT NULL
+                  AND (CAST(:proveedorId AS BIGINT) IS NULL OR p.proveedor_id = CAST(:proveedorId AS BIGINT))
+                  AND (CAST(:sinProveedor AS BOOLEAN) = false OR p.proveedor_id IS NULL)
+                  AND (CAST(:soloDolarOficial AS BOOLEAN) = false OR c.proveedor_id IS NULL)
+                  AND p.id BETWEEN :desdeId AND :hastaId
+            ), calculo AS (
+                SELECT id,
+                       costo_dolares,
+                       costo_dolares * dolar AS costo_pesos,
+                       costo_dolares * (1 + ganancia) AS precio_publico_us,
+                       costo_dolares * (1 + ganancia) * dolar AS precio_sin_redondear,
+                       resto
+                FROM base
+            ), nuevos AS (
+                SELECT id,
+                       round(costo_dolares, 4) AS costo_dolares,
+                       round(costo_pesos, 4) AS costo_pesos,
+                       round(precio_publico_us, 4) AS precio_publico_us,
+                       round(precio_sin_redondear, 4) AS precio_sin_redondear,
+                       round((div(precio_sin_redondear, resto)
+                              + CASE WHEN mod(precio_sin_redondear, resto) > 0 THEN 1 ELSE 0 END) * resto, 2) AS precio_publico
+                FROM calculo
+            )
+            UPDATE producto p
+            SET costo_dolares        = n.costo_dolares,
+                costo_pesos          = n.costo_pesos,
+                precio_publico_us    = n.precio_publico_us,
+                precio_sin_redondear = n.precio_sin_redondear,
+                precio_publico       = n.precio_publico,
+                updated_at           = :ahora
+            FROM nuevos n
+            WHERE p.id = n.id
+              AND (p.costo_dolares, p.costo_pesos, p.precio_publico_us, p.precio_sin_redondear, p.precio_publico)
+                  IS DISTINCT FROM (n.costo_dolares, n.costo_pesos, n.precio_publico_us, n.precio_sin_redondear, n.precio_publico)
+            RETURNING p.id
+            """;
+
+    private static final String SQL_SIGUIENTE_LOTE = """
+            SELECT COUNT(*), MAX(id) FROM (
+                SELECT id FROM producto
+                WHERE costo_fijo = false AND id > :ultimoId
+                ORDER BY id
+                LIMIT :limite
+            ) lote
+            """;
+
+    private static final String SQL_CONTEO_PARTICIONES = """
+            SELECT proveedor_id, COUNT(*) FROM producto
+            WHERE costo_fijo = false
+            GROUP BY proveedor_id
+            """;
+
+    @PersistenceContext
+    private EntityManager em;
+
+    private final TransactionTemplate loteTemplate;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.pricing.lote:1000}")
+    private int tamanioLote;
+
+    @Value("${app.pricing.paralelismo:0}")
+    private int paralelismo;
+
+    // Progreso de la corrida en curso, expuesto como gauges
+    private final AtomicLong totalCorrida = new AtomicLong();
+    private final AtomicLong examinadosCorrida = new AtomicLong();
+    private final AtomicLong actualizadosCorrida = new AtomicLong();
+
+    public RecalculoPreciosService(PlatformTransactionManager transactionManager, MeterRegistry meterRegistry) {
+        this.loteTemplate = new TransactionTemplate(transactionManager);
+        this.loteTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.meterRegistry = meterRegistry;
+        Gauge.builder("productos.recalculo.corrida.total", totalCorrida, AtomicLong::get)
+                .description("Productos sin costo fijo a recorrer en la corrida actual").register(meterRegistry);
+        Gauge.builder("productos.recalculo.corrida.examinados", examinadosCorrida, AtomicLong::get)
+                .description("Productos ya recorridos en la corrida actual").register(meterRegistry);
+        Gauge.builder("productos.recalculo.corrida.actualizados", actualizadosCorrida, AtomicLong::get)
+                .description("Productos cuyo precio cambió en la corrida actual").register(meterRegistry);
+    }
+
+    /**
+     * Recalcula todos los productos sin costo fijo de un proveedor con la cotización indicada.
+     *
+     * @return IDs de los productos actualizados
+     */
+    @Transactional
+    public List<Long> recalcularProveedor(Long proveedorId, BigDecimal valorDolar) {
+        return ejecutar(proveedorId, valorDolar, Map.of(), false, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    /**
+     * Recalcula el catálogo sin costo fijo. Los proveedores con cotización manual usan la suya;
+     * el resto, {@code valorDolarGeneral}.
+     *
+     * @return IDs de los productos actualizados
+     */
+    @Transactional
+    public List<Long> recalcularTodos(BigDecimal valorDolarGeneral, Map<Long, BigDecimal> cotizacionesManuales) {
+        return ejecutar(null, valorDolarGeneral, cotizacionesManuales, false, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    /**
+     * Recalcula el catálogo sin costo fijo en lotes de {@code app.pricing.lote} IDs consecutivos
+     * (keyset sobre id), cada uno en su propia transacción. La memoria no depende del tamaño del
+     * catálogo y un fallo sólo deshace el lote en curso.
+     *
+     * @param soloDolarOficial si es true se omiten los proveedores con cotización manual
+     * @param alConfirmarLote  recibe los IDs actualizados de cada lote ya commiteado
+     * @return cantidad de productos actualizados
+     */
+    public long recalcularPorLotes(BigDecimal valorDolarGeneral, Map<Long, BigDecimal> cotizacionesManuales,
+                                   boolean soloDolarOficial, Consumer<List<Long>> alConfirmarLote) {
+        Timer.Sample muestra = Timer.start(meterRegistry);
+        totalCorrida.set(loteTemplate.execute(status -> em.createQuery(
+                "SELECT COUNT(p) FROM Producto p WHERE p.costoFijo = false", Long.class).getSingleResult()));
+        examinadosCorrida.set(0);
+        actualizadosCorrida.set(0);
+
+        long ultimoId = Long.MIN_VALUE;
+        int lotes = 0;
+        while (true) {
+            final long desde = ultimoId;
+            Object[] lote = loteTemplate.execute(status -> (Object[]) em.createNativeQuery(SQL_SIGUIENTE_LOTE)
+                    .setParameter("ultimoId", desde)
+                    .setParameter("limite", tamanioLote)
+                    .getSingleResult());
+            long cantidad = ((Number) lote[0]).longValue();
+            if (cantidad == 0) {
+                break;
+            }
+            long hasta = ((Number) lote[1]).longValue();
+
+            List<Long> actualizados = loteTemplate.execute(status ->
+                    ejecutar(null, valorDolarGeneral, cotizacionesManuales, soloDolarOficial, desde + 1, hasta));
+            lotes++;
+            examinadosCorrida.addAndGet(cantidad);
+            actualizadosCorrida.addAndGet(actualizados.size());
+            meterRegistry.counter("productos.recalculo.examinados").increment(cantidad);
+            meterRegistry.counter("productos.recalculo.actualizados").increment(actualizados.size());
+            if (!actualizados.isEmpty()) {
+                alConfirmarLote.accept(actualizados);
+            }
+            log.debug("Lote {} de recálculo (IDs {}..{}): {} examinados, {} actualizados.",
+                    lotes, desde + 1, hasta, cantidad, actualizados.size());
+            ultimoId = hasta;
+        }
+
+        muestra.stop(meterRegistry.timer("productos.recalculo.duracion"));
+        log.info("Recálculo por lotes: {} lotes, {} examinados, {} actualizados.",
+                lotes, examinadosCorrida.get(), actualizadosCorrida.get());
+        return actualizadosCorrida.get();
+    }
+
+    /**
+     * Recalcula una partición por proveedor en paralelo sobre un {@link ForkJoinPool} de
+     * {@code app.pricing.paralelismo} hilos (0 = procesadores disponibles del contenedor). Cada
+     * partición es un UPDATE en su propia transacción con la cotización ya resuelta, así que las
+     * particiones no comparten filas ni se bloquean entre sí. El paralelismo efectivo también
+     * queda limitado por el pool de conexiones.
+     * <p>
+     * Un {@code null} en {@code proveedorIds} es la partición de los productos sin proveedor, que
+     * usan {@code valorDolarGeneral}.
+     *
+     * @param proveedorIds         particiones a recalcular
+     * @param cotizacionesManuales cotización de los proveedores que no usan {@code valorDolarGeneral}
+     * @param alConfirmarParticion recibe los IDs actualizados de cada partición ya commiteada
+     * @return tiempos por partición, de la más lenta a la más rápida
+     */
+    public List<TiempoParticion> recalcularEnParalelo(BigDecimal valorDolarGeneral, Map<Long, BigDecimal> cotizacionesManuales,
+                                                      Collection<Long> proveedorIds, Consumer<List<Long>> alConfirmarParticion) {
+        int hilos = paralelismo > 0 ? paralelismo : Runtime.getRuntime().availableProcessors();
+        Timer.Sample muestra = Timer.start(meterRegistry);
+        Timer timerParticion = meterRegistry.timer("productos.recalculo.particion");
+
+        Map<Long, Long> productosPorParticion = contarParticiones();
+        totalCorrida.set(proveedorIds.stream().mapToLong(id -> productosPorParticion.getOrDefault(id, 0L)).sum());
+        examinadosCorrida.set(0);
+        actualizadosCorrida.set(0);
+
+        List<Callable<TiempoParticion>> tareas = new ArrayList<>(proveedorIds.size());
+        for (Long proveedorId : proveedorIds) {
+            BigDecimal cotizacion = proveedorId != null
+                    ? cotizacionesManuales.getOrDefault(proveedorId, valorDolarGeneral) : valorDolarGeneral;
+            tareas.add(() -> {
+                long inicio = System.nanoTime();
+                List<Long> actualizados = loteTemplate.execute(status ->
+                        ejecutar(proveedorId, proveedorId == null, cotizacion, Map.of(), false, Long.MIN_VALUE, Long.MAX_VALUE));
+                long nanos = System.nanoTime() - inicio;
+                timerParticion.record(nanos, TimeUnit.NANOSECONDS);
+                long examinados = productosPorParticion.getOrDefault(proveedorId, 0L);
+                examinadosCorrida.addAndGet(examinados);
+                actualizadosCorrida.addAndGet(actualizados.size());
+                meterRegistry.counter("productos.recalculo.examinados").increment(examinados);
+                if (!actualizados.isEmpty()) {
+                    alConfirmarParticion.accept(actualizados);
+                }
+                return new TiempoParticion(proveedorId, actualizados.size(), TimeUnit.NANOSECONDS.toMillis(nanos));
+            });
+        }
+
+        List<TiempoParticion> tiempos = new ArrayList<>(tareas.size());
+        ForkJoinPool pool = new ForkJoinPool(hilos);
+        try {
+            for (Future<TiempoParticion> futuro : pool.invokeAll(tareas)) {
+                try {
+                    tiempos.add(futuro.get());
+                } catch (ExecutionException e) {
+                    // Las demás particiones ya commitearon; la fallida se corrige en la próxima corrida
+                    log.error("Falló una partición del recálculo en paralelo: {}", e.getCause().getMessage());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            pool.shutdown();
+        }
+
+        tiempos.sort(Comparator.comparingLong(TiempoParticion::millis).reversed());
+        muestra.stop(meterRegistry.timer("productos.recalculo.duracion"));
+        int actualizados = tiempos.stream().mapToInt(TiempoParticion::actualizados).sum();
+        meterRegistry.counter("productos.recalculo.actualizados").increment(actualizados);
+        log.info("Recálculo en paralelo: {} particiones en {} hilos, {} examinados, {} productos actualizados.",
+                tiempos.size(), hilos, examinadosCorrida.get(), actualizados);
+        tiempos.stream().limit(10).forEach(t -> log.info("  Proveedor {}: {} productos en {} ms.",
+                t.proveedorId(), t.actualizados(), t.millis()));
+        return tiempos;
+    }
+
+    /**
+     * Resultado de una partición del recálculo en paralelo; {@code proveedorId} es null en la de
+     * productos sin proveedor.
+     */
+    public record TiempoParticion(Long proveedorId, int actualizados, long millis) {
+    }
+
+    /** Productos sin costo fijo por proveedor; la clave {@code null} cuenta los que no tienen. */
+    private Map<Long, Long> contarParticiones() {
+        List<Object[]> filas = loteTemplate.execute(status -> {
+            @SuppressWarnings("unchecked")
+            List<Object[]> resultado = em.createNativeQuery(SQL_CONTEO_PARTICIONES).getResultList();
+            return resultado;
+        });
+        Map<Long, Long> conteos = new HashMap<>();
+        for (Object[] fila : filas) {
+            conteos.put(fila[0] != null ? ((Number) fila[0]).longValue() : null, ((Number) fila[1]).longValue());
+        }
+        return conteos;
+    }
+
+    List<Long> ejecutar(Long proveedorId, BigDecimal valorDolar, Map<Long, BigDecimal> cotizacionesManuales,
+                        boolean soloDolarOficial, long desdeId, long hastaId) {
+        return ejecutar(proveedorId, false, valorDolar, cotizacionesManuales, soloDolarOficial, desdeId, hastaId);
+    }
+
+    /**
+     * @param sinProveedor si es true sólo se recalculan los productos sin proveedor
+     */
+    @SuppressWarnings("unchecked")
+    List<Long> ejecutar(Long proveedorId, boolean sinProveedor, BigDecimal valorDolar, Map<Long, BigDecimal> cotizacionesManuales,
+                        boolean soloDolarOficial, long desdeId, long hastaId) {
+        long inicio = System.currentTimeMillis();
+        // Los cambios pendientes del contexto deben llegar a la base antes del UPDATE nativo
+        em.flush();
+
+        List<Number> ids = em.createNativeQuery(SQL_RECALCULO)
+                .setParameter("proveedorIds", cotizacionesManuales.keySet().stream()
+                        .map(String::valueOf).collect(Collectors.joining(",")))
+                .setParameter("cotizaciones", cotizacionesManuales.values().stream()
+                        .map(BigDecimal::toPlainString).collect(Collectors.joining(",")))
+                .setParameter("dolar", valorDolar)
+                .setParameter("proveedorId", new TypedParameterValue<>(StandardBasicTypes.LONG, proveedorId))
+                .setParameter("sinProveedor", sinProveedor)
+                .setParameter("soloDolarOficial", soloDolarOficial)
+                .setParameter("desdeId", desdeId)
+                .setParameter("hastaId", hastaId)
+                .setParameter("ahora", LocalDateTime.now())
+                .getResultList();
+
+        // Las entidades cargadas antes del UPDATE quedaron con precios viejos
+        em.clear();
+        log.debug("Recalculo SQL: {} productos en {} ms (proveedor={}, rango={}..{}).",
+                ids.size(), System.currentTimeMillis() - inicio, proveedorId, desdeId, hastaId);
+        return ids.stream().map(Number::longValue).toList();
+    }
+}
@@ -0,0 +1,205 @@
+package micro.microservicio_producto.services;
+
+import micro.microservicio_producto.entities.DTO.LastModifiedDTO;
+import micro.microservicio_producto.entities.DTO.ProveedorDTO;
+import micro.microservicio_producto.entities.DTO.TipoProductoDTO;
+import micro.microservicio_producto.feignClients.ProveedorClient;
+import micro.microservicio_producto.feignClients.TipoProductoClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Copia local de proveedores y tipos de producto para que el camino de escritura de productos no
+ * dependa de una llamada Feign síncrona. Se precarga al arrancar, se recarga cuando cambia el
+ * {@code /last-modified} del servicio dueño y se invalida por ID ante notificaciones de cambio.
+ * Ante un miss se consulta el servicio remoto y se guarda el resultado; con más de
+ * {@code max-entradas} registros se descarta el usado hace más tiempo (LRU).
+ */
+@Service
+public class ReferenciaCacheService {
+
+    private static final Logger log = LoggerFactory.getLogger(ReferenciaCacheService.class);
+
+    private final ProveedorClient proveedorClient;
+    private final TipoProductoClient tipoProductoClient;
+
+    private final Referencias<ProveedorDTO> proveedores = new Referencias<>("proveedores");
+    private final Referencias<TipoProductoDTO> tipos = new Referencias<>("tipos de producto");
+
+    @Value("${app.referencias.max-entradas:5000}")
+    private int maxEntradas;
+
+    @Value("${app.referencias.recarga-completa-ms:600000}")
+    private long recargaCompletaMs;
+
+    public ReferenciaCacheService(ProveedorClient proveedorClient, TipoProductoClient tipoProductoClient) {
+        this.proveedorClient = proveedorClient;
+        this.tipoProductoClient = tipoProductoClient;
+    }
+
+    /**
+     * Devuelve el proveedor desde la copia local o, si no está, desde el servicio de proveedores.
+     * Propaga la {@code FeignException} del servicio remoto (por ejemplo NotFound).
+     */
+    public ProveedorDTO obtenerProveedor(Long id) {
+        return proveedores.obtener(id, () -> proveedorClient.getProveedorById(id).getBody());
+    }
+
+    public TipoProductoDTO obtenerTipo(Long id) {
+        return tipos.obtener(id, () -> tipoProductoClient.getTipoProductoById(id).getBody());
+    }
+
+    /**
+     * Resuelve varios proveedores; los que faltan se piden en una única llamada por lote.
+     */
+    public Map<Long, ProveedorDTO> obtenerProveedores(Collection<Long> ids) {
+        return proveedores.obtenerVarios(ids, faltantes -> proveedorClient.getProveedoresByIds(faltantes), ProveedorDTO::getId);
+    }
+
+    public Map<Long, TipoProductoDTO> obtenerTipos(Collection<Long> ids) {
+        return tipos.obtenerVarios(ids, faltantes -> tipoProductoClient.getTiposProductoByIds(faltantes), TipoProductoDTO::getId);
+    }
+
+    public void invalidarProveedor(Long id) {
+        proveedores.invalidar(id);
+    }
+
+    public void invalidarTipo(Long id) {
+        tipos.invalidar(id);
+    }
+
+    public void invalidarTodo() {
+        proveedores.invalidarTodo();
+        tipos.invalidarTodo();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void precargar() {
+        refrescar();
+    }
+
+    /**
+     * Consulta los {@code /last-modified} y recarga sólo la colección que cambió. Cada
+     * {@code recarga-completa-ms} se recarga igual, porque la marca remota tiene resolución de segundos.
+     */
+    @Scheduled(initialDelayString = "${app.referencias.refresh-ms:30000}", fixedDelayString = "${app.referencias.refresh-ms:30000}")
+    public void refrescar() {
+        try {
+            LastModifiedDTO marca = proveedorClient.getLastModified();
+            if (proveedores.debeRecargar(marca.getLastModified(), recargaCompletaMs)) {
+                proveedores.recargar(proveedorClient::getAllProveedores, ProveedorDTO::getId, marca.getLastModified());
+            }
+        } catch (Exception e) {
+            log.warn("No se pudo consultar last-modified de proveedores: {}", e.getMessage());
+        }
+        try {
+            LastModifiedDTO marca = tipoProductoClient.getLastModified();
+            if (tipos.debeRecargar(marca.getLastModified(), recargaCompletaMs)) {
+                tipos.recargar(tipoProductoClient::getAllTiposProducto, TipoProductoDTO::getId, marca.getLastModified());
+            }
+        } catch (Exception e) {
+            log.warn("No se pudo consultar last-modified de tipos de producto: {}", e.getMessage());
+        }
+    }
+
+    private final class Referencias<V> {
+        private final String nombre;
+        private volatile Map<Long, V> datos = nuevoMapa();
+        private volatile long marcaRemota = -1;
+        private volatile long cargadoEn;
+
+        private Referencias(String nombre) {
+            this.nombre = nombre;
+        }
+
+        V obtener(Long id, Supplier<V> remoto) {
+            V valor = datos.get(id);
+            if (valor != null) {
+                return valor;
+            }
+            valor = remoto.get();
+            guardar(id, valor);
+            return valor;
+        }
+
+        Map<Long, V> obtenerVarios(Collection<Long> ids, Function<Collection<Long>, List<V>> remoto, Function<V, Long> idDe) {
+            Map<Long, V> resultado = new HashMap<>();
+            Set<Long> faltantes = new HashSet<>();
+            for (Long id : ids) {
+                V valor = datos.get(id);
+                if (valor != null) {
+                    resultado.put(id, valor);
+                } else {
+                    faltantes.add(id);
+                }
+            }
+            if (!faltantes.isEmpty()) {
+                for (V valor : remoto.apply(faltantes)) {
+                    resultado.put(idDe.apply(valor), valor);
+                    guardar(idDe.apply(valor), valor);
+                }
+            }
+            return resultado;
+        }
+
+        private void guardar(Long id, V valor) {
+            if (id != null && valor != null) {
+                datos.put(id, valor);
+            }
+        }
+
+        void invalidar(Long id) {
+            if (id != null) {
+                datos.remove(id);
+            }
+        }
+
+        void invalidarTodo() {
+            datos = nuevoMapa();
+            marcaRemota = -1;
+        }
+
+        boolean debeRecargar(long marca, long recargaCompletaMs) {
+            return marca != marcaRemota || System.currentTimeMillis() - cargadoEn > recargaCompletaMs;
+        }
+
+        void recargar(Supplier<List<V>> remoto, Function<V, Long> idDe, long marca) {
+            try {
+                Map<Long, V> nuevos = nuevoMapa();
+                for (V valor : remoto.get()) {
+                    Long id = idDe.apply(valor);
+                    if (id != null) {
+                        nuevos.put(id, valor);
+                    }
+                }
+                datos = nuevos;
+                marcaRemota = marca;
+                cargadoEn = System.currentTimeMillis();
+                log.info("Cache local de {} recargada: {} registros.", nombre, nuevos.size());
+            } catch (Exception e) {
+                log.warn("No se pudo recargar la cache local de {}: {}", nombre, e.getMessage());
+            }
+        }
+
+        /**
+         * LinkedHashMap en orden de acceso: un {@code get} también reordena, por eso se sincroniza entero.
+         */
+        private Map<Long, V> nuevoMapa() {
+            return Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Long, V> mayor) {
+                    return size() > maxEntradas;
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,481 @@
+package micro.microservicio_producto.services;
+
+import micro.microservicio_producto.entities.DTO.ResumenVentasGrupoDTO;
+import micro.microservicio_producto.entities.DTO.ResumenVentasPeriodoDTO;
+import micro.microservicio_producto.entities.Producto;
+import micro.microservicio_producto.entities.Venta;
+import micro.microservicio_producto.entities.VentaItem;
+import micro.microservicio_producto.exceptions.BusinessLogicException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Resúmenes diarios de ventas (V14): totales del día y unidades e importe por producto, tipo y
+ * proveedor. Los reportes leen sólo estas tablas; el mensual suma a lo sumo 31 filas por clave.
+ * <p>
+ * Cada venta deja sus deltas en {@code venta_resumen_delta} (V18) dentro de la transacción que la
+ * registra: sólo inserts, así que las ventas simultáneas del mismo día no se esperan entre sí.
+ * {@link #consolidar()} los suma a los resúmenes cada {@code app.ventas.resumen.consolidar-ms};
+ * los reportes pueden ir hasta ese intervalo atrasados, nunca adelantados. Tipo y proveedor son
+ * los del producto al momento de la venta; al recalcular un mes se usan los actuales.
+ */
+@Service
+public class ResumenVentasService {
+
+    private static final Logger log = LoggerFactory.getLogger(ResumenVentasService.class);
+
+    // Mismo orden de tablas (los deltas primero) y de claves en todas las escrituras: la
+    // consolidación y un recálculo se esperan en lugar de trabarse entre sí
+    private static final String TABLAS = "venta_resumen_delta, venta_resumen_dia, venta_resumen_producto, venta_resumen_tipo, venta_resumen_proveedor";
+
+    private static final int LOTE_CONSOLIDACION = 5000;
+
+    private static final String INSERT_DELTA = """
+            INSERT INTO venta_resumen_delta (dia, producto_id, descripcion, tipo_producto_id, proveedor_id, ventas, unidades, importe)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?)
+            """;
+    // SKIP LOCKED: con varias instancias cada una toma deltas distintos
+    private static final String TOMAR_DELTAS = """
+            DELETE FROM venta_resumen_delta
+            WHERE id IN (SELECT id FROM venta_resumen_delta ORDER BY id LIMIT ? FOR UPDATE SKIP LOCKED)
+            RETURNING dia, producto_id, descripcion, tipo_producto_id, proveedor_id, ventas, unidades, importe
+            """;
+
+    private static final String UPSERT_DIA = """
+            INSERT INTO venta_resumen_dia AS r (dia, ventas, unidades, total) VALUES (?, ?, ?, ?)
+            ON CONFLICT (dia) DO UPDATE SET ventas = r.ventas + EXCLUDED.ventas,
+                unidades = r.unidades + EXCLUDED.unidades, total = r.total + EXCLUDED.total
+            """;
+    private static final String UPSERT_PRODUCTO = """
+            INSERT INTO venta_resumen_producto AS r (dia, producto_id, descripcion, unidades, importe) VALUES (?, ?, ?, ?, ?)
+            ON CONFLICT (dia, producto_id) DO UPDATE SET descripcion = COALESCE(EXCLUDED.descripcion, r.descripcion),
+                unidades = r.unidades + EXCLUDED.unidades, importe = r.importe + EXCLUDED.importe
+            """;
+    private static final String UPSERT_GRUPO = """
+            INSERT INTO %1$s AS r (dia, %2$s, unidades, importe) VALUES (?, ?, ?, ?)
+            ON CONFLICT (dia, %2$s) DO UPDATE SET unidades = r.unidades + EXCLUDED.unidades,
+                importe = r.importe + EXCLUDED.importe
+            """;
+
+    // Recalcular desde la base: ventas vivas y archivadas, ya agrupadas por día (y producto)
+    private static final String VENTAS_DEL_RANGO = """
+            SELECT CAST(fecha_venta AS date) AS dia, count(*) AS ventas, sum(total_venta) AS total
+            FROM (SELECT fecha_venta, total_venta FROM venta WHERE fecha_venta >= ? AND fecha_venta < ?
+                  UNION ALL
+                  SELECT fecha_venta, total_venta FROM venta_archivada WHERE fecha_venta >= ? AND fecha_venta < ?) v
+            GROUP BY 1""";
+    private static final String ITEMS_DEL_RANGO = """
+            SELECT CAST(fecha_venta AS date) AS dia, COALESCE(producto_id, 0) AS producto_id,
+                   (array_agg(producto_descripcion ORDER BY fecha_venta DESC))[1] AS descripcion,
+                   sum(cantidad) AS unidades, sum(cantidad * precio_unitario) AS importe
+            FROM (SELECT fecha_venta, producto_id, producto_descripcion, cantidad, precio_unitario
+                  FROM venta_item WHERE fecha_venta >= ? AND fecha_venta < ?
+                  UNION ALL
+                  SELECT fecha_venta, producto_id, producto_descripcion, cantidad, precio_unitario
+                  FROM venta_item_archivado WHERE fecha_venta >= ? AND fecha_venta < ?) i
+            GROUP BY 1, 2""";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final AlmacenFrioVentas almacenFrio;
+    private final TransactionTemplate transactionTemplate;
+    private final TaskExecutor resumenesExecutor;
+
+    @Value("${app.ventas.resumen.max-dias:400}")
+    private int maxDias;
+
+    public ResumenVentasService(JdbcTemplate jdbcTemplate, AlmacenFrioVentas almacenFrio,
+                                PlatformTransactionManager transactionManager,
+                                @Qualifier("resumenesExecutor") TaskExecutor resumenesExecutor) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.almacenFrio = almacenFrio;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.resumenesExecutor = resumenesExecutor;
+    }
+
+    /**
+     * Anota los deltas de las ventas. Tiene que llamarse dentro de la transacción que las
+     * registra; {@code productos} son los productos vendidos, para el tipo y el proveedor.
+     */
+    public void acumular(Collection<Venta> ventas, Map<Long, Producto> productos) {
+        Acumulador acumulador = new Acumulador();
+        for (Venta venta : ventas) {
+            LocalDate dia = venta.getFechaVenta().toLocalDate();
+            acumulador.ventas(dia, 1, venta.getTotalVenta());
+            for (VentaItem item : venta.getItems()) {
+                acumulador.producto(dia, item.getProductoId(), item.getProductoDescripcion(),
+                        item.getCantidad(), importe(item.getCantidad(), item.getPrecioUnitario()));
+            }
+        }
+        List<Object[]> filas = new ArrayList<>(acumulador.dias.size() + acumulador.productos.size());
+        acumulador.dias.forEach((dia, totales) -> filas.add(new Object[]{
+                Date.valueOf(dia), null, null, null, null, totales.ventas, 0L, totales.importe}));
+        acumulador.productos.forEach((clave, totales) -> {
+            Producto producto = productos.get(clave.id());
+            filas.add(new Object[]{Date.valueOf(clave.dia()), clave.id(), totales.descripcion,
+                    producto != null ? producto.getTipoProductoId() : null,
+                    producto != null ? producto.getProveedorId() : null,
+                    0L, totales.unidades, totales.importe});
+        });
+        jdbcTemplate.batchUpdate(INSERT_DELTA, filas);
+    }
+
+    /**
+     * Pasa los deltas pendientes a los resúmenes, de a {@code LOTE_CONSOLIDACION} por
+     * transacción. Las únicas escrituras sobre las filas de los resúmenes son ésta y los
+     * recálculos, fuera de las transacciones de las ventas.
+     */
+    @Scheduled(fixedDelayString = "${app.ventas.resumen.consolidar-ms:5000}")
+    public void consolidar() {
+        try {
+            Integer tomados;
+            do {
+                tomados = transactionTemplate.execute(status -> consolidarLote());
+            } while (tomados != null && tomados == LOTE_CONSOLIDACION);
+        } catch (Exception e) {
+            log.error("No se pudieron consolidar los resúmenes de ventas: {}", e.getMessage());
+        }
+    }
+
+    private int consolidarLote() {
+        Acumulador acumulador = new Acumulador();
+        Map<Long, Clasificacion> clasificacion = new HashMap<>();
+        int[] tomados = {0};
+        jdbcTemplate.query(TOMAR_DELTAS, rs -> {
+            LocalDate dia = rs.getDate("dia").toLocalDate();
+            Long productoId = rs.getObject("producto_id", Long.class);
+            if (productoId == null) {
+                acumulador.ventas(dia, rs.getLong("ventas"), rs.getBigDecimal("importe"));
+            } else {
+                acumulador.producto(dia, productoId, rs.getString("descripcion"), rs.getLong("unidades"), rs.getBigDecimal("importe"));
+                clasificacion.put(productoId, new Clasificacion(
+                        rs.getObject("tipo_producto_id", Long.class), rs.getObject("proveedor_id", Long.class)));
+            }
+            tomados[0]++;
+        }, LOTE_CONSOLIDACION);
+        guardar(acumulador, clasificacion);
+        return tomados[0];
+    }
+
+    /**
+     * Arma los resúmenes de los meses que falten según {@code venta_resumen_carga} (V17). La
+     * primera vez planea desde la primera venta hasta el mes en curso; si una carga anterior se
+     * cortó, sigue desde el mes donde quedó. Corre en {@code resumenesExecutor} para no demorar
+     * el arranque; las ventas que entran mientras tanto se suman igual.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void inicializar() {
+        resumenesExecutor.execute(() -> {
+            try {
+                completarCarga();
+            } catch (Exception e) {
+                log.error("No se pudieron inicializar los resúmenes de ventas: {}", e.getMessage());
+            }
+        });
+    }
+
+    private void completarCarga() {
+        List<Map<String, Object>> carga = jdbcTemplate.queryForList("SELECT siguiente, hasta FROM venta_resumen_carga WHERE id = 1");
+        if (carga.isEmpty()) {
+            planearCarga();
+            carga = jdbcTemplate.queryForList("SELECT siguiente, hasta FROM venta_resumen_carga WHERE id = 1");
+        }
+        YearMonth siguiente = YearMonth.from(((Date) carga.get(0).get("siguiente")).toLocalDate());
+        YearMonth hasta = YearMonth.from(((Date) carga.get(0).get("hasta")).toLocalDate());
+        if (!siguiente.isAfter(hasta)) {
+            recalcular(siguiente, hasta);
+        }
+    }
+
+    /** Desde el mes de la primera venta (base o segmentos) hasta el mes en curso. */
+    private void planearCarga() {
+        LocalDate primera = jdbcTemplate.queryForObject("""
+                SELECT CAST(min(f) AS date) FROM (
+                    SELECT min(fecha_venta) AS f FROM venta
+                    UNION ALL
+                    SELECT min(fecha_venta) FROM venta_archivada) t
+                """, LocalDate.class);
+        YearMonth hasta = YearMonth.now();
+        // Sin ventas no hay nada que cargar: siguiente queda pasado hasta
+        YearMonth desde = almacenFrio.primerMes()
+                .filter(mes -> primera == null || mes.isBefore(YearMonth.from(primera)))
+                .orElse(primera != null ? YearMonth.from(primera) : hasta.plusMonths(1));
+        jdbcTemplate.update("INSERT INTO venta_resumen_carga (id, siguiente, hasta) VALUES (1, ?, ?) ON CONFLICT (id) DO NOTHING",
+                Date.valueOf(desde.atDay(1)), Date.valueOf(hasta.atDay(1)));
+    }
+
+    /**
+     * Rehace los resúmenes de los meses indicados (inclusive) a partir de las ventas de la base y
+     * de los segmentos. Un mes por transacción; las ventas que se registren mientras tanto esperan
+     * a que termine su mes y se suman después.
+     */
+    public void recalcular(YearMonth desde, YearMonth hasta) {
+        if (desde.isAfter(hasta)) {
+            throw new BusinessLogicException("El mes 'desde' no puede ser posterior a 'hasta'.");
+        }
+        log.info("--- Recalculando resúmenes de ventas de {} a {} ---", desde, hasta);
+        for (YearMonth mes = desde; !mes.isAfter(hasta); mes = mes.plusMonths(1)) {
+            YearMonth actual = mes;
+            Long ventas = transactionTemplate.execute(status -> recalcularMes(actual));
+            log.info("Resúmenes de {} recalculados ({} ventas).", actual, ventas);
+        }
+    }
+
+    private long recalcularMes(YearMonth mes) {
+        Date inicio = Date.valueOf(mes.atDay(1));
+        Date fin = Date.valueOf(mes.plusMonths(1).atDay(1));
+        Timestamp desde = Timestamp.valueOf(mes.atDay(1).atStartOfDay());
+        Timestamp hasta = Timestamp.valueOf(mes.plusMonths(1).atDay(1).atStartOfDay());
+
+        // SHARE ROW EXCLUSIVE frena los deltas de ventas nuevas y la consolidación hasta el commit
+        // sin frenar lecturas; los deltas ya confirmados del mes se descartan, el recálculo los incluye
+        jdbcTemplate.execute("LOCK TABLE " + TABLAS + " IN SHARE ROW EXCLUSIVE MODE");
+        for (String tabla : TABLAS.split(", ")) {
+            jdbcTemplate.update("DELETE FROM " + tabla + " WHERE dia >= ? AND dia < ?", inicio, fin);
+        }
+        // Si era el próximo mes de la carga inicial, queda hecho junto con el recálculo
+        jdbcTemplate.update("UPDATE venta_resumen_carga SET siguiente = ? WHERE id = 1 AND siguiente = ?", fin, inicio);
+
+        Acumulador acumulador = new Acumulador();
+        long[] ventas = {0};
+        jdbcTemplate.query(VENTAS_DEL_RANGO, rs -> {
+            acumulador.ventas(rs.getDate("dia").toLocalDate(), rs.getLong("ventas"), rs.getBigDecimal("total"));
+            ventas[0] += rs.getLong("ventas");
+        }, desde, hasta, desde, hasta);
+        jdbcTemplate.query(ITEMS_DEL_RANGO, rs -> {
+            acumulador.producto(rs.getDate("dia").toLocalDate(), rs.getLong("producto_id"), rs.getString("descripcion"),
+                    rs.getLong("unidades"), rs.getBigDecimal("importe"));
+        }, desde, hasta, desde, hasta);
+
+        // Los segmentos se recorren de a un bloque; en memoria quedan sólo los totales del mes
+        Iterator<SegmentoVentas.VentaFria> frias = almacenFrio.recorrer(mes.atDay(1), mes.atEndOfMonth(), null);
+        while (frias.hasNext()) {
+            SegmentoVentas.VentaFria venta = frias.next();
+            LocalDate dia = venta.fechaVenta().toLocalDate();
+            acumulador.ventas(dia, 1, venta.totalVenta());
+            for (SegmentoVentas.ItemFrio item : venta.items()) {
+                acumulador.producto(dia, item.productoId(), item.productoDescripcion(),
+                        item.cantidad(), importe(item.cantidad(), item.precioUnitario()));
+            }
+            ventas[0]++;
+        }
+
+        guardar(acumulador, clasificacion(acumulador.productos.keySet()));
+        return ventas[0];
+    }
+
+    /** Tipo y proveedor actuales de los productos. */
+    private Map<Long, Clasificacion> clasificacion(Set<Clave> claves) {
+        Object[] ids = claves.stream().map(Clave::id).filter(id -> id != 0).distinct().toArray();
+        Map<Long, Clasificacion> clasificacion = new HashMap<>();
+        if (ids.length == 0) {
+            return clasificacion;
+        }
+        jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement("SELECT id, tipo_producto_id, proveedor_id FROM producto WHERE id = ANY (?)");
+            ps.setArray(1, con.createArrayOf("bigint", ids));
+            return ps;
+        }, rs -> {
+            clasificacion.put(rs.getLong("id"), new Clasificacion(
+                    rs.getObject("tipo_producto_id", Long.class), rs.getObject("proveedor_id", Long.class)));
+        });
+        return clasificacion;
+    }
+
+    /** Escribe los deltas; los de tipo y proveedor salen de los de producto con {@code clasificacion}. */
+    private void guardar(Acumulador acumulador, Map<Long, Clasificacion> clasificacion) {
+        if (acumulador.dias.isEmpty()) {
+            return;
+        }
+        Map<Clave, Totales> tipos = new TreeMap<>();
+        Map<Clave, Totales> proveedores = new TreeMap<>();
+        acumulador.productos.forEach((clave, totales) -> {
+            Clasificacion c = clasificacion.getOrDefault(clave.id(), Clasificacion.NINGUNA);
+            Acumulador.sumar(tipos, new Clave(clave.dia(), c.tipo()), totales.unidades, totales.importe);
+            Acumulador.sumar(proveedores, new Clave(clave.dia(), c.proveedor()), totales.unidades, totales.importe);
+        });
+
+        jdbcTemplate.batchUpdate(UPSERT_DIA, new ArrayList<>(acumulador.dias.entrySet()), acumulador.dias.size(), (ps, e) -> {
+            ps.setDate(1, Date.valueOf(e.getKey()));
+            ps.setLong(2, e.getValue().ventas);
+            ps.setLong(3, e.getValue().unidades);
+            ps.setBigDecimal(4, e.getValue().importe);
+        });
+        jdbcTemplate.batchUpdate(UPSERT_PRODUCTO, new ArrayList<>(acumulador.productos.entrySet()), acumulador.productos.size(), (ps, e) -> {
+            ps.setDate(1, Date.valueOf(e.getKey().dia()));
+            ps.setLong(2, e.getKey().id());
+            ps.setString(3, e.getValue().descripcion);
+            ps.setLong(4, e.getValue().unidades);
+            ps.setBigDecimal(5, e.getValue().importe);
+        });
+        guardarGrupo("venta_resumen_tipo", "tipo_producto_id", tipos);
+        guardarGrupo("venta_resumen_proveedor", "proveedor_id", proveedores);
+    }
+
+    private void guardarGrupo(String tabla, String columna, Map<Clave, Totales> grupos) {
+        jdbcTemplate.batchUpdate(UPSERT_GRUPO.formatted(tabla, columna), new ArrayList<>(grupos.entrySet()), grupos.size(), (ps, e) -> {
+            ps.setDate(1, Date.valueOf(e.getKey().dia()));
+            ps.setLong(2, e.getKey().id());
+            ps.setLong(3, e.getValue().unidades);
+            ps.setBigDecimal(4, e.getValue().importe);
+        });
+    }
+
+    // --- Reportes ---
+
+    public List<ResumenVentasPeriodoDTO> diario(LocalDate desde, LocalDate hasta) {
+        validarRango(desde, hasta);
+        return jdbcTemplate.query("""
+                SELECT dia AS periodo, ventas, unidades, total FROM venta_resumen_dia
+                WHERE dia BETWEEN ? AND ? ORDER BY dia
+                """, PERIODO, Date.valueOf(desde), Date.valueOf(hasta));
+    }
+
+    public List<ResumenVentasPeriodoDTO> mensual(YearMonth desde, YearMonth hasta) {
+        if (desde.isAfter(hasta)) {
+            throw new BusinessLogicException("El mes 'desde' no puede ser posterior a 'hasta'.");
+        }
+        return jdbcTemplate.query("""
+                SELECT CAST(date_trunc('month', dia) AS date) AS periodo,
+                       sum(ventas) AS ventas, sum(unidades) AS unidades, sum(total) AS total
+                FROM venta_resumen_dia
+                WHERE dia >= ? AND dia < ?
+                GROUP BY 1 ORDER BY 1
+                """, PERIODO, Date.valueOf(desde.atDay(1)), Date.valueOf(hasta.plusMonths(1).atDay(1)));
+    }
+
+    /** Los {@code limite} productos de mayor importe en el rango, con la última descripción vendida. */
+    public List<ResumenVentasGrupoDTO> porProducto(LocalDate desde, LocalDate hasta, int limite) {
+        validarRango(desde, hasta);
+        return jdbcTemplate.query("""
+                SELECT producto_id AS id, (array_agg(descripcion ORDER BY dia DESC))[1] AS descripcion,
+                       sum(unidades) AS unidades, sum(importe) AS importe
+                FROM venta_resumen_producto
+                WHERE dia BETWEEN ? AND ?
+                GROUP BY producto_id
+                ORDER BY importe DESC, producto_id
+                LIMIT ?
+                """, GRUPO, Date.valueOf(desde), Date.valueOf(hasta), Math.max(1, Math.min(limite, 1000)));
+    }
+
+    public List<ResumenVentasGrupoDTO> porTipo(LocalDate desde, LocalDate hasta) {
+        return porGrupo("venta_resumen_tipo", "tipo_producto_id", desde, hasta);
+    }
+
+    public List<ResumenVentasGrupoDTO> porProveedor(LocalDate desde, LocalDate hasta) {
+        return porGrupo("venta_resumen_proveedor", "proveedor_id", desde, hasta);
+    }
+
+    private List<ResumenVentasGrupoDTO> porGrupo(String tabla, String columna, LocalDate desde, LocalDate hasta) {
+        validarRango(desde, hasta);
+        return jdbcTemplate.query("""
+                SELECT %2$s AS id, CAST(NULL AS varchar) AS descripcion, sum(unidades) AS unidades, sum(importe) AS importe
+                FROM %1$s
+                WHERE dia BETWEEN ? AND ?
+                GROUP BY %2$s
+                ORDER BY importe DESC, %2$s
+                """.formatted(tabla, columna), GRUPO, Date.valueOf(desde), Date.valueOf(hasta));
+    }
+
+    private void validarRango(LocalDate desde, LocalDate hasta) {
+        if (desde.isAfter(hasta)) {
+            throw new BusinessLogicException("La fecha 'desde' no puede ser posterior a 'hasta'.");
+        }
+        if (desde.plusDays(maxDias).isBefore(hasta)) {
+            throw new BusinessLogicException("El rango no puede superar los " + maxDias + " días; use el resumen mensual.");
+        }
+    }
+
+    private static final RowMapper<ResumenVentasPeriodoDTO> PERIODO = (rs, n) -> new ResumenVentasPeriodoDTO(
+            rs.getDate("periodo").toLocalDate(), rs.getLong("ventas"), rs.getLong("unidades"), rs.getBigDecimal("total"));
+
+    private static final RowMapper<ResumenVentasGrupoDTO> GRUPO = (rs, n) -> {
+        long id = rs.getLong("id");
+        return new ResumenVentasGrupoDTO(id != 0 ? id : null, rs.getString("descripcion"),
+                rs.getLong("unidades"), rs.getBigDecimal("importe"));
+    };
+
+    private static BigDecimal importe(int cantidad, BigDecimal precioUnitario) {
+        return precioUnitario != null ? precioUnitario.multiply(BigDecimal.valueOf(cantidad)) : BigDecimal.ZERO;
+    }
+
+    // --- Acumulación en memoria antes de escribir ---
+
+    private record Clave(LocalDate dia, long id) implements Comparable<Clave> {
+        @Override
+        public int compareTo(Clave otra) {
+            int porDia = dia.compareTo(otra.dia);
+            return porDia != 0 ? porDia : Long.compare(id, otra.id);
+        }
+    }
+
+    private static final class Totales {
+        long ventas;
+        long unidades;
+        BigDecimal importe = BigDecimal.ZERO;
+        String descripcion;
+    }
+
+    /** Tipo y proveedor de un producto; 0 si no tiene. */
+    private record Clasificacion(long tipo, long proveedor) {
+        static final Clasificacion NINGUNA = new Clasificacion(0, 0);
+
+        Clasificacion(Long tipo, Long proveedor) {
+            this(tipo != null ? tipo : 0, proveedor != null ? proveedor : 0);
+        }
+    }
+
+    /** Deltas por clave, ordenados (TreeMap) para que los upserts tomen los locks siempre en el mismo orden. */
+    private static final class Acumulador {
+        final Map<LocalDate, Totales> dias = new TreeMap<>();
+        final Map<Clave, Totales> productos = new TreeMap<>();
+
+        void ventas(LocalDate dia, long cantidad, BigDecimal total) {
+            Totales totales = dias.computeIfAbsent(dia, d -> new Totales());
+            totales.ventas += cantidad;
+            if (total != null) {
+                totales.importe = totales.importe.add(total);
+            }
+        }
+
+        void producto(LocalDate dia, Long productoId, String descripcion, long unidades, BigDecimal importe) {
+            dias.computeIfAbsent(dia, d -> new Totales()).unidades += unidades;
+            Totales producto = sumar(productos, new Clave(dia, productoId != null ? productoId : 0), unidades, importe);
+            if (descripcion != null) {
+                producto.descripcion = descripcion;
+            }
+        }
+
+        static Totales sumar(Map<Clave, Totales> grupos, Clave clave, long unidades, BigDecimal importe) {
+            Totales totales = grupos.computeIfAbsent(clave, c -> new Totales());
+            totales.unidades += unidades;
+            totales.importe = totales.importe.add(importe != null ? importe : BigDecimal.ZERO);
+            return totales;
+        }
+    }
+}
@@ -0,0 +1,425 @@
+package micro.microservicio_producto.services;
+
+import micro.microservicio_producto.entities.DTO.VentaItemResponseDTO;
+import micro.microservicio_producto.entities.DTO.VentaResponseDTO;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+
+/**
+ * Archivo inmutable con las ventas de un mes que salieron de la base. Se lee mapeado en memoria.
+ * <p>
+ * Formato: cabecera ({@code VSEG} y versión), bloques de hasta {@value #VENTAS_POR_BLOQUE} ventas
+ * comprimidos con Deflater, en orden {@code (fecha_venta, id)} descendente como el historial, y al
+ * final un índice disperso con una entrada por bloque: posición, tamaños, rango de fechas y rango
+ * de números de comprobante. Los números crecen con la fecha, así que los rangos de bloques
+ * vecinos casi no se superponen y una búsqueda descomprime uno o dos bloques.
+ */
+final class SegmentoVentas {
+
+    static final int VENTAS_POR_BLOQUE = 256;
+
+    private static final int MAGIA = 0x56534547; // "VSEG"
+    private static final int VERSION = 1;
+    // Cabecera: magia + versión. Pie: posición del índice + magia.
+    private static final int TAMANIO_CABECERA = 8;
+    private static final int TAMANIO_PIE = 12;
+
+    /** Venta completa tal como quedó al salir de la base. */
+    record VentaFria(long id, String numeroComprobante, LocalDateTime fechaVenta, BigDecimal totalVenta,
+                     List<ItemFrio> items) {
+
+        VentaResponseDTO aResponseDTO() {
+            VentaResponseDTO dto = new VentaResponseDTO();
+            dto.setId(id);
+            dto.setNumeroComprobante(numeroComprobante);
+            dto.setFechaVenta(fechaVenta);
+            dto.setTotalVenta(totalVenta);
+            dto.setItems(items.stream().map(ItemFrio::aResponseDTO).toList());
+            return dto;
+        }
+    }
+
+    record ItemFrio(long id, Long productoId, String productoDescripcion, int cantidad, BigDecimal precioUnitario) {
+
+        VentaItemResponseDTO aResponseDTO() {
+            VentaItemResponseDTO dto = new VentaItemResponseDTO();
+            dto.setId(id);
+            dto.setProductoDescripcion(productoDescripcion);
+            dto.setCantidad(cantidad);
+            dto.setPrecioUnitario(precioUnitario);
+            return dto;
+        }
+    }
+
+    /** Entrada del índice disperso. Los números vacíos indican que el bloque no tiene ninguno. */
+    private record Bloque(long posicion, int comprimido, int original, int ventas,
+                          LocalDateTime fechaMin, LocalDateTime fechaMax, String numeroMin, String numeroMax) {
+
+        boolean puedeTenerNumero(String numero) {
+            return !numeroMin.isEmpty() && numeroMin.compareTo(numero) <= 0 && numero.compareTo(numeroMax) <= 0;
+        }
+    }
+
+    private final Path archivo;
+    private final MappedByteBuffer contenido;
+    private final List<Bloque> bloques;
+
+    private SegmentoVentas(Path archivo, MappedByteBuffer contenido, List<Bloque> bloques) {
+        this.archivo = archivo;
+        this.contenido = contenido;
+        this.bloques = bloques;
+    }
+
+    static SegmentoVentas abrir(Path archivo) throws IOException {
+        MappedByteBuffer contenido;
+        try (FileChannel canal = FileChannel.open(archivo, StandardOpenOption.READ)) {
+            // El mapeo sigue siendo válido después de cerrar el canal
+            contenido = canal.map(FileChannel.MapMode.READ_ONLY, 0, canal.size());
+        }
+        if (contenido.limit() < TAMANIO_CABECERA + TAMANIO_PIE
+                || contenido.getInt(0) != MAGIA || contenido.getInt(contenido.limit() - 4) != MAGIA) {
+            throw new IOException("No es un segmento de ventas: " + archivo);
+        }
+        if (contenido.getInt(4) != VERSION) {
+            throw new IOException("Versión de segmento no soportada en " + archivo + ": " + contenido.getInt(4));
+        }
+        int posicionIndice = Math.toIntExact(contenido.getLong(contenido.limit() - TAMANIO_PIE));
+        ByteBuffer indice = contenido.slice(posicionIndice, contenido.limit() - TAMANIO_PIE - posicionIndice);
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(aBytes(indice)));
+        int cantidad = in.readInt();
+        List<Bloque> bloques = new ArrayList<>(cantidad);
+        for (int i = 0; i < cantidad; i++) {
+            bloques.add(new Bloque(in.readLong(), in.readInt(), in.readInt(), in.readInt(),
+                    leerFecha(in), leerFecha(in), in.readUTF(), in.readUTF()));
+        }
+        return new SegmentoVentas(archivo, contenido, bloques);
+    }
+
+    Path archivo() {
+        return archivo;
+    }
+
+    int cantidadVentas() {
+        return bloques.stream().mapToInt(Bloque::ventas).sum();
+    }
+
+    Optional<VentaFria> buscarPorNumero(String numero) {
+        for (Bloque bloque : bloques) {
+            if (bloque.puedeTenerNumero(numero)) {
+                for (VentaFria venta : leer(bloque)) {
+                    if (numero.equals(venta.numeroComprobante())) {
+                        return Optional.of(venta);
+                    }
+                }
+            }
+        }
+        return Optional.empty();
+    }
+
+    /** La venta más reciente cuyo número termina en {@code sufijo}, probando cada prefijo posible del bloque. */
+    Optional<VentaFria> buscarPorSufijo(String sufijo) {
+        for (Bloque bloque : bloques) {
+            if (bloque.numeroMin().length() < 2 || bloque.numeroMax().length() < 2 || !prefijoPosible(bloque, sufijo)) {
+                continue;
+            }
+            for (VentaFria venta : leer(bloque)) {
+                if (venta.numeroComprobante() != null && venta.numeroComprobante().endsWith(sufijo)) {
+                    return Optional.of(venta);
+                }
+            }
+        }
+        return Optional.empty();
+    }
+
+    private static boolean prefijoPosible(Bloque bloque, String sufijo) {
+        String desde = bloque.numeroMin().substring(0, 2);
+        String hasta = bloque.numeroMax().substring(0, 2);
+        for (char a = desde.charAt(0); a <= hasta.charAt(0); a++) {
+            for (char b = 'A'; b <= 'Z'; b++) {
+                String candidato = "" + a + b + sufijo;
+                if (bloque.puedeTenerNumero(candidato)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Ventas con fecha en {@code [desde, hasta)} (extremos opcionales) y anteriores al cursor, en el
+     * orden del archivo. Descomprime un bloque por vez y saltea los que el índice deja afuera.
+     */
+    Iterator<VentaFria> recorrer(LocalDateTime desde, LocalDateTime hasta, VentaCursor cursor) {
+        return new Iterator<>() {
+            private int siguienteBloque = 0;
+            private Iterator<VentaFria> actual = java.util.Collections.emptyIterator();
+            private VentaFria pendiente;
+
+            @Override
+            public boolean hasNext() {
+                while (pendiente == null) {
+                    if (actual.hasNext()) {
+                        VentaFria venta = actual.next();
+                        if (incluida(venta)) {
+                            pendiente = venta;
+                        }
+                        continue;
+                    }
+                    if (siguienteBloque >= bloques.size()) {
+                        return false;
+                    }
+                    Bloque bloque = bloques.get(siguienteBloque++);
+                    if (desde != null && bloque.fechaMax().isBefore(desde)) {
+                        siguienteBloque = bloques.size(); // los siguientes son más viejos todavía
+                        return false;
+                    }
+                    boolean posterior = (hasta != null && !bloque.fechaMin().isBefore(hasta))
+                            || (cursor != null && bloque.fechaMin().isAfter(cursor.fechaVenta()));
+                    if (!posterior) {
+                        actual = leer(bloque).iterator();
+                    }
+                }
+                return true;
+            }
+
+            @Override
+            public VentaFria next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                VentaFria venta = pendiente;
+                pendiente = null;
+                return venta;
+            }
+
+            private boolean incluida(VentaFria venta) {
+                LocalDateTime fecha = venta.fechaVenta();
+                if ((desde != null && fecha.isBefore(desde)) || (hasta != null && !fecha.isBefore(hasta))) {
+                    return false;
+                }
+                if (cursor == null) {
+                    return true;
+                }
+                int comparacion = fecha.compareTo(cursor.fechaVenta());
+                return comparacion < 0 || (comparacion == 0 && venta.id() < cursor.ultimoId());
+            }
+        };
+    }
+
+    private List<VentaFria> leer(Bloque bloque) {
+        byte[] original = new byte[bloque.original()];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(contenido.slice(Math.toIntExact(bloque.posicion()), bloque.comprimido()));
+            int leidos = 0;
+            while (leidos < original.length) {
+                int n = inflater.inflate(original, leidos, original.length - leidos);
+                // Sin avance y sin entrada: el bloque está cortado o no es lo que dice el índice
+                if (n == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IOException("Bloque dañado: " + leidos + " de " + original.length + " bytes");
+                }
+                leidos += n;
+            }
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(original));
+            List<VentaFria> ventas = new ArrayList<>(bloque.ventas());
+            for (int i = 0; i < bloque.ventas(); i++) {
+                ventas.add(leerVenta(in));
+            }
+            return ventas;
+        } catch (DataFormatException | IOException e) {
+            throw new UncheckedIOException(new IOException("Bloque dañado en " + archivo + " (posición " + bloque.posicion() + ")", e));
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * Escribe un segmento nuevo en un archivo temporal y lo pone en su lugar recién al terminar,
+     * ya sincronizado a disco: nunca queda a la vista un segmento a medio escribir.
+     */
+    static final class Escritor implements Closeable {
+        private final Path destino;
+        private final Path temporal;
+        private final FileChannel canal;
+        private final List<Bloque> bloques = new ArrayList<>();
+        private final List<VentaFria> pendientes = new ArrayList<>(VENTAS_POR_BLOQUE);
+        private boolean terminado;
+
+        Escritor(Path destino) throws IOException {
+            this.destino = destino;
+            this.temporal = destino.resolveSibling(destino.getFileName() + ".tmp");
+            this.canal = FileChannel.open(temporal, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            ByteBuffer cabecera = ByteBuffer.allocate(TAMANIO_CABECERA).putInt(MAGIA).putInt(VERSION).flip();
+            escribir(cabecera);
+        }
+
+        /** Las ventas tienen que llegar en orden {@code (fecha_venta, id)} descendente. */
+        void agregar(VentaFria venta) throws IOException {
+            pendientes.add(venta);
+            if (pendientes.size() == VENTAS_POR_BLOQUE) {
+                volcarBloque();
+            }
+        }
+
+        void terminar() throws IOException {
+            volcarBloque();
+            long posicionIndice = canal.position();
+            ByteArrayOutputStream indice = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(indice);
+            out.writeInt(bloques.size());
+            for (Bloque bloque : bloques) {
+                out.writeLong(bloque.posicion());
+                out.writeInt(bloque.comprimido());
+                out.writeInt(bloque.original());
+                out.writeInt(bloque.ventas());
+                escribirFecha(out, bloque.fechaMin());
+                escribirFecha(out, bloque.fechaMax());
+                out.writeUTF(bloque.numeroMin());
+                out.writeUTF(bloque.numeroMax());
+            }
+            escribir(ByteBuffer.wrap(indice.toByteArray()));
+            escribir(ByteBuffer.allocate(TAMANIO_PIE).putLong(posicionIndice).putInt(MAGIA).flip());
+            canal.force(true);
+            canal.close();
+            Files.move(temporal, destino, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            terminado = true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!terminado) {
+                canal.close();
+                Files.deleteIfExists(temporal);
+            }
+        }
+
+        private void volcarBloque() throws IOException {
+            if (pendientes.isEmpty()) {
+                return;
+            }
+            ByteArrayOutputStream datos = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(datos);
+            String numeroMin = null;
+            String numeroMax = null;
+            for (VentaFria venta : pendientes) {
+                escribirVenta(out, venta);
+                String numero = venta.numeroComprobante();
+                if (numero != null) {
+                    numeroMin = numeroMin == null || numero.compareTo(numeroMin) < 0 ? numero : numeroMin;
+                    numeroMax = numeroMax == null || numero.compareTo(numeroMax) > 0 ? numero : numeroMax;
+                }
+            }
+            out.flush();
+            byte[] original = datos.toByteArray();
+
+            ByteArrayOutputStream comprimido = new ByteArrayOutputStream(original.length / 4);
+            Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+            try (DeflaterOutputStream z = new DeflaterOutputStream(comprimido, deflater)) {
+                z.write(original);
+            } finally {
+                deflater.end();
+            }
+
+            long posicion = canal.position();
+            escribir(ByteBuffer.wrap(comprimido.toByteArray()));
+            bloques.add(new Bloque(posicion, comprimido.size(), original.length, pendientes.size(),
+                    pendientes.get(pendientes.size() - 1).fechaVenta(), pendientes.get(0).fechaVenta(),
+                    numeroMin != null ? numeroMin : "", numeroMax != null ? numeroMax : ""));
+            pendientes.clear();
+        }
+
+        private void escribir(ByteBuffer buffer) throws IOException {
+            while (buffer.hasRemaining()) {
+                canal.write(buffer);
+            }
+        }
+    }
+
+    private static void escribirVenta(DataOutputStream out, VentaFria venta) throws IOException {
+        out.writeLong(venta.id());
+        escribirTexto(out, venta.numeroComprobante());
+        escribirFecha(out, venta.fechaVenta());
+        escribirTexto(out, venta.totalVenta() != null ? venta.totalVenta().toPlainString() : null);
+        out.writeInt(venta.items().size());
+        for (ItemFrio item : venta.items()) {
+            out.writeLong(item.id());
+            out.writeBoolean(item.productoId() != null);
+            if (item.productoId() != null) {
+                out.writeLong(item.productoId());
+            }
+            escribirTexto(out, item.productoDescripcion());
+            out.writeInt(item.cantidad());
+            escribirTexto(out, item.precioUnitario() != null ? item.precioUnitario().toPlainString() : null);
+        }
+    }
+
+    private static VentaFria leerVenta(DataInputStream in) throws IOException {
+        long id = in.readLong();
+        String numero = leerTexto(in);
+        LocalDateTime fecha = leerFecha(in);
+        String total = leerTexto(in);
+        int cantidadItems = in.readInt();
+        List<ItemFrio> items = new ArrayList<>(cantidadItems);
+        for (int i = 0; i < cantidadItems; i++) {
+            long itemId = in.readLong();
+            Long productoId = in.readBoolean() ? in.readLong() : null;
+            String descripcion = leerTexto(in);
+            int cantidad = in.readInt();
+            String precio = leerTexto(in);
+            items.add(new ItemFrio(itemId, productoId, descripcion, cantidad, precio != null ? new BigDecimal(precio) : null));
+        }
+        return new VentaFria(id, numero, fecha, total != null ? new BigDecimal(total) : null, items);
+    }
+
+    private static void escribirTexto(DataOutputStream out, String texto) throws IOException {
+        out.writeBoolean(texto != null);
+        if (texto != null) {
+            out.writeUTF(texto);
+        }
+    }
+
+    private static String leerTexto(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static void escribirFecha(DataOutputStream out, LocalDateTime fecha) throws IOException {
+        out.writeLong(fecha.toEpochSecond(ZoneOffset.UTC));
+        out.writeInt(fecha.getNano());
+    }
+
+    private static LocalDateTime leerFecha(DataInputStream in) throws IOException {
+        return LocalDateTime.ofEpochSecond(in.readLong(), in.readInt(), ZoneOffset.UTC);
+    }
+
+    private static byte[] aBytes(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return bytes;
+    }
+}
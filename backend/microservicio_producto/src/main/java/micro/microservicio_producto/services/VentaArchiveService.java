@@ -1,24 +1,18 @@
 package micro.microservicio_producto.services;
 
-import micro.microservicio_producto.entities.Venta;
-import micro.microservicio_producto.entities.VentaArchivada;
-import micro.microservicio_producto.entities.VentaItem;
-import micro.microservicio_producto.entities.VentaItemArchivado;
-import micro.microservicio_producto.repositories.VentaRepository;
-import micro.microservicio_producto.repositories.VentaItemRepository;
-import micro.microservicio_producto.repositories.VentaArchivadaRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Profile;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import micro.microservicio_producto.services.ParticionesVentaService.ParticionArchivada;
 
-import java.time.LocalDate;
-import java.time.LocalDateTime;
 import java.time.YearMonth;
 import java.util.List;
-import java.util.stream.Collectors;
 
 @Service
 @Profile("online")
@@ -26,91 +20,105 @@ public class VentaArchiveService {
 
     private static final Logger log = LoggerFactory.getLogger(VentaArchiveService.class);
 
-    private final VentaRepository ventaRepository;
-    private final VentaItemRepository ventaItemRepository;
-    private final VentaArchivadaRepository ventaArchivadaRepository;
+    private final ParticionesVentaService particiones;
+    private final FiltroComprobantesArchivados filtroArchivados;
+    private final AlmacenFrioVentas almacenFrio;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${app.ventas.frio.meses-en-base:12}")
+    private int mesesEnBase;
+
+    @Value("${app.ventas.frio.habilitado:false}")
+    private boolean frioHabilitado;
 
-    public VentaArchiveService(VentaRepository ventaRepository, VentaItemRepository ventaItemRepository, VentaArchivadaRepository ventaArchivadaRepository) {
-        this.ventaRepository = ventaRepository;
-        this.ventaItemRepository = ventaItemRepository;
-        this.ventaArchivadaRepository = ventaArchivadaRepository;
+    public VentaArchiveService(ParticionesVentaService particiones, FiltroComprobantesArchivados filtroArchivados,
+                               AlmacenFrioVentas almacenFrio, PlatformTransactionManager transactionManager) {
+        this.particiones = particiones;
+        this.filtroArchivados = filtroArchivados;
+        this.almacenFrio = almacenFrio;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
     }
 
     /**
-     * Tarea programada para archivar las ventas del mes anterior.
-     * Se ejecuta a las 3:00 AM del primer día de cada mes.
+     * Archiva todo mes anterior al actual que siga en {@code venta}, normalmente sólo el mes
+     * anterior. Cada mes es una transacción aparte con su partición movida al archivo.
+     * <p>
+     * Corre todos los días a las 3:00: si un día no puede (por ejemplo, no consigue el lock de
+     * {@code venta} porque hay una exportación larga), lo reintenta al siguiente en lugar de
+     * esperar un mes. Sin meses pendientes no hace nada.
      */
-    // El cron original es "0 0 3 1 * ?" (a las 3am del día 1 de cada mes)
-    // Para testear, lo cambiamos para que se ejecute cada minuto.
-    @Scheduled(cron = "0 0 3 1 * ?")
-    @Transactional
+    @Scheduled(cron = "0 0 3 * * ?")
     public void archivarVentasDelMesAnterior() {
-        // --- LÓGICA ORIGINAL (para producción) ---
-        YearMonth mesAnterior = YearMonth.now().minusMonths(1);
-        LocalDate fechaInicio = mesAnterior.atDay(1);
-        LocalDate fechaFin = mesAnterior.atEndOfMonth();
-        log.info("--- Iniciando proceso de archivado de ventas para el período: {} a {} ---", fechaInicio, fechaFin);
-        List<Venta> ventasParaArchivar = ventaRepository.findAllByFechaVentaBetween(fechaInicio.atStartOfDay(), fechaFin.atTime(23, 59, 59));
-
-        // --- LÓGICA TEMPORAL (para testear) ---
-        // Archiva todas las ventas que tengan más de 10 minutos de antigüedad.
-        //LocalDateTime fechaLimite = LocalDateTime.now().minusMinutes(10);
-        //log.info("--- (MODO TEST) Iniciando archivado de ventas anteriores a: {} ---", fechaLimite);
-        //List<Venta> ventasParaArchivar = ventaRepository.findAllByFechaVentaBefore(fechaLimite);
-
-        if (ventasParaArchivar.isEmpty()) {
-            log.info("No se encontraron ventas para archivar en el período.");
-            return;
+        YearMonth mesActual = YearMonth.now();
+        List<YearMonth> pendientes = particiones.mesesSinArchivar(mesActual);
+        if (!pendientes.isEmpty()) {
+            log.info("--- Iniciando archivado de ventas de los meses: {} ---", pendientes);
         }
 
-        log.info("Se encontraron {} ventas para archivar.", ventasParaArchivar.size());
-
-        List<VentaArchivada> ventasConvertidas = ventasParaArchivar.stream()
-                .map(this::convertirVentaAArchivada)
-                .collect(Collectors.toList());
-
-        // 1. Guardamos todo el lote en la tabla de archivo
-        ventaArchivadaRepository.saveAll(ventasConvertidas);
-
-        // 2. Si el guardado fue exitoso, eliminamos primero los hijos (VentaItem)
-        List<VentaItem> itemsAEliminar = ventasParaArchivar.stream()
-                .flatMap(venta -> venta.getItems().stream())
-                .collect(Collectors.toList());
-
-        if (!itemsAEliminar.isEmpty()) {
-            ventaItemRepository.deleteAllInBatch(itemsAEliminar);
+        for (YearMonth mes : pendientes) {
+            try {
+                transactionTemplate.executeWithoutResult(status -> {
+                    // El filtro se marca antes de que las ventas dejen la tabla principal; si la
+                    // transacción falla sólo quedan falsos positivos.
+                    particiones.sufijosDelMes(mes).forEach(filtroArchivados::marcar);
+                    particiones.archivarMes(mes);
+                });
+            } catch (Exception e) {
+                log.error("No se pudo archivar el mes {}: {}", mes, e.getMessage());
+                return;
+            }
         }
 
-        // 3. Y luego eliminamos los padres (Venta) de la tabla original
-        ventaRepository.deleteAllInBatch(ventasParaArchivar);
-
-        log.info("Se archivaron y eliminaron {} ventas de la tabla principal.", ventasParaArchivar.size());
-
-        log.info("--- Proceso de archivado de ventas finalizado. ---");
-    }
-
-    private VentaArchivada convertirVentaAArchivada(Venta venta) {
-        VentaArchivada archivada = new VentaArchivada();
-        archivada.setId(venta.getId()); // Usamos el mismo ID
-        archivada.setNumeroComprobante(venta.getNumeroComprobante());
-        archivada.setFechaVenta(venta.getFechaVenta());
-        archivada.setTotalVenta(venta.getTotalVenta());
+        try {
+            Integer rezagadas = transactionTemplate.execute(status -> {
+                particiones.sufijosRezagados(mesActual).forEach(filtroArchivados::marcar);
+                return particiones.archivarRezagadas(mesActual);
+            });
+            if (rezagadas != null && rezagadas > 0) {
+                log.info("Se archivaron {} ventas de meses anteriores que estaban en venta_default.", rezagadas);
+            }
+        } catch (Exception e) {
+            log.error("No se pudieron archivar las ventas rezagadas: {}", e.getMessage());
+        }
 
-        List<VentaItemArchivado> itemsArchivados = venta.getItems().stream()
-                .map(item -> convertirItemAArchivado(item, archivada))
-                .collect(Collectors.toList());
-        archivada.setItems(itemsArchivados);
-        return archivada;
+        if (!pendientes.isEmpty()) {
+            log.info("--- Proceso de archivado de ventas finalizado. ---");
+        }
     }
 
-    private VentaItemArchivado convertirItemAArchivado(VentaItem item, VentaArchivada ventaArchivada) {
-        VentaItemArchivado itemArchivado = new VentaItemArchivado();
-        itemArchivado.setId(item.getId());
-        itemArchivado.setProductoId(item.getProductoId());
-        itemArchivado.setProductoDescripcion(item.getProductoDescripcion());
-        itemArchivado.setCantidad(item.getCantidad());
-        itemArchivado.setPrecioUnitario(item.getPrecioUnitario());
-        itemArchivado.setVentaArchivada(ventaArchivada);
-        return itemArchivado;
+    /**
+     * Pasa a segmentos los meses del archivo más viejos que {@code app.ventas.frio.meses-en-base}.
+     * El segmento se escribe y se verifica contra la partición antes de borrarla; si algo falla
+     * la partición queda y el mes se reintenta al día siguiente.
+     * <p>
+     * No hace nada sin {@code app.ventas.frio.habilitado} o si el directorio de segmentos no se
+     * puede escribir.
+     */
+    @Scheduled(cron = "${app.ventas.frio.cron:0 30 3 * * ?}")
+    public void congelarMesesAntiguos() {
+        if (!frioHabilitado) {
+            return;
+        }
+        List<ParticionArchivada> pendientes = particiones.particionesArchivadas(YearMonth.now().minusMonths(mesesEnBase));
+        if (!pendientes.isEmpty() && !almacenFrio.directorioEscribible()) {
+            log.error("No se puede escribir en app.storage.archive; los meses {} siguen en la base.",
+                    pendientes.stream().map(ParticionArchivada::mes).toList());
+            return;
+        }
+        for (ParticionArchivada particion : pendientes) {
+            try {
+                long enBase = particiones.contarVentas(particion);
+                int escritas = almacenFrio.congelar(particion);
+                if (escritas != enBase || almacenFrio.contarVentas(particion.mes()) != escritas) {
+                    log.error("El segmento de {} tiene {} ventas y la partición {}; no se borra.", particion.mes(), escritas, enBase);
+                    return;
+                }
+                transactionTemplate.executeWithoutResult(status -> particiones.eliminarDelArchivo(particion));
+                log.info("Mes {} pasado a segmento con {} ventas.", particion.mes(), escritas);
+            } catch (Exception e) {
+                log.error("No se pudo pasar a segmento el mes {}: {}", particion.mes(), e.getMessage());
+                return;
+            }
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,31 @@
+package micro.microservicio_producto.services;
+
+import micro.microservicio_producto.exceptions.BusinessLogicException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+/**
+ * Posición del scroll de ventas: fecha e id de la última venta devuelta. El orden es siempre
+ * {@code fecha_venta DESC, id DESC}, así que no hace falta guardar campo ni dirección.
+ */
+record VentaCursor(LocalDateTime fechaVenta, long ultimoId) {
+
+    private static final char SEPARADOR = '\u001F';
+
+    String codificar() {
+        String texto = fechaVenta.toString() + SEPARADOR + ultimoId;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(texto.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static VentaCursor decodificar(String cursor) {
+        try {
+            String texto = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] partes = texto.split(String.valueOf(SEPARADOR), 2);
+            return new VentaCursor(LocalDateTime.parse(partes[0]), Long.parseLong(partes[1]));
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException | java.time.DateTimeException e) {
+            throw new BusinessLogicException("Cursor inválido.");
+        }
+    }
+}
@@ -0,0 +1,346 @@
+package micro.microservicio_producto.services;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import micro.microservicio_producto.entities.DTO.ScrollResponseDTO;
+import micro.microservicio_producto.entities.DTO.VentaItemResponseDTO;
+import micro.microservicio_producto.entities.DTO.VentaResponseDTO;
+import micro.microservicio_producto.exceptions.BusinessLogicException;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVPrinter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Consulta del historial de ventas sin cargar el mes entero en memoria: scroll por keyset sobre
+ * {@code (fecha_venta, id)} y exportación en streaming (JSON, NDJSON o CSV) leyendo con un cursor
+ * de sólo avance. En los dos casos se arma una venta por vez a partir del join con sus ítems.
+ * <p>
+ * Cubre los tres niveles: {@code venta}, {@code venta_archivada} y los segmentos de
+ * {@link AlmacenFrioVentas}. Las filas de la base y las de los segmentos llegan en el mismo orden
+ * y se intercalan al vuelo.
+ */
+@Service
+public class VentaHistorialService {
+
+    private static final Logger log = LoggerFactory.getLogger(VentaHistorialService.class);
+
+    private static final int SCROLL_MAX_SIZE = 200;
+
+    // Más reciente primero, como el índice (fecha_venta DESC, id DESC)
+    private static final Comparator<VentaResponseDTO> ORDEN = Comparator
+            .comparing(VentaResponseDTO::getFechaVenta)
+            .thenComparing(VentaResponseDTO::getId)
+            .reversed();
+
+    public enum Formato { JSON, NDJSON, CSV }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final AlmacenFrioVentas almacenFrio;
+    private final TransactionTemplate lecturaTemplate;
+    private final ObjectWriter writer;
+
+    @Value("${app.ventas.export.fetch-size:500}")
+    private int fetchSize;
+
+    public VentaHistorialService(JdbcTemplate jdbcTemplate, AlmacenFrioVentas almacenFrio,
+                                 PlatformTransactionManager transactionManager, ObjectMapper objectMapper) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.almacenFrio = almacenFrio;
+        // Postgres sólo respeta el fetch size con autocommit apagado, es decir dentro de una transacción
+        this.lecturaTemplate = new TransactionTemplate(transactionManager);
+        this.lecturaTemplate.setReadOnly(true);
+        this.writer = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    }
+
+    /**
+     * Página de ventas de la más reciente a la más antigua. {@code after} es el {@code nextCursor}
+     * de la página anterior; el rango de fechas es inclusivo y opcional en cada extremo.
+     */
+    public ScrollResponseDTO<VentaResponseDTO> scroll(LocalDate desde, LocalDate hasta, String after, int size) {
+        int limite = Math.max(1, Math.min(size, SCROLL_MAX_SIZE));
+        VentaCursor cursor = after != null && !after.isBlank() ? VentaCursor.decodificar(after) : null;
+        Filtro filtro = filtro(desde, hasta, cursor);
+        List<Object> args = new ArrayList<>();
+        for (int nivel = 0; nivel < 2; nivel++) {
+            args.addAll(filtro.args());
+            args.add(limite + 1);
+        }
+
+        // Cada nivel aporta a lo sumo limite + 1 ventas; de la unión ordenada quedan las primeras
+        List<VentaResponseDTO> ventas = new ArrayList<>();
+        Agrupador agrupador = new Agrupador(ventas::add);
+        jdbcTemplate.query(sqlHistorial(filtro.where(), true), agrupador, args.toArray());
+        agrupador.terminar();
+        Iterator<SegmentoVentas.VentaFria> frias = almacenFrio.recorrer(desde, hasta, cursor);
+        for (int i = 0; i <= limite && frias.hasNext(); i++) {
+            ventas.add(frias.next().aResponseDTO());
+        }
+        ventas.sort(ORDEN);
+
+        boolean hasNext = ventas.size() > limite;
+        if (hasNext) {
+            ventas = ventas.subList(0, limite);
+        }
+        String nextCursor = null;
+        if (hasNext) {
+            VentaResponseDTO ultima = ventas.get(ventas.size() - 1);
+            nextCursor = new VentaCursor(ultima.getFechaVenta(), ultima.getId()).codificar();
+        }
+        return new ScrollResponseDTO<>(ventas, nextCursor, hasNext, null, false);
+    }
+
+    /**
+     * Escribe las ventas del rango en {@code salida} a medida que llegan del cursor. En memoria
+     * queda sólo la venta en curso, sin importar cuántas tenga el rango.
+     */
+    public void exportar(LocalDate desde, LocalDate hasta, Formato formato, OutputStream salida) throws IOException {
+        Filtro filtro = filtro(desde, hasta, null);
+        Escritor escritor = escritor(formato, salida);
+        PreparedStatementCreator consulta = con -> {
+            PreparedStatement ps = con.prepareStatement(sqlHistorial(filtro.where(), false),
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(fetchSize);
+            int n = filtro.args().size();
+            for (int i = 0; i < n; i++) {
+                ps.setObject(i + 1, filtro.args().get(i));
+                ps.setObject(n + i + 1, filtro.args().get(i));
+            }
+            return ps;
+        };
+        Intercalador intercalador = new Intercalador(almacenFrio.recorrer(desde, hasta, null), escritor);
+        try {
+            lecturaTemplate.executeWithoutResult(status -> {
+                Agrupador agrupador = new Agrupador(intercalador::escribir);
+                jdbcTemplate.query(consulta, agrupador);
+                agrupador.terminar();
+            });
+            intercalador.escribir(null);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        escritor.terminar();
+        log.info("Exportadas {} ventas en formato {} (desde {}, hasta {}).", intercalador.escritas, formato, desde, hasta);
+    }
+
+    public void validarRango(LocalDate desde, LocalDate hasta) {
+        if (desde != null && hasta != null && desde.isAfter(hasta)) {
+            throw new BusinessLogicException("La fecha 'desde' no puede ser posterior a 'hasta'.");
+        }
+    }
+
+    private record Filtro(String where, List<Object> args) {
+    }
+
+    /**
+     * Ventas de {@code venta} y de {@code venta_archivada} con sus ítems, en orden. Paginado, cada
+     * nivel se corta antes del join para que el LIMIT cuente ventas y no ítems. Los argumentos del
+     * filtro van una vez por nivel (y el límite después de cada uno si es paginado).
+     */
+    private static String sqlHistorial(String where, boolean paginado) {
+        return """
+                SELECT * FROM (%s
+                UNION ALL
+                %s) t
+                ORDER BY fecha_venta DESC, id DESC, item_id
+                """.formatted(sqlNivel("venta", "venta_item", where, paginado),
+                sqlNivel("venta_archivada", "venta_item_archivado", where, paginado));
+    }
+
+    // Juntar también por fecha_venta deja que Postgres junte partición con partición
+    private static String sqlNivel(String ventas, String items, String where, boolean paginado) {
+        return """
+                SELECT v.id, v.numero_comprobante, v.fecha_venta, v.total_venta,
+                       i.id AS item_id, i.producto_descripcion, i.cantidad, i.precio_unitario
+                FROM (SELECT v.id, v.numero_comprobante, v.fecha_venta, v.total_venta
+                      FROM %s v
+                      WHERE %s%s) v
+                LEFT JOIN %s i ON i.venta_id = v.id AND i.fecha_venta = v.fecha_venta""".formatted(
+                ventas, where, paginado ? " ORDER BY v.fecha_venta DESC, v.id DESC LIMIT ?" : "", items);
+    }
+
+    /**
+     * Escribe las ventas de la base a medida que llegan y, antes de cada una, las de los segmentos
+     * que van primero. {@code escribir(null)} vuelca las de los segmentos que quedan.
+     */
+    private static final class Intercalador {
+        private final Iterator<SegmentoVentas.VentaFria> frias;
+        private final Escritor escritor;
+        private VentaResponseDTO siguienteFria;
+        private int escritas;
+
+        Intercalador(Iterator<SegmentoVentas.VentaFria> frias, Escritor escritor) {
+            this.frias = frias;
+            this.escritor = escritor;
+            avanzar();
+        }
+
+        void escribir(VentaResponseDTO venta) {
+            try {
+                while (siguienteFria != null && (venta == null || ORDEN.compare(siguienteFria, venta) < 0)) {
+                    escritor.escribir(siguienteFria);
+                    escritas++;
+                    avanzar();
+                }
+                if (venta != null) {
+                    escritor.escribir(venta);
+                    escritas++;
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private void avanzar() {
+            siguienteFria = frias.hasNext() ? frias.next().aResponseDTO() : null;
+        }
+    }
+
+    private Filtro filtro(LocalDate desde, LocalDate hasta, VentaCursor cursor) {
+        validarRango(desde, hasta);
+        List<String> condiciones = new ArrayList<>();
+        List<Object> args = new ArrayList<>();
+        if (desde != null) {
+            condiciones.add("v.fecha_venta >= ?");
+            args.add(Timestamp.valueOf(desde.atStartOfDay()));
+        }
+        if (hasta != null) {
+            condiciones.add("v.fecha_venta < ?");
+            args.add(Timestamp.valueOf(hasta.plusDays(1).atStartOfDay()));
+        }
+        if (cursor != null) {
+            condiciones.add("(v.fecha_venta, v.id) < (?, ?)");
+            args.add(Timestamp.valueOf(cursor.fechaVenta()));
+            args.add(cursor.ultimoId());
+        }
+        return new Filtro(condiciones.isEmpty() ? "TRUE" : String.join(" AND ", condiciones), args);
+    }
+
+    /**
+     * Junta las filas consecutivas de una misma venta (vienen ordenadas por venta) y entrega cada
+     * venta completa al pasar a la siguiente. Hay que llamar a {@link #terminar()} al final.
+     */
+    private static final class Agrupador implements RowCallbackHandler {
+        private final Consumer<VentaResponseDTO> destino;
+        private VentaResponseDTO actual;
+
+        Agrupador(Consumer<VentaResponseDTO> destino) {
+            this.destino = destino;
+        }
+
+        @Override
+        public void processRow(ResultSet rs) throws SQLException {
+            long id = rs.getLong("id");
+            if (actual == null || actual.getId() != id) {
+                terminar();
+                actual = new VentaResponseDTO();
+                actual.setId(id);
+                actual.setNumeroComprobante(rs.getString("numero_comprobante"));
+                actual.setFechaVenta(rs.getTimestamp("fecha_venta").toLocalDateTime());
+                actual.setTotalVenta(rs.getBigDecimal("total_venta"));
+                actual.setItems(new ArrayList<>());
+            }
+            long itemId = rs.getLong("item_id");
+            if (!rs.wasNull()) {
+                VentaItemResponseDTO item = new VentaItemResponseDTO();
+                item.setId(itemId);
+                item.setProductoDescripcion(rs.getString("producto_descripcion"));
+                item.setCantidad(rs.getInt("cantidad"));
+                item.setPrecioUnitario(rs.getBigDecimal("precio_unitario"));
+                actual.getItems().add(item);
+            }
+        }
+
+        void terminar() {
+            if (actual != null) {
+                destino.accept(actual);
+                actual = null;
+            }
+        }
+    }
+
+    private interface Escritor {
+        void escribir(VentaResponseDTO venta) throws IOException;
+
+        void terminar() throws IOException;
+    }
+
+    private Escritor escritor(Formato formato, OutputStream salida) throws IOException {
+        return switch (formato) {
+            case JSON, NDJSON -> {
+                JsonGenerator gen = writer.createGenerator(salida).disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+                boolean arreglo = formato == Formato.JSON;
+                if (arreglo) {
+                    gen.writeStartArray();
+                }
+                yield new Escritor() {
+                    @Override
+                    public void escribir(VentaResponseDTO venta) throws IOException {
+                        writer.writeValue(gen, venta);
+                        if (!arreglo) {
+                            gen.writeRaw('\n');
+                        }
+                    }
+
+                    @Override
+                    public void terminar() throws IOException {
+                        if (arreglo) {
+                            gen.writeEndArray();
+                        }
+                        gen.close();
+                    }
+                };
+            }
+            case CSV -> {
+                CSVPrinter csv = new CSVPrinter(new BufferedWriter(new OutputStreamWriter(salida, StandardCharsets.UTF_8)),
+                        CSVFormat.DEFAULT.builder().setHeader("venta_id", "numero_comprobante", "fecha_venta", "total_venta",
+                                "item_id", "producto_descripcion", "cantidad", "precio_unitario").build());
+                yield new Escritor() {
+                    @Override
+                    public void escribir(VentaResponseDTO venta) throws IOException {
+                        if (venta.getItems().isEmpty()) {
+                            csv.printRecord(venta.getId(), venta.getNumeroComprobante(), venta.getFechaVenta(),
+                                    venta.getTotalVenta(), null, null, null, null);
+                        }
+                        for (VentaItemResponseDTO item : venta.getItems()) {
+                            csv.printRecord(venta.getId(), venta.getNumeroComprobante(), venta.getFechaVenta(),
+                                    venta.getTotalVenta(), item.getId(), item.getProductoDescripcion(),
+                                    item.getCantidad(), item.getPrecioUnitario());
+                        }
+                    }
+
+                    @Override
+                    public void terminar() throws IOException {
+                        csv.flush();
+                    }
+                };
+            }
+        };
+    }
+}
@@ -15,6 +15,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 
 import org.springframework.transaction.support.TransactionSynchronization;
@@ -24,10 +25,11 @@ import micro.microservicio_producto.sync.OneDriveListener;
 import java.io.File;
 import java.io.IOException;
 import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.sql.Types;
 import java.time.LocalDateTime;
-import java.util.List;
-import java.util.Map;
-import java.util.Optional;
+import java.util.*;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -46,22 +48,43 @@ public class VentaService {
     private final VentaRepository ventaRepository;
     private final ProductoRepository productoRepository;
     private final VentaArchivadaRepository ventaArchivadaRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final FiltroComprobantesArchivados filtroArchivados;
+    private final AlmacenFrioVentas almacenFrio;
+    private final ResumenVentasService resumenVentas;
 
     private final ObjectMapper objectMapper;
 
-    @Value("${app.storage.archive}")
-    private String rutaArchivo;
+    private static final int MAX_CLAVE_IDEMPOTENCIA = 100;
+    // allocationSize de Venta y VentaItem
+    private static final int BLOQUE_IDS = 50;
+
+    @Value("${app.ventas.batch-max:500}")
+    private int maxVentasPorLote;
+
+    // Ventana aceptada para fechaVenta de un lote: una fecha fuera de rango caería en venta_default
+    @Value("${app.ventas.batch-dias-atras:90}")
+    private int diasAtrasLote;
+
+    @Value("${app.ventas.batch-minutos-adelante:10}")
+    private int minutosAdelanteLote;
 
 
     public VentaService(ProductoService productoService, ComprobanteService comprobanteService,
                         VentaRepository ventaRepository, ProductoRepository productoRepository,
-                        VentaArchivadaRepository ventaArchivadaRepository) {
+                        VentaArchivadaRepository ventaArchivadaRepository, JdbcTemplate jdbcTemplate,
+                        FiltroComprobantesArchivados filtroArchivados, AlmacenFrioVentas almacenFrio,
+                        ResumenVentasService resumenVentas) {
         this.productoService = productoService;
         this.comprobanteService = comprobanteService;
         this.ventaRepository = ventaRepository;
         this.productoRepository = productoRepository;
         this.objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
         this.ventaArchivadaRepository = ventaArchivadaRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.filtroArchivados = filtroArchivados;
+        this.almacenFrio = almacenFrio;
+        this.resumenVentas = resumenVentas;
     }
 
     @Transactional
@@ -85,14 +108,202 @@ public class VentaService {
         productoService.descontarProductos(productosVendidos);
 
         String numeroComprobante = comprobanteService.generarNumeroComprobanteUnico();
+        Venta nuevaVenta = armarVenta(productosVendidos, productosMap, numeroComprobante, LocalDateTime.now());
+        Venta ventaGuardada = ventaRepository.save(nuevaVenta);
+        resumenVentas.acumular(List.of(ventaGuardada), productosMap);
+
+        /*TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                OneDriveListener.exportChange(ventaGuardada, "SAVE");
+            }
+        });*/
+
+        return mapToVentaResponseDTO(ventaGuardada);
+    }
+    /**
+     * Registra en una sola transacción las ventas que una caja acumuló sin conexión, en el orden
+     * recibido. Las claves de idempotencia ya registradas (o repetidas dentro del lote) no vuelven
+     * a cargarse: se responden con la venta original. El stock se descuenta con un único UPDATE
+     * para todo el lote y ventas e ítems se insertan con batches JDBC.
+     * <p>
+     * Si dos lotes con la misma clave llegan a la vez, el segundo falla por la clave primaria de
+     * venta_idempotencia y se revierte entero; al reintentarlo, esa venta sale como duplicada.
+     */
+    @Transactional
+    public List<VentaBatchResultadoDTO> registrarLote(VentaBatchRequestDTO lote) {
+        List<VentaOfflineDTO> ventas = lote != null ? lote.getVentas() : null;
+        if (ventas == null || ventas.isEmpty()) {
+            throw new BusinessLogicException("El lote no contiene ventas.");
+        }
+        if (ventas.size() > maxVentasPorLote) {
+            throw new BusinessLogicException("El lote supera el máximo de " + maxVentasPorLote + " ventas.");
+        }
+        LocalDateTime ahora = LocalDateTime.now();
+        LocalDateTime fechaMinima = ahora.minusDays(diasAtrasLote);
+        LocalDateTime fechaMaxima = ahora.plusMinutes(minutosAdelanteLote);
+        for (VentaOfflineDTO venta : ventas) {
+            String clave = venta.getClaveIdempotencia();
+            if (clave == null || clave.isBlank() || clave.length() > MAX_CLAVE_IDEMPOTENCIA) {
+                throw new BusinessLogicException("Cada venta del lote necesita una claveIdempotencia de hasta "
+                        + MAX_CLAVE_IDEMPOTENCIA + " caracteres.");
+            }
+            if (venta.getItems() == null || venta.getItems().isEmpty()) {
+                throw new BusinessLogicException("La venta " + clave + " no contiene ítems.");
+            }
+            LocalDateTime fecha = venta.getFechaVenta();
+            if (fecha != null && (fecha.isBefore(fechaMinima) || fecha.isAfter(fechaMaxima))) {
+                throw new BusinessLogicException("La venta " + clave + " tiene una fechaVenta fuera de rango: " + fecha
+                        + ". Se aceptan hasta " + diasAtrasLote + " días atrás y " + minutosAdelanteLote + " minutos adelante.");
+            }
+        }
+
+        Map<String, Long> registradas = buscarClavesRegistradas(
+                ventas.stream().map(VentaOfflineDTO::getClaveIdempotencia).distinct().toList());
+        Map<String, VentaOfflineDTO> nuevas = new LinkedHashMap<>();
+        for (VentaOfflineDTO venta : ventas) {
+            if (!registradas.containsKey(venta.getClaveIdempotencia())) {
+                nuevas.putIfAbsent(venta.getClaveIdempotencia(), venta);
+            }
+        }
+
+        Map<String, VentaResponseDTO> creadas = new HashMap<>();
+        if (!nuevas.isEmpty()) {
+            insertarVentasNuevas(nuevas).forEach((clave, venta) -> creadas.put(clave, mapToVentaResponseDTO(venta)));
+        }
+        Map<Long, VentaResponseDTO> anteriores = buscarVentasPorId(registradas.values());
+
+        List<VentaBatchResultadoDTO> resultados = new ArrayList<>(ventas.size());
+        Set<String> entregadas = new HashSet<>();
+        for (VentaOfflineDTO venta : ventas) {
+            String clave = venta.getClaveIdempotencia();
+            if (creadas.containsKey(clave)) {
+                resultados.add(new VentaBatchResultadoDTO(clave, !entregadas.add(clave), creadas.get(clave)));
+            } else {
+                resultados.add(new VentaBatchResultadoDTO(clave, true, anteriores.get(registradas.get(clave))));
+            }
+        }
+        log.info("Lote de ventas procesado: {} recibidas, {} registradas, {} duplicadas.",
+                ventas.size(), creadas.size(), ventas.size() - creadas.size());
+        return resultados;
+    }
+
+    private Map<String, Long> buscarClavesRegistradas(List<String> claves) {
+        Map<String, Long> registradas = new HashMap<>();
+        jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement("SELECT clave, venta_id FROM venta_idempotencia WHERE clave = ANY (?)");
+            ps.setArray(1, con.createArrayOf("varchar", claves.toArray()));
+            return ps;
+        }, rs -> {
+            registradas.put(rs.getString("clave"), rs.getLong("venta_id"));
+        });
+        return registradas;
+    }
+
+    private Map<String, Venta> insertarVentasNuevas(Map<String, VentaOfflineDTO> nuevas) {
+        Set<Long> productoIds = new HashSet<>();
+        List<ProductoDTO> aDescontar = new ArrayList<>();
+        for (VentaOfflineDTO venta : nuevas.values()) {
+            for (ProductoDTO item : venta.getItems()) {
+                if (item.getId() == null) {
+                    throw new BusinessLogicException("La venta " + venta.getClaveIdempotencia() + " tiene un ítem sin ID de producto.");
+                }
+                productoIds.add(item.getId());
+                aDescontar.add(item);
+            }
+        }
+        Map<Long, Producto> productosMap = productoRepository.findAllById(productoIds).stream()
+                .collect(Collectors.toMap(Producto::getId, producto -> producto));
+        if (productosMap.size() != productoIds.size()) {
+            throw new ResourceNotFoundException("Uno o más productos no fueron encontrados en la base de datos.");
+        }
+
+        productoService.descontarProductos(aDescontar);
+
+        LocalDateTime ahora = LocalDateTime.now();
+        Map<String, Venta> creadas = new LinkedHashMap<>();
+        nuevas.forEach((clave, dto) -> creadas.put(clave, armarVenta(dto.getItems(), productosMap,
+                comprobanteService.generarNumeroComprobanteUnico(),
+                dto.getFechaVenta() != null ? dto.getFechaVenta() : ahora)));
+
+        insertarVentas(new ArrayList<>(creadas.values()));
+        resumenVentas.acumular(creadas.values(), productosMap);
+        List<Object[]> claves = new ArrayList<>(creadas.size());
+        creadas.forEach((clave, venta) -> claves.add(new Object[]{clave, venta.getId()}));
+        jdbcTemplate.batchUpdate("INSERT INTO venta_idempotencia (clave, venta_id) VALUES (?, ?)", claves);
+        return creadas;
+    }
+
+    /** Inserta ventas e ítems con un batch por tabla, con IDs tomados de las secuencias. */
+    private void insertarVentas(List<Venta> ventas) {
+        Iterator<Long> idsVenta = reservarIds("venta_id_seq", ventas.size()).iterator();
+        ventas.forEach(venta -> venta.setId(idsVenta.next()));
+        jdbcTemplate.batchUpdate("INSERT INTO venta (id, numero_comprobante, fecha_venta, total_venta) VALUES (?, ?, ?, ?)",
+                ventas, ventas.size(), (ps, venta) -> {
+                    ps.setLong(1, venta.getId());
+                    ps.setString(2, venta.getNumeroComprobante());
+                    ps.setTimestamp(3, Timestamp.valueOf(venta.getFechaVenta()));
+                    ps.setBigDecimal(4, venta.getTotalVenta());
+                });
+
+        List<VentaItem> items = ventas.stream().flatMap(venta -> venta.getItems().stream()).toList();
+        Iterator<Long> idsItem = reservarIds("venta_item_id_seq", items.size()).iterator();
+        items.forEach(item -> item.setId(idsItem.next()));
+        items.forEach(item -> item.setFechaVenta(item.getVenta().getFechaVenta()));
+        jdbcTemplate.batchUpdate("INSERT INTO venta_item (id, venta_id, fecha_venta, producto_id, producto_descripcion, cantidad, precio_unitario) "
+                        + "VALUES (?, ?, ?, ?, ?, ?, ?)",
+                items, items.size(), (ps, item) -> {
+                    ps.setLong(1, item.getId());
+                    ps.setLong(2, item.getVenta().getId());
+                    ps.setTimestamp(3, Timestamp.valueOf(item.getFechaVenta()));
+                    ps.setObject(4, item.getProductoId(), Types.BIGINT);
+                    ps.setString(5, item.getProductoDescripcion());
+                    ps.setInt(6, item.getCantidad());
+                    ps.setBigDecimal(7, item.getPrecioUnitario());
+                });
+    }
+
+    /**
+     * IDs para inserts por JDBC sobre secuencias que Hibernate usa con el optimizador pooled: cada
+     * nextval devuelve el tope de un bloque de {@value #BLOQUE_IDS} IDs que nadie más va a usar.
+     */
+    private List<Long> reservarIds(String secuencia, int cantidad) {
+        int bloques = (cantidad + BLOQUE_IDS - 1) / BLOQUE_IDS;
+        List<Long> topes = jdbcTemplate.queryForList(
+                "SELECT nextval(CAST(? AS regclass)) FROM generate_series(1, ?)", Long.class, secuencia, bloques);
+        List<Long> ids = new ArrayList<>(cantidad);
+        for (Long tope : topes) {
+            for (long id = tope - BLOQUE_IDS + 1; id <= tope && ids.size() < cantidad; id++) {
+                ids.add(id);
+            }
+        }
+        return ids;
+    }
+
+    /** Ventas por ID, buscando también entre las archivadas. */
+    private Map<Long, VentaResponseDTO> buscarVentasPorId(Collection<Long> ids) {
+        Map<Long, VentaResponseDTO> ventas = new HashMap<>();
+        if (ids.isEmpty()) {
+            return ventas;
+        }
+        ventaRepository.findAllById(ids).forEach(venta -> ventas.put(venta.getId(), mapToVentaResponseDTO(venta)));
+        List<Long> faltantes = ids.stream().filter(id -> !ventas.containsKey(id)).distinct().toList();
+        if (!faltantes.isEmpty()) {
+            ventaArchivadaRepository.findAllById(faltantes)
+                    .forEach(archivada -> ventas.put(archivada.getId(), mapToVentaResponseDTO(convertirArchivadaAVenta(archivada))));
+        }
+        return ventas;
+    }
 
-        Venta nuevaVenta = new Venta();
-        nuevaVenta.setNumeroComprobante(numeroComprobante);
-        nuevaVenta.setFechaVenta(LocalDateTime.now());
+    private Venta armarVenta(List<ProductoDTO> items, Map<Long, Producto> productosMap, String numeroComprobante,
+                             LocalDateTime fechaVenta) {
+        Venta venta = new Venta();
+        venta.setNumeroComprobante(numeroComprobante);
+        venta.setFechaVenta(fechaVenta);
 
         BigDecimal totalVenta = BigDecimal.ZERO;
 
-        for (ProductoDTO dto : productosVendidos) {
+        for (ProductoDTO dto : items) {
             Producto producto = productosMap.get(dto.getId());
 
             VentaItem item = new VentaItem();
@@ -100,30 +311,14 @@ public class VentaService {
             item.setProductoDescripcion(producto.getDescripcion());
             item.setCantidad(dto.getCantidad());
             item.setPrecioUnitario(producto.getPrecio_publico());
-            item.setVenta(nuevaVenta);
+            item.setVenta(venta);
 
-            nuevaVenta.getItems().add(item);
+            venta.getItems().add(item);
             totalVenta = totalVenta.add(producto.getPrecio_publico().multiply(new BigDecimal(dto.getCantidad())));
         }
 
-        nuevaVenta.setTotalVenta(totalVenta);
-        Venta ventaGuardada = ventaRepository.save(nuevaVenta);
-
-        /*TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
-            @Override
-            public void afterCommit() {
-                OneDriveListener.exportChange(ventaGuardada, "SAVE");
-            }
-        });*/
-
-        return mapToVentaResponseDTO(ventaGuardada);
-    }
-    @Transactional(readOnly = true)
-    public List<VentaResponseDTO> findAllVentas() {
-        return ventaRepository.findAllByOrderByFechaVentaDesc()
-                .stream()
-                .map(this::mapToVentaResponseDTO)
-                .collect(Collectors.toList());
+        venta.setTotalVenta(totalVenta);
+        return venta;
     }
 
     @Transactional
@@ -132,24 +327,29 @@ public class VentaService {
             return Optional.empty();
         }
 
-        String numeroLower = numero.toLowerCase().trim();
-        Matcher matcher = FULL_FORMAT_PATTERN.matcher(numeroLower);
-        log.info("Buscando venta por parte numérica que termine en: {}", numeroLower);
+        // Los comprobantes se generan en mayúsculas (AA000123)
+        String entrada = numero.trim().toUpperCase();
+        Matcher matcher = FULL_FORMAT_PATTERN.matcher(entrada);
         if (matcher.matches()) {
-            log.info("Buscando venta por formato completo: {}", numeroLower);
-            return ventaRepository.findByNumeroComprobante(numeroLower)
+            log.info("Buscando venta por formato completo: {}", entrada);
+            return ventaRepository.findByNumeroComprobante(entrada)
                     .map(this::mapToVentaResponseDTO)
-                    .or(() -> buscarYConvertirVentaArchivada(numeroLower));
+                    .or(() -> buscarYConvertirVentaArchivada(entrada))
+                    .or(() -> almacenFrio.buscarPorNumero(entrada).map(SegmentoVentas.VentaFria::aResponseDTO));
         }
 
         try {
-            long num = Long.parseLong(numero);
+            long num = Long.parseLong(entrada);
+            if (num < 0 || num > 999_999) {
+                return Optional.empty();
+            }
             String parteNumerica = String.format("%06d", num);
             log.info("Buscando venta por parte numérica que termine en: {}", parteNumerica);
 
-            return ventaRepository.findByNumeroComprobanteEndingWith(parteNumerica)
+            return ventaRepository.findUltimaPorSufijo(parteNumerica)
                     .map(this::mapToVentaResponseDTO)
-                    .or(() -> buscarYConvertirVentaArchivadaPorSufijo(parteNumerica));
+                    .or(() -> buscarYConvertirVentaArchivadaPorSufijo(parteNumerica))
+                    .or(() -> almacenFrio.buscarPorSufijo(parteNumerica).map(SegmentoVentas.VentaFria::aResponseDTO));
 
         } catch (NumberFormatException e) {
             log.error("La entrada '{}' no es un número válido ni un formato de comprobante completo.", numero);
@@ -162,6 +362,9 @@ public class VentaService {
      * Busca una venta archivada por su número de comprobante completo y la convierte a una entidad Venta.
      */
     private Optional<VentaResponseDTO> buscarYConvertirVentaArchivada(String numeroCompleto) {
+        if (!filtroArchivados.puedeEstar(FiltroComprobantesArchivados.parteNumerica(numeroCompleto))) {
+            return Optional.empty();
+        }
         log.warn("Comprobante {} no encontrado en la tabla principal. Buscando en archivo...", numeroCompleto);
         return ventaArchivadaRepository.findByNumeroComprobante(numeroCompleto)
                 .map(this::convertirArchivadaAVenta)
@@ -172,8 +375,11 @@ public class VentaService {
      * Busca una venta archivada por el sufijo de su número de comprobante y la convierte a una entidad Venta.
      */
     private Optional<VentaResponseDTO> buscarYConvertirVentaArchivadaPorSufijo(String sufijo) {
+        if (!filtroArchivados.puedeEstar(Integer.parseInt(sufijo))) {
+            return Optional.empty();
+        }
         log.warn("Comprobante con sufijo {} no encontrado en la tabla principal. Buscando en archivo...", sufijo);
-        return ventaArchivadaRepository.findByNumeroComprobanteEndingWith(sufijo)
+        return ventaArchivadaRepository.findUltimaPorSufijo(sufijo)
                 .map(this::convertirArchivadaAVenta)
                 .map(this::mapToVentaResponseDTO);
     }
@@ -0,0 +1,49 @@
+-- venta, venta_item y nro_comprobante pasan de IDENTITY a secuencias con incremento 50
+-- (allocationSize de las entidades) para que Hibernate pueda agrupar los INSERT en batches.
+-- Los IDs existentes no cambian: cada secuencia se recrea con el mismo nombre arrancando en
+-- MAX(id) + 50, que para el optimizador pooled es el tope del primer bloque libre.
+DO $$
+DECLARE
+    tabla     TEXT;
+    secuencia TEXT;
+    inicio    BIGINT;
+BEGIN
+    FOREACH tabla IN ARRAY ARRAY['venta', 'venta_item', 'nro_comprobante'] LOOP
+        CONTINUE WHEN to_regclass(tabla) IS NULL;
+        secuencia := tabla || '_id_seq';
+
+        IF EXISTS (SELECT 1 FROM information_schema.columns
+                   WHERE table_name = tabla AND column_name = 'id' AND is_identity = 'YES') THEN
+            EXECUTE format('ALTER TABLE %I ALTER COLUMN id DROP IDENTITY', tabla);
+        ELSE
+            EXECUTE format('ALTER TABLE %I ALTER COLUMN id DROP DEFAULT', tabla);
+        END IF;
+
+        EXECUTE format('SELECT COALESCE(MAX(id), 0) + 50 FROM %I', tabla) INTO inicio;
+        EXECUTE format('DROP SEQUENCE IF EXISTS %I', secuencia);
+        EXECUTE format('CREATE SEQUENCE %I START WITH %s INCREMENT BY 50', secuencia, inicio);
+        EXECUTE format('ALTER SEQUENCE %I OWNED BY %I.id', secuencia, tabla);
+    END LOOP;
+END $$;
+
+-- Los triggers de V2 llevaban la secuencia a MAX(id) después de cada INSERT. Con bloques de 50
+-- eso puede hacerla retroceder por debajo de un bloque ya entregado; ahora sólo avanzan.
+CREATE
+OR REPLACE FUNCTION fn_actualizar_secuencia_producto() RETURNS TRIGGER AS $$
+BEGIN
+        PERFORM
+setval('producto_id_seq', GREATEST((SELECT max(id) FROM producto), (SELECT last_value FROM producto_id_seq)), true);
+RETURN NULL;
+END;
+    $$
+LANGUAGE plpgsql;
+
+CREATE
+OR REPLACE FUNCTION fn_actualizar_secuencia_nro_comprobante() RETURNS TRIGGER AS $$
+BEGIN
+        PERFORM
+setval('nro_comprobante_id_seq', GREATEST((SELECT max(id) FROM nro_comprobante), (SELECT last_value FROM nro_comprobante_id_seq)), true);
+RETURN NULL;
+END;
+    $$
+LANGUAGE plpgsql;
@@ -0,0 +1,4 @@
+-- Historial de ventas: scroll y exportación recorren venta por (fecha_venta, id) descendente
+-- y traen los ítems de cada venta por venta_id, que no tenía índice.
+CREATE INDEX IF NOT EXISTS idx_venta_fecha_id ON venta (fecha_venta DESC, id DESC);
+CREATE INDEX IF NOT EXISTS idx_venta_item_venta_id ON venta_item (venta_id);
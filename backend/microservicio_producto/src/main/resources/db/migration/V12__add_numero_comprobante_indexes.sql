@@ -0,0 +1,7 @@
+-- Búsqueda de comprobantes en ventas y archivo. Por número completo usa igualdad; por la parte
+-- numérica compara right(numero_comprobante, 6) en lugar de LIKE '%000123', que recorría la tabla.
+-- Las consultas de VentaRepository y VentaArchivadaRepository usan exactamente esta expresión.
+CREATE INDEX IF NOT EXISTS idx_venta_numero_comprobante ON venta (numero_comprobante);
+CREATE INDEX IF NOT EXISTS idx_venta_sufijo_comprobante ON venta ((right(numero_comprobante, 6)));
+CREATE INDEX IF NOT EXISTS idx_venta_archivada_numero_comprobante ON venta_archivada (numero_comprobante);
+CREATE INDEX IF NOT EXISTS idx_venta_archivada_sufijo_comprobante ON venta_archivada ((right(numero_comprobante, 6)));
@@ -0,0 +1,138 @@
+-- Ventas particionadas por mes de fecha_venta (venta y venta_item) y archivo con la misma forma
+-- (venta_archivada y venta_item_archivado). Archivar un mes pasa a ser DETACH de la partición de
+-- venta y ATTACH al archivo, sin copiar filas (ParticionesVentaService).
+--
+-- venta_item lleva su propia fecha_venta para particionarse igual que venta. Las claves primarias
+-- pasan a (id, fecha_venta), como exige Postgres, y no hay FK de ítems a ventas: una FK hacia una
+-- tabla particionada tendría que incluir la fecha. Las secuencias de V10 se conservan.
+--
+-- No se supone nada sobre Hibernate: según el perfil (ddl-auto update o validate) las tablas
+-- viejas pueden tener o no fecha_venta y venta_id agregadas, y vacías. Por eso las columnas se
+-- agregan con IF NOT EXISTS y los ítems archivados se copian según las columnas que haya.
+
+-- Crea las particiones mensuales de venta y venta_item entre dos fechas, las que falten.
+-- Devuelve cuántas tablas creó. Lo llama también la aplicación para los meses siguientes.
+CREATE OR REPLACE FUNCTION fn_crear_particiones_venta(desde date, hasta date) RETURNS integer AS $$
+DECLARE
+    mes date := date_trunc('month', desde);
+    tabla text;
+    nombre text;
+    creadas integer := 0;
+BEGIN
+    WHILE mes <= hasta LOOP
+        FOREACH tabla IN ARRAY ARRAY['venta', 'venta_item'] LOOP
+            nombre := tabla || to_char(mes, '_YYYY_MM');
+            IF to_regclass(nombre) IS NULL THEN
+                EXECUTE format('CREATE TABLE %I PARTITION OF %I FOR VALUES FROM (%L) TO (%L)',
+                               nombre, tabla, mes, mes + interval '1 month');
+                creadas := creadas + 1;
+            END IF;
+        END LOOP;
+        mes := mes + interval '1 month';
+    END LOOP;
+    RETURN creadas;
+END;
+$$ LANGUAGE plpgsql;
+
+DO $$
+DECLARE
+    mes date;
+    columna_venta text;
+    tabla text;
+BEGIN
+    -- 1. Tablas actuales a un costado; las secuencias dejan de depender de ellas
+    ALTER SEQUENCE venta_id_seq OWNED BY NONE;
+    ALTER SEQUENCE venta_item_id_seq OWNED BY NONE;
+    ALTER TABLE venta RENAME TO venta_sin_particionar;
+    ALTER TABLE venta_item RENAME TO venta_item_sin_particionar;
+    ALTER TABLE venta_archivada RENAME TO venta_archivada_sin_particionar;
+    ALTER TABLE venta_item_archivado RENAME TO venta_item_archivado_sin_particionar;
+
+    -- La clave de partición no admite NULL; lo que no tenga fecha cae en la partición por defecto
+    UPDATE venta_sin_particionar SET fecha_venta = TIMESTAMP '1970-01-01' WHERE fecha_venta IS NULL;
+    ALTER TABLE venta_item_sin_particionar ADD COLUMN IF NOT EXISTS fecha_venta timestamp(6);
+    UPDATE venta_item_sin_particionar i
+       SET fecha_venta = COALESCE(v.fecha_venta, TIMESTAMP '1970-01-01')
+      FROM venta_sin_particionar v
+     WHERE v.id = i.venta_id;
+    UPDATE venta_item_sin_particionar SET fecha_venta = TIMESTAMP '1970-01-01' WHERE fecha_venta IS NULL;
+
+    -- 2. Tablas particionadas con las mismas columnas, en el mismo orden
+    CREATE TABLE venta (LIKE venta_sin_particionar INCLUDING DEFAULTS) PARTITION BY RANGE (fecha_venta);
+    CREATE TABLE venta_item (LIKE venta_item_sin_particionar INCLUDING DEFAULTS) PARTITION BY RANGE (fecha_venta);
+    ALTER TABLE venta ALTER COLUMN fecha_venta SET NOT NULL;
+    ALTER TABLE venta_item ALTER COLUMN fecha_venta SET NOT NULL;
+    -- El archivo tiene que coincidir columna a columna con venta para poder adjuntarle particiones
+    CREATE TABLE venta_archivada (LIKE venta INCLUDING DEFAULTS) PARTITION BY RANGE (fecha_venta);
+    CREATE TABLE venta_item_archivado (LIKE venta_item INCLUDING DEFAULTS) PARTITION BY RANGE (fecha_venta);
+
+    -- 3. Particiones: los meses con datos, el actual y los tres siguientes, y una por defecto
+    FOR mes IN SELECT DISTINCT date_trunc('month', fecha_venta) FROM venta_sin_particionar LOOP
+        PERFORM fn_crear_particiones_venta(mes, mes);
+    END LOOP;
+    PERFORM fn_crear_particiones_venta(CAST(now() AS date), CAST(now() + interval '3 months' AS date));
+    CREATE TABLE venta_default PARTITION OF venta DEFAULT;
+    CREATE TABLE venta_item_default PARTITION OF venta_item DEFAULT;
+
+    FOR mes IN SELECT DISTINCT date_trunc('month', fecha_venta) FROM venta_archivada_sin_particionar
+               WHERE fecha_venta IS NOT NULL LOOP
+        FOREACH tabla IN ARRAY ARRAY['venta_archivada', 'venta_item_archivado'] LOOP
+            EXECUTE format('CREATE TABLE %I PARTITION OF %I FOR VALUES FROM (%L) TO (%L)',
+                           tabla || to_char(mes, '_YYYY_MM'), tabla, mes, mes + interval '1 month');
+        END LOOP;
+    END LOOP;
+    CREATE TABLE venta_archivada_default PARTITION OF venta_archivada DEFAULT;
+    CREATE TABLE venta_item_archivado_default PARTITION OF venta_item_archivado DEFAULT;
+
+    -- 4. Datos
+    INSERT INTO venta SELECT * FROM venta_sin_particionar;
+    INSERT INTO venta_item SELECT * FROM venta_item_sin_particionar;
+
+    INSERT INTO venta_archivada (id, numero_comprobante, fecha_venta, total_venta)
+    SELECT id, numero_comprobante, COALESCE(fecha_venta, TIMESTAMP '1970-01-01'), total_venta
+      FROM venta_archivada_sin_particionar;
+
+    -- Los ítems archivados apuntaban a la venta por venta_archivada_id; ahora la columna es venta_id
+    SELECT CASE
+               WHEN count(*) = 2 THEN 'COALESCE(i.venta_id, i.venta_archivada_id)'
+               WHEN bool_or(column_name = 'venta_archivada_id') THEN 'i.venta_archivada_id'
+               ELSE 'i.venta_id'
+           END
+      INTO columna_venta
+      FROM information_schema.columns
+     WHERE table_schema = current_schema()
+       AND table_name = 'venta_item_archivado_sin_particionar'
+       AND column_name IN ('venta_id', 'venta_archivada_id');
+    EXECUTE format(
+        'INSERT INTO venta_item_archivado (id, producto_id, producto_descripcion, cantidad, precio_unitario, venta_id, fecha_venta)
+         SELECT i.id, i.producto_id, i.producto_descripcion, i.cantidad, i.precio_unitario, %1$s,
+                COALESCE(a.fecha_venta, TIMESTAMP ''1970-01-01'')
+           FROM venta_item_archivado_sin_particionar i
+           LEFT JOIN venta_archivada_sin_particionar a ON a.id = %1$s', columna_venta);
+
+    -- 5. Fuera las tablas viejas (con sus índices de V11 y V12) y de vuelta las secuencias
+    DROP TABLE venta_item_sin_particionar;
+    DROP TABLE venta_sin_particionar;
+    DROP TABLE venta_item_archivado_sin_particionar;
+    DROP TABLE venta_archivada_sin_particionar;
+    ALTER SEQUENCE venta_id_seq OWNED BY venta.id;
+    ALTER SEQUENCE venta_item_id_seq OWNED BY venta_item.id;
+END $$;
+
+-- Las claves e índices se crean con los datos ya cargados y los nombres viejos libres
+ALTER TABLE venta ADD PRIMARY KEY (id, fecha_venta);
+ALTER TABLE venta_item ADD PRIMARY KEY (id, fecha_venta);
+ALTER TABLE venta_archivada ADD PRIMARY KEY (id, fecha_venta);
+ALTER TABLE venta_item_archivado ADD PRIMARY KEY (id, fecha_venta);
+
+-- Índices de V11 y V12 sobre las tablas padre; cada partición recibe el suyo. El archivo repite
+-- los de venta para que al adjuntar una partición se reutilicen los que ya tiene en vez de crearlos.
+CREATE INDEX idx_venta_fecha_id ON venta (fecha_venta DESC, id DESC);
+CREATE INDEX idx_venta_numero_comprobante ON venta (numero_comprobante);
+CREATE INDEX idx_venta_sufijo_comprobante ON venta ((right(numero_comprobante, 6)));
+CREATE INDEX idx_venta_item_venta_id ON venta_item (venta_id);
+
+CREATE INDEX idx_venta_archivada_fecha_id ON venta_archivada (fecha_venta DESC, id DESC);
+CREATE INDEX idx_venta_archivada_numero_comprobante ON venta_archivada (numero_comprobante);
+CREATE INDEX idx_venta_archivada_sufijo_comprobante ON venta_archivada ((right(numero_comprobante, 6)));
+CREATE INDEX idx_venta_item_archivado_venta_id ON venta_item_archivado (venta_id);
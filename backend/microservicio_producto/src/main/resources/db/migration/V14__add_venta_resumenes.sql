@@ -0,0 +1,34 @@
+-- Resúmenes diarios de ventas para los reportes. Se suman en la misma transacción que cada venta
+-- y se recalculan por mes desde venta, venta_archivada y los segmentos (ResumenVentasService).
+-- Una clave 0 agrupa lo que no tiene producto, tipo o proveedor.
+CREATE TABLE IF NOT EXISTS venta_resumen_dia (
+    dia      DATE           PRIMARY KEY,
+    ventas   BIGINT         NOT NULL,
+    unidades BIGINT         NOT NULL,
+    total    NUMERIC(19, 4) NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS venta_resumen_producto (
+    dia         DATE           NOT NULL,
+    producto_id BIGINT         NOT NULL,
+    descripcion VARCHAR(255),
+    unidades    BIGINT         NOT NULL,
+    importe     NUMERIC(19, 4) NOT NULL,
+    PRIMARY KEY (dia, producto_id)
+);
+
+CREATE TABLE IF NOT EXISTS venta_resumen_tipo (
+    dia              DATE           NOT NULL,
+    tipo_producto_id BIGINT         NOT NULL,
+    unidades         BIGINT         NOT NULL,
+    importe          NUMERIC(19, 4) NOT NULL,
+    PRIMARY KEY (dia, tipo_producto_id)
+);
+
+CREATE TABLE IF NOT EXISTS venta_resumen_proveedor (
+    dia          DATE           NOT NULL,
+    proveedor_id BIGINT         NOT NULL,
+    unidades     BIGINT         NOT NULL,
+    importe      NUMERIC(19, 4) NOT NULL,
+    PRIMARY KEY (dia, proveedor_id)
+);
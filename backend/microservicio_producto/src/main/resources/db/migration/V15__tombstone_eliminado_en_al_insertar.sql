@@ -0,0 +1,4 @@
+-- El feed de cambios retiene los tombstones con menos de app.changes.margen-segundos para no
+-- saltear uno con seq menor que commitea tarde. El margen se mide desde que se asignó seq, no
+-- desde el inicio de la transacción (LOCALTIMESTAMP), que puede ser muy anterior.
+ALTER TABLE producto_tombstone ALTER COLUMN eliminado_en SET DEFAULT CAST(clock_timestamp() AS timestamp);
@@ -0,0 +1,50 @@
+-- fn_crear_particiones_venta (V13) fallaba si venta_default ya tenía filas del mes a crear (por
+-- ejemplo, una venta offline con fecha futura): CREATE ... PARTITION OF no admite filas del rango
+-- en la partición por defecto. Como todos los meses iban en una sola llamada, el fallo se repetía
+-- cada día y las ventas nuevas seguían cayendo en venta_default.
+--
+-- Ahora cada mes es un bloque aparte: si venta_default o venta_item_default tienen filas del mes,
+-- se crea la partición suelta, se mueven las filas y se la adjunta; si algo falla, ese mes queda
+-- con un aviso y los demás se crean igual.
+CREATE OR REPLACE FUNCTION fn_crear_particiones_venta(desde date, hasta date) RETURNS integer AS $$
+DECLARE
+    mes date := date_trunc('month', desde);
+    fin date;
+    tabla text;
+    nombre text;
+    creadas integer := 0;
+    creadas_mes integer;
+    con_filas boolean;
+BEGIN
+    WHILE mes <= hasta LOOP
+        fin := mes + interval '1 month';
+        BEGIN
+            creadas_mes := 0;
+            FOREACH tabla IN ARRAY ARRAY['venta', 'venta_item'] LOOP
+                nombre := tabla || to_char(mes, '_YYYY_MM');
+                CONTINUE WHEN to_regclass(nombre) IS NOT NULL;
+                EXECUTE format('SELECT EXISTS (SELECT 1 FROM %I WHERE fecha_venta >= %L AND fecha_venta < %L)',
+                               tabla || '_default', mes, fin) INTO con_filas;
+                IF con_filas THEN
+                    EXECUTE format('CREATE TABLE %I (LIKE %I INCLUDING DEFAULTS)', nombre, tabla);
+                    EXECUTE format('WITH movidas AS (DELETE FROM %I WHERE fecha_venta >= %L AND fecha_venta < %L RETURNING *)
+                                    INSERT INTO %I SELECT * FROM movidas',
+                                   tabla || '_default', mes, fin, nombre);
+                    EXECUTE format('ALTER TABLE %I ATTACH PARTITION %I FOR VALUES FROM (%L) TO (%L)',
+                                   tabla, nombre, mes, fin);
+                    RAISE NOTICE 'Partición % creada con filas movidas desde %_default', nombre, tabla;
+                ELSE
+                    EXECUTE format('CREATE TABLE %I PARTITION OF %I FOR VALUES FROM (%L) TO (%L)',
+                                   nombre, tabla, mes, fin);
+                END IF;
+                creadas_mes := creadas_mes + 1;
+            END LOOP;
+            creadas := creadas + creadas_mes;
+        EXCEPTION WHEN OTHERS THEN
+            RAISE WARNING 'No se pudieron crear las particiones de ventas de %: %', to_char(mes, 'YYYY-MM'), SQLERRM;
+        END;
+        mes := fin;
+    END LOOP;
+    RETURN creadas;
+END;
+$$ LANGUAGE plpgsql;
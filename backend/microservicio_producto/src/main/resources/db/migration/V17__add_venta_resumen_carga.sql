@@ -0,0 +1,9 @@
+-- Avance de la carga inicial de los resúmenes (V14). Una sola fila: los meses de siguiente a hasta
+-- faltan recalcular. Cada mes recalculado avanza siguiente en su misma transacción, así que si la
+-- carga se corta, al arrancar de nuevo sigue desde el primer mes que no terminó.
+-- Sin fila, ResumenVentasService la crea y rehace todo desde la primera venta.
+CREATE TABLE IF NOT EXISTS venta_resumen_carga (
+    id        SMALLINT PRIMARY KEY CHECK (id = 1),
+    siguiente DATE     NOT NULL,
+    hasta     DATE     NOT NULL
+);
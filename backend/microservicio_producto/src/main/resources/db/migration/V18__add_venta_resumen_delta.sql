@@ -0,0 +1,17 @@
+-- Deltas de los resúmenes de ventas (V14) escritos por cada venta en su transacción. Sólo se
+-- insertan: las cajas no esperan por la fila del día. ResumenVentasService los pasa a los
+-- resúmenes en segundo plano y los borra.
+-- producto_id NULL es la fila de cantidad y total de ventas del día; un ítem sin producto usa 0.
+CREATE TABLE IF NOT EXISTS venta_resumen_delta (
+    id               BIGSERIAL      PRIMARY KEY,
+    dia              DATE           NOT NULL,
+    producto_id      BIGINT,
+    descripcion      VARCHAR(255),
+    tipo_producto_id BIGINT,
+    proveedor_id     BIGINT,
+    ventas           BIGINT         NOT NULL,
+    unidades         BIGINT         NOT NULL,
+    importe          NUMERIC(19, 4) NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS idx_venta_resumen_delta_dia ON venta_resumen_delta (dia);
@@ -0,0 +1,13 @@
+-- Scroll de productos: el keyset ordena y filtra por (campo, id) en cualquiera de los campos de
+-- ProductoCursor.CAMPOS. Un índice (campo, id) sirve para ASC y, recorrido al revés, para DESC
+-- (NULL al final en ASC y al principio en DESC, igual que el ORDER BY). El orden por id usa la PK.
+CREATE INDEX IF NOT EXISTS idx_producto_codigo_id ON producto (codigo_producto, id);
+CREATE INDEX IF NOT EXISTS idx_producto_descripcion_id ON producto (descripcion, id);
+CREATE INDEX IF NOT EXISTS idx_producto_cantidad_id ON producto (cantidad, id);
+CREATE INDEX IF NOT EXISTS idx_producto_precio_publico_id ON producto (precio_publico, id);
+CREATE INDEX IF NOT EXISTS idx_producto_costo_pesos_id ON producto (costo_pesos, id);
+CREATE INDEX IF NOT EXISTS idx_producto_costo_dolares_id ON producto (costo_dolares, id);
+CREATE INDEX IF NOT EXISTS idx_producto_porcentaje_ganancia_id ON producto (porcentaje_ganancia, id);
+CREATE INDEX IF NOT EXISTS idx_producto_iva_id ON producto (iva, id);
+CREATE INDEX IF NOT EXISTS idx_producto_precio_sin_iva_id ON producto (precio_sin_iva, id);
+CREATE INDEX IF NOT EXISTS idx_producto_fecha_ingreso_id ON producto (fecha_ingreso, id);
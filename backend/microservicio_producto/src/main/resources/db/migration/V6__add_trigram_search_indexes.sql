@@ -0,0 +1,27 @@
+-- Búsqueda por substring indexable: pg_trgm + unaccent para descripciones en castellano
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+CREATE EXTENSION IF NOT EXISTS unaccent;
+
+-- unaccent() es STABLE; para poder usarla en un índice de expresión hace falta un wrapper IMMUTABLE
+-- que fije el diccionario explícitamente.
+CREATE OR REPLACE FUNCTION f_unaccent(text)
+    RETURNS text
+    LANGUAGE sql
+    IMMUTABLE PARALLEL SAFE STRICT
+AS $$
+SELECT public.unaccent('public.unaccent'::regdictionary, $1)
+$$;
+
+-- Las expresiones deben coincidir exactamente con las que genera ProductoService/ProductoRepository
+CREATE INDEX IF NOT EXISTS idx_producto_descripcion_trgm
+    ON producto USING gin (f_unaccent(lower(descripcion)) gin_trgm_ops);
+
+CREATE INDEX IF NOT EXISTS idx_producto_codigo_trgm
+    ON producto USING gin (lower(codigo_producto) gin_trgm_ops);
+
+CREATE INDEX IF NOT EXISTS idx_producto_id_trgm
+    ON producto USING gin (lower(CAST(id AS varchar)) gin_trgm_ops);
+
+-- Camino exacto por código (lector de barras, búsqueda puntual)
+CREATE INDEX IF NOT EXISTS idx_producto_codigo_lower
+    ON producto (lower(codigo_producto));
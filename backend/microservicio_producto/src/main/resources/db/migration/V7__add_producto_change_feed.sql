@@ -0,0 +1,28 @@
+-- Feed incremental de cambios: índice por updated_at y tombstones para las bajas
+CREATE INDEX IF NOT EXISTS idx_producto_updated_at ON producto (updated_at, id);
+
+CREATE TABLE IF NOT EXISTS producto_tombstone (
+    seq          BIGSERIAL PRIMARY KEY,
+    producto_id  BIGINT    NOT NULL,
+    eliminado_en TIMESTAMP NOT NULL DEFAULT LOCALTIMESTAMP
+);
+
+CREATE INDEX IF NOT EXISTS idx_producto_tombstone_eliminado_en ON producto_tombstone (eliminado_en);
+
+CREATE
+OR REPLACE FUNCTION fn_registrar_tombstone_producto() RETURNS TRIGGER AS $$
+BEGIN
+INSERT INTO producto_tombstone (producto_id) VALUES (OLD.id);
+RETURN NULL;
+END;
+    $$
+LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS trg_tombstone_producto ON producto;
+CREATE TRIGGER trg_tombstone_producto
+    AFTER DELETE
+    ON producto
+    FOR EACH ROW EXECUTE FUNCTION fn_registrar_tombstone_producto();
+
+-- Las bajas que llegan por replicación (session_replication_role = replica) también deben quedar registradas
+ALTER TABLE producto ENABLE ALWAYS TRIGGER trg_tombstone_producto;
@@ -0,0 +1,3 @@
+-- Carga masiva: búsqueda de filas existentes por (codigo_producto, proveedor_id).
+-- No es único: desde V4 puede haber códigos repetidos para un mismo proveedor.
+CREATE INDEX IF NOT EXISTS idx_producto_codigo_proveedor ON producto (codigo_producto, proveedor_id);
@@ -0,0 +1,7 @@
+-- Claves de idempotencia de las ventas subidas en lote desde las cajas offline.
+-- Sin FK a venta: la clave tiene que sobrevivir al archivado de la venta.
+CREATE TABLE IF NOT EXISTS venta_idempotencia (
+    clave     VARCHAR(100) PRIMARY KEY,
+    venta_id  BIGINT       NOT NULL,
+    creado_en TIMESTAMP    NOT NULL DEFAULT LOCALTIMESTAMP
+);
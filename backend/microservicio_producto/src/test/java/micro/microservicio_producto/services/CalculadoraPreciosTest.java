@@ -0,0 +1,155 @@
+package micro.microservicio_producto.services;
+
+import micro.microservicio_producto.entities.Producto;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Compara el camino de punto fijo con la referencia BigDecimal sobre entradas aleatorias con
+ * semilla fija, en los rangos reales de iva, ganancia, resto y dólar más algunos fuera de rango
+ * que deben caer en la referencia. La igualdad es con {@code equals}: mismo valor y misma escala.
+ */
+class CalculadoraPreciosTest {
+
+    private static final int CASOS = 200_000;
+    private static final BigDecimal[] IVAS = {
+            new BigDecimal("0"), new BigDecimal("0.105"), new BigDecimal("0.21"), new BigDecimal("0.2100"), new BigDecimal("0.27")
+    };
+    private static final BigDecimal[] RESTOS = {
+            null, BigDecimal.ZERO, new BigDecimal("-10"), BigDecimal.ONE, new BigDecimal("5"), new BigDecimal("10"),
+            new BigDecimal("50"), new BigDecimal("100"), new BigDecimal("100.0000"), new BigDecimal("500"), new BigDecimal("1000")
+    };
+
+    @Test
+    void recalcularCoincideConReferencia() {
+        Random rnd = new Random(20240611L);
+        for (int i = 0; i < CASOS; i++) {
+            Producto base = new Producto();
+            base.setPrecio_sin_iva(precioSinIva(rnd));
+            base.setIva(rnd.nextInt(4) == 0 ? decimal(rnd, 1, 4) : IVAS[rnd.nextInt(IVAS.length)]);
+            base.setPorcentaje_ganancia(rnd.nextInt(20) == 0 ? decimal(rnd, 2000, 4) : decimal(rnd, 300, rnd.nextInt(5)));
+            base.setResto(resto(rnd));
+            BigDecimal dolar = dolar(rnd);
+
+            Producto rapido = copiar(base);
+            Producto referencia = copiar(base);
+            CalculadoraPrecios.recalcular(rapido, dolar);
+            CalculadoraPrecios.recalcularReferencia(referencia, dolar);
+
+            String caso = "caso " + i + ": psi=" + base.getPrecio_sin_iva() + " iva=" + base.getIva()
+                    + " ganancia=" + base.getPorcentaje_ganancia() + " resto=" + base.getResto() + " dolar=" + dolar;
+            assertEquals(referencia.getCosto_dolares(), rapido.getCosto_dolares(), caso);
+            assertEquals(referencia.getCosto_pesos(), rapido.getCosto_pesos(), caso);
+            assertEquals(referencia.getPrecio_publico_us(), rapido.getPrecio_publico_us(), caso);
+            assertEquals(referencia.getPrecio_sin_redondear(), rapido.getPrecio_sin_redondear(), caso);
+            assertEquals(referencia.getPrecio_publico(), rapido.getPrecio_publico(), caso);
+        }
+    }
+
+    @Test
+    void costoFijoCoincideConReferencia() {
+        Random rnd = new Random(7321L);
+        for (int i = 0; i < CASOS; i++) {
+            Producto base = new Producto();
+            base.setCosto_pesos(rnd.nextInt(50) == 0 ? decimal(rnd, 1_000_000_000_000L, 4) : decimal(rnd, 5_000_000, rnd.nextInt(5)));
+            base.setPorcentaje_ganancia(decimal(rnd, 300, rnd.nextInt(5)));
+            base.setResto(resto(rnd));
+
+            Producto rapido = copiar(base);
+            Producto referencia = copiar(base);
+            CalculadoraPrecios.calcularCostoFijo(rapido);
+            CalculadoraPrecios.costoFijoReferencia(referencia);
+
+            String caso = "caso " + i + ": costoPesos=" + base.getCosto_pesos() + " ganancia="
+                    + base.getPorcentaje_ganancia() + " resto=" + base.getResto();
+            assertEquals(referencia.getPrecio_sin_redondear(), rapido.getPrecio_sin_redondear(), caso);
+            assertEquals(referencia.getPrecio_publico(), rapido.getPrecio_publico(), caso);
+        }
+    }
+
+    @Test
+    void bordesDeRedondeo() {
+        // Múltiplo exacto de resto: CEILING no debe subir al siguiente
+        verificar("100", "0", "0", "100", "1");
+        verificar("1300", "0.21", "0", "100", "1300");
+        // Mitad exacta en el cuarto decimal: HALF_UP hacia arriba
+        verificar("0.00005", "0", "0", "1", "1");
+        verificar("1.2345", "0.105", "12.34565", "0.0001", "1.0001");
+        // Apenas por encima de un múltiplo
+        verificar("100.0001", "0", "0", "100", "1");
+    }
+
+    @Test
+    void multiplicarDividirCoincideConBigInteger() {
+        Random rnd = new Random(99L);
+        long[] divisores = {10_000L, 100_000_000L, 1_000_000_000_000L};
+        for (int i = 0; i < CASOS; i++) {
+            long a = rnd.nextLong(1L << 60);
+            long b = rnd.nextLong(1L << (rnd.nextInt(40) + 1));
+            long d = divisores[rnd.nextInt(divisores.length)];
+            BigInteger esperado = BigInteger.valueOf(a).multiply(BigInteger.valueOf(b)).divide(BigInteger.valueOf(d));
+            if (esperado.bitLength() > 62) {
+                continue;
+            }
+            assertEquals(esperado.longValueExact(), CalculadoraPrecios.multiplicarDividir(a, b, d), a + " * " + b + " / " + d);
+        }
+    }
+
+    private static void verificar(String psi, String iva, String ganancia, String resto, String dolar) {
+        Producto base = new Producto();
+        base.setPrecio_sin_iva(new BigDecimal(psi));
+        base.setIva(new BigDecimal(iva));
+        base.setPorcentaje_ganancia(new BigDecimal(ganancia));
+        base.setResto(new BigDecimal(resto));
+        Producto rapido = copiar(base);
+        Producto referencia = copiar(base);
+        CalculadoraPrecios.recalcular(rapido, new BigDecimal(dolar));
+        CalculadoraPrecios.recalcularReferencia(referencia, new BigDecimal(dolar));
+        assertEquals(referencia.getPrecio_sin_redondear(), rapido.getPrecio_sin_redondear(), psi);
+        assertEquals(referencia.getPrecio_publico(), rapido.getPrecio_publico(), psi);
+    }
+
+    private static BigDecimal precioSinIva(Random rnd) {
+        int tipo = rnd.nextInt(100);
+        if (tipo < 70) {
+            return decimal(rnd, 500, rnd.nextInt(5));
+        }
+        if (tipo < 95) {
+            return decimal(rnd, 100_000, rnd.nextInt(5));
+        }
+        // Fuera de rango: tiene que resolverse por la referencia
+        return tipo < 98 ? decimal(rnd, 1_000_000_000L, 4) : decimal(rnd, 1000, 6);
+    }
+
+    private static BigDecimal resto(Random rnd) {
+        return rnd.nextInt(5) == 0 ? decimal(rnd, 5000, 4) : RESTOS[rnd.nextInt(RESTOS.length)];
+    }
+
+    private static BigDecimal dolar(Random rnd) {
+        int tipo = rnd.nextInt(100);
+        if (tipo < 60) {
+            return BigDecimal.valueOf(25L * (4 + rnd.nextInt(200)) * 100, 2);
+        }
+        return tipo < 98 ? decimal(rnd, 10_000, rnd.nextInt(5)) : decimal(rnd, 2000, 6);
+    }
+
+    private static BigDecimal decimal(Random rnd, long maximoEntero, int decimales) {
+        long escala = BigInteger.TEN.pow(decimales).longValueExact();
+        return BigDecimal.valueOf(rnd.nextLong(maximoEntero * escala + 1), decimales);
+    }
+
+    private static Producto copiar(Producto origen) {
+        Producto copia = new Producto();
+        copia.setPrecio_sin_iva(origen.getPrecio_sin_iva());
+        copia.setIva(origen.getIva());
+        copia.setPorcentaje_ganancia(origen.getPorcentaje_ganancia());
+        copia.setResto(origen.getResto());
+        copia.setCosto_pesos(origen.getCosto_pesos());
+        return copia;
+    }
+}
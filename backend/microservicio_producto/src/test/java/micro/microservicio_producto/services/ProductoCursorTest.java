@@ -0,0 +1,70 @@
+package micro.microservicio_producto.services;
+
+import micro.microservicio_producto.exceptions.BusinessLogicException;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Sort;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Codifica y decodifica cursores de scroll de productos: tipos de cada campo, valor nulo,
+ * desempate por id entre filas con el mismo valor y rechazo de cursores adulterados.
+ */
+class ProductoCursorTest {
+
+    @Test
+    void idaYVueltaConservaTipoYValor() {
+        ida(new ProductoCursor("id", Sort.Direction.DESC, 42L, 42L));
+        ida(new ProductoCursor("cantidad", Sort.Direction.ASC, 7, 3L));
+        ida(new ProductoCursor("precio_publico", Sort.Direction.ASC, new BigDecimal("1234.5600"), 10L));
+        ida(new ProductoCursor("fecha_ingreso", Sort.Direction.DESC, LocalDate.of(2024, 2, 29), 11L));
+        ida(new ProductoCursor("descripcion", Sort.Direction.ASC, "Pila AA \u001F x4 / ñandú", 12L));
+    }
+
+    @Test
+    void valorNuloSeDistingueDeTextoVacio() {
+        ProductoCursor nulo = ida(new ProductoCursor("codigoProducto", Sort.Direction.ASC, null, 5L));
+        assertNull(nulo.valor());
+        ProductoCursor vacio = ida(new ProductoCursor("codigoProducto", Sort.Direction.ASC, "", 5L));
+        assertEquals("", vacio.valor());
+    }
+
+    @Test
+    void filasConElMismoValorSeDesempatanPorId() {
+        BigDecimal precio = new BigDecimal("100.0000");
+        String primero = new ProductoCursor("precio_publico", Sort.Direction.ASC, precio, 8L).codificar();
+        String segundo = new ProductoCursor("precio_publico", Sort.Direction.ASC, precio, 9L).codificar();
+
+        assertNotEquals(primero, segundo);
+        assertEquals(8L, ProductoCursor.decodificar(primero).ultimoId());
+        assertEquals(9L, ProductoCursor.decodificar(segundo).ultimoId());
+        assertEquals(0, precio.compareTo((BigDecimal) ProductoCursor.decodificar(segundo).valor()));
+    }
+
+    @Test
+    void rechazaCursoresInvalidos() {
+        assertThrows(BusinessLogicException.class, () -> ProductoCursor.decodificar("no es base64!"));
+        assertThrows(BusinessLogicException.class, () -> ProductoCursor.decodificar(base64("precio_publico\u001FASC")));
+        assertThrows(BusinessLogicException.class, () -> ProductoCursor.decodificar(base64("resto\u001FASC\u001F1\u001F10")));
+        assertThrows(BusinessLogicException.class, () -> ProductoCursor.decodificar(base64("cantidad\u001FASC\u001F1\u001Fdiez")));
+        assertThrows(BusinessLogicException.class, () -> ProductoCursor.decodificar(base64("cantidad\u001FARRIBA\u001F1\u001F10")));
+    }
+
+    private static ProductoCursor ida(ProductoCursor cursor) {
+        ProductoCursor leido = ProductoCursor.decodificar(cursor.codificar());
+        assertEquals(cursor, leido);
+        return leido;
+    }
+
+    private static String base64(String texto) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(texto.getBytes(StandardCharsets.UTF_8));
+    }
+}
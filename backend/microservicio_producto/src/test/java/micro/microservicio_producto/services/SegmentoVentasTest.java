@@ -0,0 +1,143 @@
+package micro.microservicio_producto.services;
+
+import micro.microservicio_producto.services.SegmentoVentas.ItemFrio;
+import micro.microservicio_producto.services.SegmentoVentas.VentaFria;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Escribe un mes de ventas en un segmento (varios bloques) y lo vuelve a leer: contenido, búsqueda
+ * por número y por sufijo, y recorrido con rango de fechas y cursor.
+ */
+class SegmentoVentasTest {
+
+    private static final int VENTAS = 1000;
+    private static final LocalDateTime INICIO_MES = LocalDateTime.of(2023, 3, 1, 0, 0);
+
+    @TempDir
+    Path directorio;
+
+    @Test
+    void leeLoQueEscribe() throws IOException {
+        List<VentaFria> ventas = ventas();
+        SegmentoVentas segmento = escribir(ventas);
+
+        assertEquals(VENTAS, segmento.cantidadVentas());
+        List<VentaFria> leidas = new ArrayList<>();
+        segmento.recorrer(null, null, null).forEachRemaining(leidas::add);
+        assertEquals(ventas, leidas);
+    }
+
+    @Test
+    void buscaPorNumeroYSufijo() throws IOException {
+        List<VentaFria> ventas = ventas();
+        SegmentoVentas segmento = escribir(ventas);
+
+        VentaFria buscada = ventas.get(700);
+        assertEquals(buscada, segmento.buscarPorNumero(buscada.numeroComprobante()).orElseThrow());
+        assertEquals(buscada, segmento.buscarPorSufijo(buscada.numeroComprobante().substring(2)).orElseThrow());
+        assertFalse(segmento.buscarPorNumero("ZZ000001").isPresent());
+        assertFalse(segmento.buscarPorSufijo("999999").isPresent());
+    }
+
+    @Test
+    void recorreRangoDesdeCursor() throws IOException {
+        List<VentaFria> ventas = ventas();
+        SegmentoVentas segmento = escribir(ventas);
+
+        LocalDateTime desde = INICIO_MES.plusDays(5);
+        LocalDateTime hasta = INICIO_MES.plusDays(20);
+        VentaFria ultimaVista = ventas.get(300);
+        VentaCursor cursor = new VentaCursor(ultimaVista.fechaVenta(), ultimaVista.id());
+
+        List<VentaFria> esperadas = ventas.stream()
+                .filter(v -> !v.fechaVenta().isBefore(desde) && v.fechaVenta().isBefore(hasta))
+                .filter(v -> v.fechaVenta().isBefore(cursor.fechaVenta())
+                        || (v.fechaVenta().equals(cursor.fechaVenta()) && v.id() < cursor.ultimoId()))
+                .toList();
+        List<VentaFria> leidas = new ArrayList<>();
+        Iterator<VentaFria> it = segmento.recorrer(desde, hasta, cursor);
+        it.forEachRemaining(leidas::add);
+
+        assertTrue(!esperadas.isEmpty());
+        assertEquals(esperadas, leidas);
+    }
+
+    @Test
+    void conservaNulos() throws IOException {
+        VentaFria venta = new VentaFria(1, null, INICIO_MES, null,
+                List.of(new ItemFrio(1, null, null, 2, null)));
+        SegmentoVentas segmento = escribir(List.of(venta));
+
+        VentaFria leida = segmento.recorrer(null, null, null).next();
+        assertEquals(venta, leida);
+        assertNull(leida.items().get(0).productoId());
+    }
+
+    @Test
+    void fallaConBloqueDanado() throws IOException {
+        escribir(ventas());
+        Path archivo = directorio.resolve("ventas-2023-03.seg");
+        byte[] bytes = Files.readAllBytes(archivo);
+        // Después de la cabecera zlib del primer bloque, sólo bloques "stored" vacíos: el inflater
+        // consume todo sin producir nada y pide más entrada
+        int posicionIndice = Math.toIntExact(ByteBuffer.wrap(bytes).getLong(bytes.length - 12));
+        byte[] vacio = {0, 0, 0, (byte) 0xFF, (byte) 0xFF};
+        for (int i = 10; i < posicionIndice; i++) {
+            bytes[i] = vacio[(i - 10) % vacio.length];
+        }
+        Files.write(archivo, bytes);
+
+        SegmentoVentas segmento = SegmentoVentas.abrir(archivo);
+        assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+            assertThrows(UncheckedIOException.class, () -> segmento.recorrer(null, null, null).next());
+        });
+    }
+
+    private SegmentoVentas escribir(List<VentaFria> ventas) throws IOException {
+        Path archivo = directorio.resolve("ventas-2023-03.seg");
+        try (SegmentoVentas.Escritor escritor = new SegmentoVentas.Escritor(archivo)) {
+            for (VentaFria venta : ventas) {
+                escritor.agregar(venta);
+            }
+            escritor.terminar();
+        }
+        assertFalse(Files.exists(directorio.resolve("ventas-2023-03.seg.tmp")));
+        return SegmentoVentas.abrir(archivo);
+    }
+
+    /** Ventas del mes de la más reciente a la más antigua; los números crecen con la fecha. */
+    private static List<VentaFria> ventas() {
+        List<VentaFria> ventas = new ArrayList<>();
+        for (int i = VENTAS; i >= 1; i--) {
+            // De a pares con la misma fecha para que el cursor desempate por id
+            LocalDateTime fecha = INICIO_MES.plusMinutes((i / 2) * 40L);
+            List<ItemFrio> items = new ArrayList<>();
+            for (int j = 0; j < i % 4; j++) {
+                items.add(new ItemFrio(i * 10L + j, (long) j + 1, "Producto " + j, j + 1, new BigDecimal("10.50")));
+            }
+            ventas.add(new VentaFria(i, "%s%06d".formatted(i < 500 ? "AA" : "AB", i * 7), fecha,
+                    new BigDecimal(i).movePointLeft(2), items));
+        }
+        return ventas;
+    }
+}
@@ -0,0 +1,94 @@
+package micro.microservicio_producto.services;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import micro.microservicio_producto.entities.Venta;
+import micro.microservicio_producto.entities.VentaItem;
+import micro.microservicio_producto.repositories.VentaRepository;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.FilterType;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Verifica que los INSERT de una venta y sus ítems salen en batches: con IDENTITY Hibernate
+ * prepara un INSERT por fila y la cantidad de sentencias crece con las filas.
+ */
+@DataJpaTest(properties = {
+        "spring.flyway.enabled=false",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+@ActiveProfiles("test")
+class VentaBatchingTest {
+
+    /**
+     * Sólo los repositorios de ventas: las consultas de {@code ProductoRepository} usan funciones
+     * de Postgres que no validan contra H2.
+     */
+    @Configuration
+    @EntityScan(basePackageClasses = Venta.class)
+    @EnableJpaRepositories(basePackageClasses = VentaRepository.class, includeFilters = @ComponentScan.Filter(
+            type = FilterType.ASSIGNABLE_TYPE, classes = VentaRepository.class))
+    static class Configuracion {
+    }
+
+    // Sin batching se prepara al menos una sentencia por fila insertada
+    private static final int MAX_SENTENCIAS = 10;
+
+    @Autowired
+    private EntityManager em;
+    @Autowired
+    private EntityManagerFactory emf;
+    @Autowired
+    private VentaRepository ventaRepository;
+
+    private Statistics estadisticas;
+
+    @BeforeEach
+    void prepararEstadisticas() {
+        estadisticas = emf.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @Test
+    void ventaDeCincuentaItemsSeInsertaEnBatch() {
+        Venta venta = venta(LocalDateTime.now(), 50);
+
+        estadisticas.clear();
+        ventaRepository.save(venta);
+        em.flush();
+
+        assertEquals(51, estadisticas.getEntityInsertCount());
+        assertTrue(estadisticas.getPrepareStatementCount() <= MAX_SENTENCIAS,
+                "Sentencias preparadas: " + estadisticas.getPrepareStatementCount());
+    }
+
+    private static Venta venta(LocalDateTime fecha, int cantidadItems) {
+        Venta venta = new Venta();
+        venta.setNumeroComprobante("AA" + String.format("%06d", fecha.getNano() % 1_000_000));
+        venta.setFechaVenta(fecha);
+        venta.setTotalVenta(BigDecimal.valueOf(cantidadItems * 100L));
+        for (int i = 0; i < cantidadItems; i++) {
+            VentaItem item = new VentaItem();
+            item.setProductoId((long) i + 1);
+            item.setProductoDescripcion("Producto " + (i + 1));
+            item.setCantidad(1);
+            item.setPrecioUnitario(new BigDecimal("100.00"));
+            venta.addItem(item);
+        }
+        return venta;
+    }
+}
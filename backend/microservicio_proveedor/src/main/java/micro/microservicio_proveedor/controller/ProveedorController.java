@@ -26,6 +26,11 @@ public class ProveedorController {
         return ResponseEntity.ok(proveedorService.findAll());
     }
 
+    @GetMapping(value = "", params = "ids")
+    public ResponseEntity<List<ProveedorResponseDTO>> getByIds(@RequestParam List<Long> ids) {
+        return ResponseEntity.ok(proveedorService.findDtosByIds(ids));
+    }
+
     @GetMapping("/{id}")
     public ResponseEntity<ProveedorResponseDTO> getProveedor(@PathVariable Long id) {
         return ResponseEntity.ok(proveedorService.findDtoById(id));
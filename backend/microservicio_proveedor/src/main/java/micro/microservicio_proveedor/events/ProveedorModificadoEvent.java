@@ -0,0 +1,12 @@
+package micro.microservicio_proveedor.events;
+
+public class ProveedorModificadoEvent {
+    private final Long proveedorId;
+
+    public ProveedorModificadoEvent(Long proveedorId) {
+        this.proveedorId = proveedorId;
+    }
+    public Long getProveedorId() {
+        return proveedorId;
+    }
+}
@@ -0,0 +1,31 @@
+package micro.microservicio_proveedor.events;
+
+import micro.microservicio_proveedor.feignClient.ProductoFeignClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * Avisa al servicio de productos, después del commit, que descarte su copia local del proveedor.
+ * Si la llamada falla la copia se corrige sola en la siguiente recarga por last-modified.
+ */
+@Component
+public class ProveedorModificadoListener {
+
+    private static final Logger log = LoggerFactory.getLogger(ProveedorModificadoListener.class);
+    private final ProductoFeignClient productoFeignClient;
+
+    public ProveedorModificadoListener(ProductoFeignClient productoFeignClient) {
+        this.productoFeignClient = productoFeignClient;
+    }
+
+    @TransactionalEventListener
+    public void handleProveedorModificado(ProveedorModificadoEvent event) {
+        try {
+            productoFeignClient.invalidarReferencias(event.getProveedorId());
+        } catch (Exception e) {
+            log.warn("No se pudo invalidar el proveedor {} en el servicio de productos: {}", event.getProveedorId(), e.getMessage());
+        }
+    }
+}
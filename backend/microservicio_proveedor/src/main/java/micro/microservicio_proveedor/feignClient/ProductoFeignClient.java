@@ -3,6 +3,7 @@ package micro.microservicio_proveedor.feignClient;
 import org.springframework.cloud.openfeign.FeignClient;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 
@@ -13,4 +14,7 @@ public interface ProductoFeignClient {
 
     @PutMapping("/productos/recalcular-por-proveedor/{proveedorId}")
     ResponseEntity<String> recalcularPreciosPorProveedor(@PathVariable Long proveedorId,@RequestParam BigDecimal nuevaCotizacion);
+
+    @PostMapping("/productos/referencias/invalidar")
+    ResponseEntity<Void> invalidarReferencias(@RequestParam("proveedorId") Long proveedorId);
 }
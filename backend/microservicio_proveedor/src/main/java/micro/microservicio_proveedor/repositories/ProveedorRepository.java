@@ -4,8 +4,10 @@ import micro.microservicio_proveedor.entities.Proveedor;
 import org.springframework.data.jpa.repository.EntityGraph;
 import micro.microservicio_proveedor.sync.SyncableRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -17,6 +19,9 @@ public interface ProveedorRepository extends SyncableRepository<Proveedor, Long>
     @Query("SELECT DISTINCT p FROM Proveedor p LEFT JOIN FETCH p.razonesSociales rs LEFT JOIN FETCH rs.cuentasBancarias WHERE p.id = :id")
     Optional<Proveedor> findFullById(Long id);
 
+    @Query("SELECT DISTINCT p FROM Proveedor p LEFT JOIN FETCH p.razonesSociales rs LEFT JOIN FETCH rs.cuentasBancarias WHERE p.id IN :ids")
+    List<Proveedor> findAllFullByIdIn(@Param("ids") Collection<Long> ids);
+
     @Override
     @EntityGraph(value = "proveedor-with-razones-cuentas", type = EntityGraph.EntityGraphType.LOAD)
     List<Proveedor> findAll();
@@ -2,6 +2,7 @@ package micro.microservicio_proveedor.services;
 
 import micro.microservicio_proveedor.entities.dto.LastModifiedDTO;
 import micro.microservicio_proveedor.events.CotizacionCambiadaEvent;
+import micro.microservicio_proveedor.events.ProveedorModificadoEvent;
 import micro.microservicio_proveedor.sync.OneDriveListener;
 import org.springframework.context.ApplicationEventPublisher;
 import jakarta.transaction.Transactional;
@@ -58,6 +59,18 @@ public class ProveedorService {
                 .orElseThrow(() -> new ResourceNotFoundException("Proveedor no encontrado con ID: " + id));
         return ProveedorMapper.toDTO(proveedor);
     }
+    @Transactional
+    public List<ProveedorResponseDTO> findDtosByIds(List<Long> ids) {
+        if (ids == null || ids.isEmpty()) {
+            return List.of();
+        }
+        Set<Long> uniqueIds = new HashSet<>(ids);
+        log.info("Buscando {} proveedores por IDs.", uniqueIds.size());
+        return proveedorRepository.findAllFullByIdIn(uniqueIds).stream()
+                .map(ProveedorMapper::toDTO)
+                .collect(Collectors.toList());
+    }
+
     @Cacheable(value = "proveedor", key = "#id")
     public Proveedor findById(Long id) {
         log.info("Buscando proveedor con ID: {} desde la BD.", id);
@@ -135,6 +148,7 @@ public class ProveedorService {
             // Publicar evento que se ejecutará DESPUÉS del commit
             eventPublisher.publishEvent(new CotizacionCambiadaEvent(id, proveedorDetails.getValorCotizacionManual()));
         }
+        eventPublisher.publishEvent(new ProveedorModificadoEvent(id));
 
         log.info("Proveedor con ID {} actualizado correctamente.", id);
         /*TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
@@ -172,6 +186,7 @@ public class ProveedorService {
         }
         Proveedor existing = findById(id);
         proveedorRepository.deleteById(id);
+        eventPublisher.publishEvent(new ProveedorModificadoEvent(id));
         /*TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
             @Override
             public void afterCommit() {
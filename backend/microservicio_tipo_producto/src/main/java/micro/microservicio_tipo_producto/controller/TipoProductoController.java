@@ -30,6 +30,11 @@ public class TipoProductoController {
         return ResponseEntity.ok(tipos);
     }
 
+    @GetMapping(value = "", params = "ids")
+    public ResponseEntity<List<TipoProducto>> getTiposProductoByIds(@RequestParam List<Long> ids) {
+        return ResponseEntity.ok(tipoProductoService.findAllByIds(ids));
+    }
+
     @GetMapping("/{id}")
     public ResponseEntity<TipoProducto> getTipoProductoById(@PathVariable Long id) {
         log.info("Llego a controller getTipoProductoById");
@@ -0,0 +1,12 @@
+package micro.microservicio_tipo_producto.events;
+
+public class TipoProductoModificadoEvent {
+    private final Long tipoId;
+
+    public TipoProductoModificadoEvent(Long tipoId) {
+        this.tipoId = tipoId;
+    }
+    public Long getTipoId() {
+        return tipoId;
+    }
+}
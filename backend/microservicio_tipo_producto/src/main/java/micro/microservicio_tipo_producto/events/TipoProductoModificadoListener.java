@@ -0,0 +1,31 @@
+package micro.microservicio_tipo_producto.events;
+
+import micro.microservicio_tipo_producto.feignClient.ProductoFeignClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * Avisa al servicio de productos, después del commit, que descarte su copia local del tipo.
+ * Si la llamada falla la copia se corrige sola en la siguiente recarga por last-modified.
+ */
+@Component
+public class TipoProductoModificadoListener {
+
+    private static final Logger log = LoggerFactory.getLogger(TipoProductoModificadoListener.class);
+    private final ProductoFeignClient productoFeignClient;
+
+    public TipoProductoModificadoListener(ProductoFeignClient productoFeignClient) {
+        this.productoFeignClient = productoFeignClient;
+    }
+
+    @TransactionalEventListener
+    public void handleTipoProductoModificado(TipoProductoModificadoEvent event) {
+        try {
+            productoFeignClient.invalidarReferencias(event.getTipoId());
+        } catch (Exception e) {
+            log.warn("No se pudo invalidar el tipo de producto {} en el servicio de productos: {}", event.getTipoId(), e.getMessage());
+        }
+    }
+}
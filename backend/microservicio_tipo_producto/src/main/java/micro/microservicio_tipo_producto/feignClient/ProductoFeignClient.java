@@ -0,0 +1,13 @@
+package micro.microservicio_tipo_producto.feignClient;
+
+import org.springframework.cloud.openfeign.FeignClient;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+
+@FeignClient(name = "${feign.client.config.microservicio-producto.name}")
+public interface ProductoFeignClient {
+
+    @PostMapping("/productos/referencias/invalidar")
+    ResponseEntity<Void> invalidarReferencias(@RequestParam("tipoId") Long tipoId);
+}
@@ -3,6 +3,7 @@ package micro.microservicio_tipo_producto.services;
 import jakarta.transaction.Transactional;
 import micro.microservicio_tipo_producto.entities.LastModifiedDTO;
 import micro.microservicio_tipo_producto.entities.TipoProducto;
+import micro.microservicio_tipo_producto.events.TipoProductoModificadoEvent;
 import micro.microservicio_tipo_producto.exceptions.BusinessLogicException;
 import micro.microservicio_tipo_producto.exceptions.ResourceNotFoundException;
 import micro.microservicio_tipo_producto.repositories.TipoProductoRepository;
@@ -13,6 +14,7 @@ import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.CachePut;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.cache.annotation.Caching;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.transaction.support.TransactionSynchronization;
@@ -32,8 +34,11 @@ public class TipoProductoService {
 
     private final ObjectMapper objectMapper;
 
-    public TipoProductoService(TipoProductoRepository tipoProductoRepository) {
+    private final ApplicationEventPublisher eventPublisher;
+
+    public TipoProductoService(TipoProductoRepository tipoProductoRepository, ApplicationEventPublisher eventPublisher) {
         this.tipoProductoRepository = tipoProductoRepository;
+        this.eventPublisher = eventPublisher;
         this.objectMapper = new ObjectMapper();
     }
     //@Cacheable(value = "tiposProducto", unless = "#result == null || #result.isEmpty()")
@@ -42,6 +47,15 @@ public class TipoProductoService {
         return tipoProductoRepository.findAll();
     }
 
+    public List<TipoProducto> findAllByIds(List<Long> ids) {
+        if (ids == null || ids.isEmpty()) {
+            return List.of();
+        }
+        Set<Long> uniqueIds = new HashSet<>(ids);
+        log.info("Buscando {} tipos de producto por IDs.", uniqueIds.size());
+        return tipoProductoRepository.findAllById(uniqueIds);
+    }
+
     @Cacheable(value = "tipoProducto", key = "#id")
     public TipoProducto findById(Long id) {
         log.info("Buscando tipo de producto con ID: {}", id);
@@ -139,6 +153,7 @@ public class TipoProductoService {
         tipoExistente.setNombre(tipoProductoDetails.getNombre());
 
         TipoProducto tipoActualizado = tipoProductoRepository.save(tipoExistente);
+        eventPublisher.publishEvent(new TipoProductoModificadoEvent(id));
         /*TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
             @Override
             public void afterCommit() {
@@ -160,6 +175,7 @@ public class TipoProductoService {
         }
         TipoProducto existing = findById(id);
         tipoProductoRepository.deleteById(id);
+        eventPublisher.publishEvent(new TipoProductoModificadoEvent(id));
         /*TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
             @Override
             public void afterCommit() {